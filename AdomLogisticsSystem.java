@@ -1,34 +1,172 @@
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Scanner;
+import java.util.concurrent.locks.Lock;
 import algorithms.*;
 import algorithms.CustomHashMap;
 
 public class AdomLogisticsSystem {
 
     // Custom Data Structures
-    private final CustomHashMap<String, Vehicle> vehicles = new CustomHashMap<>();
-    private final CustomQueue<Driver> availableDrivers = new CustomQueue<>();
-    private final CustomLinkedList<Delivery> pendingDeliveries = new CustomLinkedList<>();
-    private final CustomPriorityQueue<Vehicle> maintenanceQueue = new CustomPriorityQueue<>(new java.util.Comparator<Vehicle>() {
-    @Override
-    public int compare(Vehicle v1, Vehicle v2) {
-        // Priority based on mileage (higher mileage = higher priority)
-        return Double.compare(v2.getMileage(), v1.getMileage());
-    }
-});
+    // Vehicles and available drivers, safe to share between dispatcher threads
+    private final FleetRegistry registry = new FleetRegistry();
+    // Open deliveries waiting to leave and on the road, indexed by package ID; both guarded
+    // by pendingDeliveries' monitor. Finished ones only live in the history store.
+    private final CustomLinkedList<Delivery> pendingDeliveries = new CustomLinkedList<>(Delivery::getPackageID);
+    private final CustomLinkedList<Delivery> inTransitDeliveries = new CustomLinkedList<>(Delivery::getPackageID);
+    // Dispatch order of the pending deliveries, also guarded by pendingDeliveries' monitor
+    private final DeliveryScheduler scheduler = new DeliveryScheduler();
+    // Null when there is no road file
+    private volatile RoutePlanner routes;
+    // Service records of every vehicle, indexed by vehicle and by part
+    private final MaintenanceStore maintenance = new MaintenanceStore();
+    // The maintenance ranking, the fuel statistics, the fleet columns and the registration
+    // index are guarded by indexLock. Lock order: a vehicle's stripe lock, then indexLock.
+    private final Object indexLock = new Object();
+    private final MaintenanceRanking maintenanceRanking = new MaintenanceRanking(riskModelFromProperty(), maintenance);
+    private final FuelStatistics fuelStatistics = new FuelStatistics();
+    private final FleetColumns fleetColumns = new FleetColumns();
+    // Registration numbers in sorted order, for prefix and range searches
+    private final CustomSkipList<String, Vehicle> registrationIndex = new CustomSkipList<>((s1, s2) -> s1.compareTo(s2));
     
-    // File Paths
-    private static final String VEHICLES_FILE = "data/vehicles.txt";
-    private static final String DRIVERS_FILE = "data/drivers.txt";
-    private static final String DELIVERIES_FILE = "data/deliveries.txt";
-    private static final String MAINTENANCE_FILE = "data/maintenance.txt";
+    // File Paths (relative to the data directory)
+    private static final String DATA_DIR = "data";
+    private static final String VEHICLES_FILE = "vehicles.txt";
+    private static final String DRIVERS_FILE = "drivers.txt";
+    private static final String DELIVERIES_FILE = "deliveries.txt";
+    private static final String MAINTENANCE_FILE = "maintenance.txt";
+    private static final String HISTORY_DIR = "history";
+    private static final String ROADS_FILE = "roads.txt";
+    // Trips listed before a route plan is applied
+    private static final int TRIPS_SHOWN = 20;
+    // Vehicles listed by the maintenance scheduler
+    private static final int MAINTENANCE_SHOWN = 10;
+    // Default length of the worst fuel usage list
+    private static final int WORST_FUEL_SHOWN = 20;
 
+    // Snapshot files, as bits for PersistenceService.markDirty
+    private static final int VEHICLES = 1;
+    private static final int DRIVERS = 1 << 1;
+    private static final int DELIVERIES = 1 << 2;
+    private static final int MAINTENANCE = 1 << 3;
+    private static final int ALL_FILES = VEHICLES | DRIVERS | DELIVERIES | MAINTENANCE;
+
+    // Journal segment size at which the log is rolled into a new snapshot
+    private static final int COMPACTION_THRESHOLD = 500;
+    // How long a snapshot request waits for further changes to merge with
+    private static final long DEFAULT_WINDOW_MILLIS = 200;
+    private static final DateTimeFormatter DEADLINE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private final String dataDir;
+    private final FleetJournal journal;
+    private final PersistenceService persistence;
+    private final DeliveryHistoryStore history;
+
+    // Durability and coalescing window can be chosen at startup:
+    //   java -Dadom.durability=sync|group-commit|async -Dadom.window=200 AdomLogisticsSystem
     public static void main(String[] args) {
-        AdomLogisticsSystem system = new AdomLogisticsSystem();
+        AdomLogisticsSystem system = new AdomLogisticsSystem(DATA_DIR,
+                durabilityFromProperty(), Long.getLong("adom.window", DEFAULT_WINDOW_MILLIS));
         system.loadData();
+        if (args.length > 0) {
+            system.runImport(args);
+            return;
+        }
         system.run();
     }
 
+    public AdomLogisticsSystem() {
+        this(DATA_DIR);
+    }
+
+    // A system working on another data directory, e.g. a synthetic fleet for benchmarks
+    AdomLogisticsSystem(String dataDir) {
+        this(dataDir, FleetJournal.Durability.GROUP_COMMIT, DEFAULT_WINDOW_MILLIS);
+    }
+
+    AdomLogisticsSystem(String dataDir, FleetJournal.Durability durability, long windowMillis) {
+        this.dataDir = dataDir;
+        this.journal = new FleetJournal(dataDir, durability);
+        this.persistence = new PersistenceService(journal, this::writeSnapshot, windowMillis);
+        this.history = new DeliveryHistoryStore(dataFile(HISTORY_DIR));
+        // Keeps the maintenance ranking, the fuel statistics, the fleet columns and the
+        // registration index in step with the registry; called under the changed vehicle's
+        // stripe lock
+        registry.addListener(new FleetRegistry.Listener() {
+            @Override
+            public void vehicleAdded(Vehicle vehicle) {
+                synchronized (indexLock) {
+                    registrationIndex.put(vehicle.getRegistrationNumber(), vehicle);
+                    maintenanceRanking.add(vehicle);
+                    fuelStatistics.add(vehicle);
+                    fleetColumns.add(vehicle);
+                }
+            }
+
+            @Override
+            public void vehicleRemoved(Vehicle vehicle) {
+                synchronized (indexLock) {
+                    registrationIndex.remove(vehicle.getRegistrationNumber());
+                    maintenanceRanking.remove(vehicle);
+                    fuelStatistics.remove(vehicle);
+                    fleetColumns.remove(vehicle);
+                }
+            }
+
+            @Override
+            public void driverChanged(Vehicle vehicle) {
+                synchronized (indexLock) {
+                    fleetColumns.driverChanged(vehicle);
+                }
+            }
+
+            @Override
+            public void vehiclesLoaded(CustomArrayList<Vehicle> vehicles) {
+                rebuildVehicleIndexes();
+            }
+        });
+    }
+
+    private static FleetJournal.Durability durabilityFromProperty() {
+        String mode = System.getProperty("adom.durability", "group-commit");
+        switch (mode.toLowerCase()) {
+            case "sync":
+                return FleetJournal.Durability.SYNC;
+            case "group-commit":
+                return FleetJournal.Durability.GROUP_COMMIT;
+            case "async":
+                return FleetJournal.Durability.ASYNC;
+            default:
+                System.err.println("Unknown durability mode '" + mode + "', using group-commit");
+                return FleetJournal.Durability.GROUP_COMMIT;
+        }
+    }
+
+    // The maintenance ranking can be chosen at startup:
+    //   java -Dadom.risk=weighted|mileage AdomLogisticsSystem
+    private static MaintenanceRanking.RiskModel riskModelFromProperty() {
+        String model = System.getProperty("adom.risk", "weighted");
+        switch (model.toLowerCase()) {
+            case "weighted":
+                return MaintenanceRanking.WEIGHTED;
+            case "mileage":
+                return MaintenanceRanking.MILEAGE;
+            default:
+                System.err.println("Unknown risk model '" + model + "', using weighted");
+                return MaintenanceRanking.WEIGHTED;
+        }
+    }
+
+    private String dataFile(String fileName) {
+        return dataDir + File.separator + fileName;
+    }
+
     private void run() {
         try (Scanner scanner = new Scanner(System.in)) {
             int choice;
@@ -72,6 +210,150 @@ public class AdomLogisticsSystem {
         }
     }
 
+    // Non-interactive bulk import:
+    //   java AdomLogisticsSystem --import vehicles v.csv [drivers d.csv] [deliveries p.csv]
+    // Rows use the same columns as the data files. Everything is persisted once at the end.
+    private void runImport(String[] args) {
+        if (!args[0].equals("--import") || args.length < 3 || args.length % 2 == 0) {
+            System.out.println("Usage: java AdomLogisticsSystem --import <vehicles|drivers|deliveries> <file.csv> ...");
+            return;
+        }
+        try {
+            for (int i = 1; i < args.length; i += 2) {
+                switch (args[i]) {
+                    case "vehicles":
+                        importVehicles(args[i + 1]);
+                        break;
+                    case "drivers":
+                        importDrivers(args[i + 1]);
+                        break;
+                    case "deliveries":
+                        importDeliveries(args[i + 1]);
+                        break;
+                    default:
+                        System.out.println("Unknown import type: " + args[i]);
+                        return;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error importing data: " + e.getMessage());
+            return;
+        }
+        // Imported rows bypass the journal, so every file is rewritten
+        markAllDirty();
+        long start = System.nanoTime();
+        saveData();
+        System.out.println(String.format("Import saved in %.2f s.", (System.nanoTime() - start) / 1e9));
+    }
+
+    private void importVehicles(String path) throws IOException {
+        BulkImporter<Vehicle> importer = new BulkImporter<>("vehicles", 4, row -> {
+            BulkImporter.required(row, 1, "type");
+            Vehicle vehicle = new Vehicle(BulkImporter.required(row, 0, "registration number"),
+                    row.internedField(1),
+                    BulkImporter.nonNegativeDouble(row, 2, "mileage"),
+                    BulkImporter.nonNegativeDouble(row, 3, "fuel usage"));
+            if (row.fieldCount() > 4 && !row.isEmpty(4)) {
+                vehicle.setDriverID(row.field(4));
+            }
+            if (row.fieldCount() > 5 && !row.isEmpty(5)) {
+                int capacity = BulkImporter.nonNegativeInt(row, 5, "capacity");
+                if (capacity == 0) {
+                    throw new IllegalArgumentException("capacity must be at least 1");
+                }
+                vehicle.setCapacity(capacity);
+            }
+            return vehicle;
+        });
+        CustomArrayList<Vehicle> rows = importer.read(path);
+        
+        // One presize of the registry and one bottom-up heap build for the whole batch
+        long start = System.nanoTime();
+        registry.putVehicles(rows);
+        System.out.println(importer.summary());
+        System.out.println(String.format("  %d vehicles registered and indexed in %.2f s (fleet size %d)",
+                rows.size(), (System.nanoTime() - start) / 1e9, registry.vehicleCount()));
+    }
+
+    private void importDrivers(String path) throws IOException {
+        // Driver IDs already in use, so duplicates are rejected row by row
+        final StringIntHashMap known = new StringIntHashMap();
+        CustomArrayList<Driver> existing = registry.availableDrivers();
+        for (int i = 0; i < existing.size(); i++) {
+            known.put(existing.get(i).getDriverID(), 1);
+        }
+        existing = registry.assignedDrivers();
+        for (int i = 0; i < existing.size(); i++) {
+            known.put(existing.get(i).getDriverID(), 1);
+        }
+        BulkImporter<Driver> importer = new BulkImporter<>("drivers", 3, row -> {
+            String driverID = BulkImporter.required(row, 0, "driver ID");
+            Driver driver = new Driver(driverID, BulkImporter.required(row, 1, "name"),
+                    BulkImporter.nonNegativeInt(row, 2, "experience"));
+            if (known.increment(driverID, 1) > 1) {
+                throw new IllegalArgumentException("duplicate driver ID " + driverID);
+            }
+            return driver;
+        });
+        CustomArrayList<Driver> rows = importer.read(path);
+        
+        // Imported drivers join the available pool in file order
+        registry.addDrivers(rows);
+        System.out.println(importer.summary());
+    }
+
+    private void importDeliveries(String path) throws IOException {
+        final StringIntHashMap known = new StringIntHashMap();
+        CustomArrayList<Delivery> existing = openDeliveries();
+        for (int i = 0; i < existing.size(); i++) {
+            known.put(existing.get(i).getPackageID(), 1);
+        }
+        final long importTime = System.currentTimeMillis();
+        BulkImporter<Delivery> importer = new BulkImporter<>("deliveries", 7, row -> {
+            String packageID = BulkImporter.required(row, 0, "package ID");
+            String vehicleID = row.field(3);
+            if (!registry.containsVehicle(vehicleID)) {
+                throw new IllegalArgumentException("unknown vehicle '" + vehicleID + "'");
+            }
+            if (!row.fieldEquals(6, Delivery.PENDING)) {
+                throw new IllegalArgumentException("only Pending deliveries can be imported, found '" + row.field(6) + "'");
+            }
+            BulkImporter.required(row, 1, "origin");
+            BulkImporter.required(row, 2, "destination");
+            Delivery delivery = new Delivery(packageID, row.internedField(1), row.internedField(2),
+                    vehicleID, row.field(4), row.internedField(5), row.internedField(6));
+            // Optional deadline (epoch milliseconds) and priority
+            if (row.fieldCount() > 7 && !row.isEmpty(7)) {
+                try {
+                    delivery.setDeadline(Long.parseLong(row.field(7)));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("deadline is not a number: '" + row.field(7) + "'");
+                }
+            }
+            if (row.fieldCount() > 8 && !row.isEmpty(8)) {
+                int priority = BulkImporter.nonNegativeInt(row, 8, "priority");
+                if (priority < Delivery.LOWEST_PRIORITY || priority > Delivery.HIGHEST_PRIORITY) {
+                    throw new IllegalArgumentException("priority must be " + Delivery.LOWEST_PRIORITY
+                            + " to " + Delivery.HIGHEST_PRIORITY + ", found " + priority);
+                }
+                delivery.setPriority(priority);
+            }
+            delivery.setCreatedAt(importTime);
+            if (known.increment(packageID, 1) > 1) {
+                throw new IllegalArgumentException("duplicate package ID " + packageID);
+            }
+            return delivery;
+        });
+        CustomArrayList<Delivery> rows = importer.read(path);
+        synchronized (pendingDeliveries) {
+            for (int i = 0; i < rows.size(); i++) {
+                addPending(rows.get(i));
+            }
+        }
+        history.recordAll(rows, importTime);
+        System.out.println(importer.summary());
+    }
+
     // --- Core Functionality Methods ---
 
     // Vehicle Management
@@ -119,55 +401,99 @@ public class AdomLogisticsSystem {
         double fuelUsage = scanner.nextDouble();
         scanner.nextLine();
         
-        vehicles.put(regNum, new Vehicle(regNum, type, mileage, fuelUsage));
+        Vehicle vehicle = new Vehicle(regNum, type, mileage, fuelUsage);
+        System.out.print("Enter Capacity in parcels (blank for " + vehicle.getCapacity() + "): ");
+        String capacity = scanner.nextLine().trim();
+        if (!capacity.isEmpty()) {
+            try {
+                vehicle.setCapacity(Integer.parseInt(capacity));
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid capacity, keeping " + vehicle.getCapacity() + ".");
+            }
+        }
+        boolean saved = storeVehicle(vehicle);
         System.out.println("Vehicle added successfully.");
-        updateMaintenanceQueue();
-        
-        // Save data immediately
-        try {
-            saveVehicles();
+        if (saved) {
             System.out.println("Vehicle data saved to file.");
-        } catch (IOException e) {
-            System.err.println("Error saving vehicle data: " + e.getMessage());
         }
     }
 
+    // Adds or replaces a vehicle and journals it. The change and its journal record happen
+    // under the vehicle's lock, so the journal sees changes to one vehicle in the order
+    // they were made.
+    boolean storeVehicle(Vehicle vehicle) {
+        boolean saved;
+        Lock lock = registry.vehicleLock(vehicle.getRegistrationNumber());
+        lock.lock();
+        try {
+            putVehicle(vehicle);
+            saved = appendChange(FleetJournal.VEHICLE_PUT, vehicleFields(vehicle));
+        } finally {
+            lock.unlock();
+        }
+        if (saved) {
+            compactIfDue();
+        }
+        return saved;
+    }
+
     private void removeVehicle(Scanner scanner) {
         System.out.print("Enter Registration Number of vehicle to remove: ");
         String regNum = scanner.nextLine();
-        if (vehicles.containsKey(regNum)) {
-            vehicles.remove(regNum);
+        boolean saved;
+        Lock lock = registry.vehicleLock(regNum);
+        lock.lock();
+        try {
+            if (dropVehicle(regNum) == null) {
+                System.out.println("Vehicle not found.");
+                return;
+            }
             System.out.println("Vehicle removed successfully.");
-            updateMaintenanceQueue();
             
             // Save data immediately
-            try {
-                saveVehicles();
-                System.out.println("Vehicle data saved to file.");
-            } catch (IOException e) {
-                System.err.println("Error saving vehicle data: " + e.getMessage());
-            }
-        } else {
-            System.out.println("Vehicle not found.");
+            saved = appendChange(FleetJournal.VEHICLE_REMOVE, regNum);
+        } finally {
+            lock.unlock();
+        }
+        if (saved) {
+            System.out.println("Vehicle data saved to file.");
+            compactIfDue();
         }
     }
 
     private void searchVehicle(Scanner scanner) {
-        System.out.print("Enter Registration Number to search: ");
-        String regNum = scanner.nextLine();
-        CustomArrayList<String> sortedRegNums = vehicles.keySet();
-        
-        // Sort the registration numbers using custom sort
-        sortedRegNums.sort((s1, s2) -> s1.compareTo(s2));
+        System.out.print("Enter Registration Number to search (GR-23* for a prefix, A..B for a range): ");
+        String query = scanner.nextLine().trim();
         
-        int index = sortedRegNums.binarySearch(regNum, (s1, s2) -> s1.compareTo(s2));
-        
-        if (index >= 0) {
-            String foundRegNum = sortedRegNums.get(index);
-            Vehicle vehicle = vehicles.get(foundRegNum);
-            System.out.println("Vehicle Found: " + vehicle);
+        CustomArrayList<Vehicle> matches;
+        int rangeSeparator = query.indexOf("..");
+        if (query.endsWith("*")) {
+            String prefix = query.substring(0, query.length() - 1);
+            synchronized (indexLock) {
+                matches = registrationIndex.range(prefix, prefix + Character.MAX_VALUE);
+            }
+        } else if (rangeSeparator > 0) {
+            synchronized (indexLock) {
+                matches = registrationIndex.range(query.substring(0, rangeSeparator).trim(),
+                                                  query.substring(rangeSeparator + 2).trim());
+            }
         } else {
+            Vehicle vehicle = registry.getVehicle(query);
+            if (vehicle != null) {
+                System.out.println("Vehicle Found: " + vehicle);
+            } else {
+                System.out.println("Vehicle not found.");
+            }
+            return;
+        }
+        
+        if (matches.isEmpty()) {
             System.out.println("Vehicle not found.");
+            return;
+        }
+        System.out.println(matches.size() + " vehicle(s) found:");
+        for (int i = 0; i < matches.size(); i++) {
+            System.out.println("Vehicle Found: " + matches.get(i));
         }
     }
     
@@ -178,7 +504,8 @@ public class AdomLogisticsSystem {
             System.out.println("\n--- Driver Management ---");
             System.out.println("1. Add Driver");
             System.out.println("2. Assign Driver to Vehicle");
-            System.out.println("3. Back to Main Menu");
+            System.out.println("3. Auto-Assign Available Drivers");
+            System.out.println("4. Back to Main Menu");
             System.out.print("Enter your choice: ");
             choice = scanner.nextInt();
             scanner.nextLine();
@@ -191,11 +518,14 @@ public class AdomLogisticsSystem {
                     assignDriver(scanner);
                     break;
                 case 3:
+                    autoAssignDrivers(scanner);
+                    break;
+                case 4:
                     break;
                 default:
                     System.out.println("Invalid choice.");
             }
-        } while (choice != 3);
+        } while (choice != 4);
     }
 
     private void addDriver(Scanner scanner) {
@@ -208,53 +538,133 @@ public class AdomLogisticsSystem {
         scanner.nextLine();
 
         Driver newDriver = new Driver(driverID, name, experience);
-        availableDrivers.add(newDriver);
+        // Journaled before the driver joins the pool, so no DRIVER_ASSIGN or DELIVERY_ADD
+        // taking them can reach the journal ahead of this record
+        boolean saved = appendChange(() -> registry.addDriver(newDriver),
+                FleetJournal.DRIVER_ADD, driverID, name, String.valueOf(experience));
         System.out.println("Driver added to available pool.");
         
-        // Save data immediately
-        try {
-            saveDrivers();
+        if (saved) {
+            compactIfDue();
             System.out.println("Driver data saved to file.");
-        } catch (IOException e) {
-            System.err.println("Error saving driver data: " + e.getMessage());
         }
     }
     
     private void assignDriver(Scanner scanner) {
-        if (availableDrivers.isEmpty()) {
+        if (!registry.hasAvailableDrivers()) {
             System.out.println("No drivers available for assignment.");
             return;
         }
-        if (vehicles.isEmpty()) {
+        if (!registry.hasVehicles()) {
             System.out.println("No vehicles available for assignment.");
             return;
         }
 
         System.out.print("Enter Vehicle Registration Number: ");
         String regNum = scanner.nextLine();
-        Vehicle vehicle = vehicles.get(regNum);
         
-        if (vehicle != null) {
-            Driver driver = availableDrivers.poll(); // Get a driver from the queue
-            if (driver != null) {
-                vehicle.setDriverID(driver.getDriverID());
-                driver.setAvailable(false);
-                System.out.println("Driver " + driver.getName() + " assigned to vehicle " + regNum);
-                
-                // Save data immediately
-                try {
-                    saveVehicles();
-                    saveDrivers();
-                    System.out.println("Assignment data saved to files.");
-                } catch (IOException e) {
-                    System.err.println("Error saving assignment data: " + e.getMessage());
-                }
-            } else {
+        boolean saved;
+        Lock lock = registry.vehicleLock(regNum);
+        lock.lock();
+        try {
+            if (!registry.containsVehicle(regNum)) {
+                System.out.println("Vehicle not found.");
+                return;
+            }
+            // Polls a driver and sets the vehicle's driverID as one atomic step
+            Driver driver = registry.assignNextDriver(regNum);
+            if (driver == null) {
                 System.out.println("No available drivers.");
+                return;
             }
+            System.out.println("Driver " + driver.getName() + " assigned to vehicle " + regNum);
+            
+            // Save data immediately
+            saved = appendChange(FleetJournal.DRIVER_ASSIGN, regNum, driver.getDriverID());
+        } finally {
+            lock.unlock();
+        }
+        if (saved) {
+            System.out.println("Assignment data saved to files.");
+            compactIfDue();
+        }
+    }
+
+    // Matches every available driver to the vehicles without one in a single batch
+    private void autoAssignDrivers(Scanner scanner) {
+        System.out.println("1. Match experience to vehicle difficulty");
+        System.out.println("2. Most experienced drivers on the hardest vehicles");
+        System.out.print("Choose a cost function: ");
+        String choice = scanner.nextLine().trim();
+        DriverAssignment.CostFunction cost;
+        if (choice.equals("1")) {
+            cost = DriverAssignment.SKILL_MATCH;
+        } else if (choice.equals("2")) {
+            cost = DriverAssignment.HARDEST_FIRST;
         } else {
-            System.out.println("Vehicle not found.");
+            System.out.println("Invalid choice.");
+            return;
+        }
+
+        CustomArrayList<Vehicle> vacant = new CustomArrayList<>();
+        registry.forEachVehicle(vehicle -> {
+            if (vehicle.getDriverID() == null || vehicle.getDriverID().isEmpty()) {
+                vacant.add(vehicle);
+            }
+        });
+        if (vacant.isEmpty()) {
+            System.out.println("Every vehicle already has a driver.");
+            return;
+        }
+        // The drivers are out of the pool while the batch is solved, so manual
+        // assignments made meanwhile cannot hand out the same driver twice
+        CustomArrayList<Driver> drivers = new CustomArrayList<>();
+        registry.pollDrivers(drivers, Integer.MAX_VALUE);
+        if (drivers.isEmpty()) {
+            System.out.println("No drivers available for assignment.");
+            return;
         }
+
+        long start = System.nanoTime();
+        Driver[] chosen = DriverAssignment.assign(drivers, vacant, cost);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        CustomHashMap<String, Driver> placed = new CustomHashMap<>();
+        int assigned = 0;
+        boolean saved = true;
+        for (int j = 0; j < chosen.length; j++) {
+            Driver driver = chosen[j];
+            if (driver == null) {
+                continue;
+            }
+            String regNum = vacant.get(j).getRegistrationNumber();
+            Lock lock = registry.vehicleLock(regNum);
+            lock.lock();
+            try {
+                // Vehicles removed or manually assigned since the snapshot are skipped
+                if (registry.assignIfVacant(regNum, driver)) {
+                    placed.put(driver.getDriverID(), driver);
+                    assigned++;
+                    saved &= appendChange(FleetJournal.DRIVER_ASSIGN, regNum, driver.getDriverID());
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        CustomArrayList<Driver> unplaced = new CustomArrayList<>();
+        for (int i = 0; i < drivers.size(); i++) {
+            if (!placed.containsKey(drivers.get(i).getDriverID())) {
+                unplaced.add(drivers.get(i));
+            }
+        }
+        registry.addDrivers(unplaced);
+
+        System.out.println("Assigned " + assigned + " driver(s) to " + vacant.size() + " vehicle(s) without one in "
+                + millis + " ms; " + unplaced.size() + " driver(s) remain available.");
+        if (assigned > 0 && saved) {
+            System.out.println("Assignment data saved to files.");
+        }
+        compactIfDue();
     }
 
     // Delivery Tracking
@@ -263,8 +673,15 @@ public class AdomLogisticsSystem {
         do {
             System.out.println("\n--- Delivery Tracking ---");
             System.out.println("1. Add New Delivery");
-            System.out.println("2. Process Next Delivery");
-            System.out.println("3. Back to Main Menu");
+            System.out.println("2. Dispatch Next Delivery");
+            System.out.println("3. Dispatch Batch From Depot");
+            System.out.println("4. Complete Delivery");
+            System.out.println("5. Find Delivery");
+            System.out.println("6. Cancel Delivery");
+            System.out.println("7. Update Delivery ETA, Deadline or Priority");
+            System.out.println("8. Delivery History");
+            System.out.println("9. Plan Multi-Stop Routes");
+            System.out.println("10. Back to Main Menu");
             System.out.print("Enter your choice: ");
             choice = scanner.nextInt();
             scanner.nextLine();
@@ -277,172 +694,754 @@ public class AdomLogisticsSystem {
                     processNextDelivery();
                     break;
                 case 3:
+                    dispatchBatch(scanner);
+                    break;
+                case 4:
+                    completeDelivery(scanner);
+                    break;
+                case 5:
+                    findDelivery(scanner);
+                    break;
+                case 6:
+                    cancelDelivery(scanner);
+                    break;
+                case 7:
+                    updateDelivery(scanner);
+                    break;
+                case 8:
+                    deliveryHistoryMenu(scanner);
+                    break;
+                case 9:
+                    planRoutes(scanner);
+                    break;
+                case 10:
                     break;
                 default:
                     System.out.println("Invalid choice.");
             }
-        } while (choice != 3);
+        } while (choice != 10);
     }
     
     private void addNewDelivery(Scanner scanner) {
-        if (availableDrivers.isEmpty()) {
+        if (!registry.hasAvailableDrivers()) {
             System.out.println("Cannot add delivery, no drivers available.");
             return;
         }
         
         System.out.print("Enter Package ID: ");
         String packageID = scanner.nextLine();
+        if (findOpenDelivery(packageID) != null) {
+            System.out.println("A delivery with that package ID is already open.");
+            return;
+        }
         System.out.print("Enter Origin: ");
         String origin = scanner.nextLine();
         System.out.print("Enter Destination: ");
         String destination = scanner.nextLine();
+        long deadline;
+        int priority;
+        try {
+            deadline = readDeadline(scanner, 0);
+            priority = readPriority(scanner, Delivery.NORMAL_PRIORITY);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
         
         // Simplified assignment for demonstration
-        Driver assignedDriver = availableDrivers.poll();
-        Vehicle assignedVehicle = null;
-        
-        // Find vehicle assigned to this driver
-        CustomArrayList<Vehicle> vehicleList = vehicles.values();
-        for (int i = 0; i < vehicleList.size(); i++) {
-            Vehicle v = vehicleList.get(i);
-            if (v.getDriverID() != null && v.getDriverID().equals(assignedDriver.getDriverID())) {
-                assignedVehicle = v;
-                break;
-            }
+        Driver assignedDriver = registry.pollDriver();
+        if (assignedDriver == null) {
+            System.out.println("Cannot add delivery, no drivers available.");
+            return;
         }
+        // Find vehicle assigned to this driver
+        Vehicle assignedVehicle = registry.vehicleForDriver(assignedDriver.getDriverID());
         
         if (assignedVehicle != null) {
             Delivery newDelivery = new Delivery(packageID, origin, destination, 
                                               assignedVehicle.getRegistrationNumber(), 
-                                              assignedDriver.getDriverID(), "TBD", "Pending");
-            pendingDeliveries.add(newDelivery);
+                                              assignedDriver.getDriverID(), estimateArrival(origin, destination),
+                                              Delivery.PENDING);
+            newDelivery.setDeadline(deadline);
+            newDelivery.setPriority(priority);
+            newDelivery.setCreatedAt(System.currentTimeMillis());
+            synchronized (pendingDeliveries) {
+                if (findOpenDelivery(packageID) != null) {
+                    System.out.println("A delivery with that package ID is already open.");
+                    registry.addDriver(assignedDriver);
+                    return;
+                }
+                addPending(newDelivery);
+            }
             System.out.println("New delivery added and assigned to " + assignedDriver.getName());
             
             // Save data immediately
-            try {
-                saveDeliveries();
+            if (logDeliveryChange(FleetJournal.DELIVERY_ADD, newDelivery)) {
                 System.out.println("Delivery data saved to file.");
-            } catch (IOException e) {
-                System.err.println("Error saving delivery data: " + e.getMessage());
             }
         } else {
             System.out.println("Error assigning vehicle/driver.");
-            availableDrivers.add(assignedDriver); // Put driver back in the queue
+            registry.addDriver(assignedDriver); // Put driver back in the queue
+        }
+    }
+
+    // Arrival time if the delivery left now, by the fastest road route; "TBD" when the
+    // road network does not connect the two places
+    private String estimateArrival(String origin, String destination) {
+        RoutePlanner planner = routes;
+        if (planner == null) {
+            return "TBD";
         }
+        double minutes = planner.travelMinutes(origin, destination);
+        if (minutes == RoadGraph.UNREACHABLE) {
+            System.out.println("No road route known from " + origin + " to " + destination + "; ETA left as TBD.");
+            return "TBD";
+        }
+        System.out.println("Travel time by road: " + RoutePlanner.formatDuration(minutes));
+        return LocalDateTime.now().plusSeconds(Math.round(minutes * 60)).format(DEADLINE_FORMAT);
     }
 
+    // Sends the most urgent pending delivery on its way
     private void processNextDelivery() {
-        if (!pendingDeliveries.isEmpty()) {
-            Delivery delivery = pendingDeliveries.poll();
-            System.out.println("Processing delivery: " + delivery.getPackageID());
-            // Simulate delivery process...
-            System.out.println("Delivery to " + delivery.getDestination() + " completed.");
-            // Logic to update driver status to available
+        Delivery delivery;
+        synchronized (pendingDeliveries) {
+            delivery = scheduler.isEmpty() ? null
+                    : moveDelivery(scheduler.peek().getPackageID(), Delivery.IN_TRANSIT);
+        }
+        if (delivery != null) {
+            System.out.println("Delivery " + delivery.getPackageID() + " to " + delivery.getDestination() + " is now in transit.");
             
             // Save data immediately
-            try {
-                saveDeliveries();
+            if (logDeliveryChange(FleetJournal.DELIVERY_STATUS, delivery)) {
                 System.out.println("Delivery data updated in file.");
-            } catch (IOException e) {
-                System.err.println("Error saving delivery data: " + e.getMessage());
             }
         } else {
             System.out.println("No pending deliveries.");
         }
     }
-    
-    // Maintenance Scheduler
-    private void maintenanceSchedulerMenu(Scanner scanner) {
-        int choice;
-        do {
-            System.out.println("\n--- Maintenance Scheduler ---");
-            System.out.println("1. View Next Vehicle for Maintenance");
-            System.out.println("2. Record Maintenance for a Vehicle");
-            System.out.println("3. Back to Main Menu");
-            System.out.print("Enter your choice: ");
-            choice = scanner.nextInt();
-            scanner.nextLine();
 
-            switch (choice) {
-                case 1:
-                    viewNextMaintenanceVehicle();
-                    break;
-                case 2:
-                    recordMaintenance(scanner);
-                    break;
-                case 3:
-                    break;
-                default:
-                    System.out.println("Invalid choice.");
+    // Sends the N most urgent pending deliveries leaving from one depot
+    private void dispatchBatch(Scanner scanner) {
+        CustomArrayList<String> origins;
+        synchronized (pendingDeliveries) {
+            origins = scheduler.origins();
+            if (origins.isEmpty()) {
+                System.out.println("No pending deliveries.");
+                return;
             }
-        } while (choice != 3);
-    }
-    
-    private void updateMaintenanceQueue() {
-        maintenanceQueue.clear();
-        CustomArrayList<Vehicle> vehicleList = vehicles.values();
-        for (int i = 0; i < vehicleList.size(); i++) {
-            maintenanceQueue.add(vehicleList.get(i));
+            System.out.println("Depots with pending deliveries:");
+            for (int i = 0; i < origins.size(); i++) {
+                System.out.println("  " + origins.get(i) + " (" + scheduler.size(origins.get(i)) + ")");
+            }
+        }
+        System.out.print("Enter Origin: ");
+        String origin = scanner.nextLine().trim();
+        System.out.print("Enter number of deliveries to dispatch: ");
+        int count;
+        try {
+            count = Integer.parseInt(scanner.nextLine().trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number.");
+            return;
+        }
+
+        CustomArrayList<Delivery> batch;
+        synchronized (pendingDeliveries) {
+            batch = scheduler.drainBatch(origin, count);
+            for (int i = 0; i < batch.size(); i++) {
+                moveDelivery(batch.get(i).getPackageID(), Delivery.IN_TRANSIT);
+            }
+        }
+        if (batch.isEmpty()) {
+            System.out.println("No pending deliveries from " + origin + ".");
+            return;
+        }
+        boolean saved = true;
+        for (int i = 0; i < batch.size(); i++) {
+            Delivery delivery = batch.get(i);
+            System.out.println("Delivery " + delivery.getPackageID() + " to " + delivery.getDestination() + " is now in transit.");
+            saved &= logDeliveryChange(FleetJournal.DELIVERY_STATUS, delivery);
+        }
+        if (saved) {
+            System.out.println("Delivery data updated in file.");
         }
     }
 
-    private void viewNextMaintenanceVehicle() {
-        if (maintenanceQueue.isEmpty()) {
-            System.out.println("No vehicles in the maintenance queue.");
+    // Groups the pending deliveries into multi-stop trips per depot and, if confirmed,
+    // moves each delivery to its trip's vehicle with an ETA from the trip's timetable
+    private void planRoutes(Scanner scanner) {
+        RoutePlanner planner = routes;
+        if (planner == null) {
+            System.out.println("No road network loaded (" + ROADS_FILE + ").");
             return;
         }
-        Vehicle nextVehicle = maintenanceQueue.peek();
-        System.out.println("Next vehicle for maintenance: " + nextVehicle.getRegistrationNumber() + " (Mileage: " + nextVehicle.getMileage() + ")");
+        CustomArrayList<Delivery> pending;
+        synchronized (pendingDeliveries) {
+            pending = pendingDeliveries.toArrayList();
+        }
+        if (pending.isEmpty()) {
+            System.out.println("No pending deliveries.");
+            return;
+        }
+
+        long start = System.nanoTime();
+        TripPlanner.Result plan = TripPlanner.plan(planner.graph(), pending, registry::getVehicle,
+                TripPlanner.DEFAULT_TIME_LIMIT_MILLIS);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        for (int i = 0; i < Math.min(plan.trips.size(), TRIPS_SHOWN); i++) {
+            System.out.println(describeTrip(plan.trips.get(i)));
+        }
+        if (plan.trips.size() > TRIPS_SHOWN) {
+            System.out.println("... and " + (plan.trips.size() - TRIPS_SHOWN) + " more trip(s)");
+        }
+        System.out.println(plan.trips.size() + " trip(s) planned in " + millis + " ms; "
+                + plan.unplanned.size() + " delivery(ies) could not be planned (no vehicle with a driver at the depot, or no road)."
+                + (plan.complete ? "" : " The time limit cut the optimisation short."));
+        if (plan.trips.isEmpty()) {
+            return;
+        }
+        System.out.print("Apply this plan? (y/n): ");
+        if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        CustomArrayList<Delivery> changed = new CustomArrayList<>();
+        synchronized (pendingDeliveries) {
+            for (int t = 0; t < plan.trips.size(); t++) {
+                TripPlanner.Trip trip = plan.trips.get(t);
+                String driverID = trip.vehicle.getDriverID();
+                for (int k = 0; k < trip.deliveries.size(); k++) {
+                    Delivery delivery = trip.deliveries.get(k);
+                    // Skips deliveries dispatched or cancelled while the plan was shown,
+                    // and vehicles that lost their driver meanwhile
+                    if (driverID == null || findOpenDelivery(delivery.getPackageID()) != delivery
+                            || !Delivery.PENDING.equals(delivery.getStatus())) {
+                        continue;
+                    }
+                    delivery.setAssignment(trip.vehicle.getRegistrationNumber(), driverID);
+                    long seconds = Math.round(trip.arrivalMinutes.get(k) * 60);
+                    delivery.setEta(now.plusSeconds(seconds).format(DEADLINE_FORMAT));
+                    changed.add(delivery);
+                }
+            }
+        }
+        boolean saved = true;
+        for (int i = 0; i < changed.size(); i++) {
+            saved &= logDeliveryChange(FleetJournal.DELIVERY_STATUS, changed.get(i));
+        }
+        System.out.println(changed.size() + " delivery(ies) moved to their planned trips.");
+        if (saved && !changed.isEmpty()) {
+            System.out.println("Delivery data updated in file.");
+        }
     }
 
-    private void recordMaintenance(Scanner scanner) {
-        System.out.print("Enter Registration Number of vehicle maintained: ");
-        String regNum = scanner.nextLine();
-        Vehicle vehicle = vehicles.get(regNum);
-        
-        if (vehicle != null) {
-            System.out.print("Enter parts replaced (e.g., OilChange,TireReplacement): ");
-            String partsStr = scanner.nextLine();
-            CustomHashMap<String, Double> parts = new CustomHashMap<>();
-            double totalCost = 0.0;
-            String[] partArray = partsStr.split(",");
-            for (String part : partArray) {
-                System.out.print("Enter cost for " + part + ": ");
-                double cost = scanner.nextDouble();
-                parts.put(part.trim(), cost);
-                totalCost += cost;
+    // "GR-2345-23 from Accra after 0m: Tema (3) -> Ho (2), 5/40 parcels, back after 4h 10m"
+    private static String describeTrip(TripPlanner.Trip trip) {
+        StringBuilder line = new StringBuilder();
+        line.append(trip.vehicle.getRegistrationNumber()).append(" from ").append(trip.origin)
+                .append(" after ").append(RoutePlanner.formatDuration(trip.start)).append(": ");
+        int k = 0;
+        while (k < trip.deliveries.size()) {
+            String destination = trip.deliveries.get(k).getDestination();
+            int parcels = 0;
+            while (k < trip.deliveries.size() && trip.deliveries.get(k).getDestination().equals(destination)) {
+                parcels++;
+                k++;
             }
-            scanner.nextLine(); // Consume newline
-            
-            // Assuming current date for simplicity
-            String date = "2025-08-04"; 
-            MaintenanceRecord record = new MaintenanceRecord(regNum, date, parts, totalCost);
-            vehicle.getMaintenanceHistory().put(date, record.toString());
-            System.out.println("Maintenance recorded successfully for " + regNum);
-            
-            // Re-add to queue to adjust priority
-            updateMaintenanceQueue();
-            
-            // Save data immediately
-            try {
-                saveMaintenance();
-                System.out.println("Maintenance data saved to file.");
-            } catch (IOException e) {
-                System.err.println("Error saving maintenance data: " + e.getMessage());
+            line.append(destination).append(" (").append(parcels).append(")");
+            if (k < trip.deliveries.size()) {
+                line.append(" -> ");
             }
-        } else {
-            System.out.println("Vehicle not found.");
         }
+        return line.append(", ").append(trip.deliveries.size()).append("/").append(trip.vehicle.getCapacity())
+                .append(" parcels, back after ").append(RoutePlanner.formatDuration(trip.end)).toString();
     }
-    
-    // Fuel Efficiency Reports
-    private void fuelEfficiencyReportsMenu(Scanner scanner) {
-        int choice;
-        do {
-            System.out.println("\n--- Fuel Efficiency Reports ---");
-            System.out.println("1. View Average Fuel Usage");
+
+    private void completeDelivery(Scanner scanner) {
+        System.out.print("Enter Package ID of the delivered package: ");
+        String packageID = scanner.nextLine().trim();
+        Delivery delivery;
+        synchronized (pendingDeliveries) {
+            delivery = moveDelivery(packageID, Delivery.DELIVERED);
+        }
+        if (delivery == null) {
+            System.out.println("No delivery in transit with that package ID.");
+            return;
+        }
+        System.out.println("Delivery to " + delivery.getDestination() + " completed.");
+        if (logDeliveryChange(FleetJournal.DELIVERY_STATUS, delivery)) {
+            System.out.println("Delivery data updated in file.");
+        }
+    }
+
+    // Open deliveries are found through the lists' package ID index; finished ones are
+    // looked up in the history
+    private void findDelivery(Scanner scanner) {
+        System.out.print("Enter Package ID: ");
+        String packageID = scanner.nextLine().trim();
+        Delivery delivery = findOpenDelivery(packageID);
+        if (delivery != null) {
+            System.out.println(delivery + ", vehicle " + delivery.getAssignedVehicleID()
+                    + ", driver " + delivery.getAssignedDriverID() + ", ETA " + delivery.getEta()
+                    + ", deadline " + formatDeadline(delivery.getDeadline())
+                    + ", priority " + delivery.getPriority());
+            return;
+        }
+        try {
+            CustomArrayList<DeliveryHistoryStore.Event> events = history.packageHistory(packageID);
+            if (events.isEmpty()) {
+                System.out.println("Delivery not found.");
+            } else {
+                System.out.println("Last change: " + events.get(events.size() - 1));
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading delivery history: " + e.getMessage());
+        }
+    }
+
+    private void cancelDelivery(Scanner scanner) {
+        System.out.print("Enter Package ID to cancel: ");
+        String packageID = scanner.nextLine().trim();
+        Delivery delivery;
+        synchronized (pendingDeliveries) {
+            delivery = moveDelivery(packageID, Delivery.CANCELLED);
+        }
+        if (delivery == null) {
+            System.out.println("No open delivery with that package ID.");
+            return;
+        }
+        System.out.println("Delivery " + packageID + " cancelled.");
+        if (logDeliveryChange(FleetJournal.DELIVERY_STATUS, delivery)) {
+            System.out.println("Delivery data updated in file.");
+        }
+    }
+
+    // Blank answers keep the current value. A new deadline or priority re-queues a
+    // pending delivery in the scheduler.
+    private void updateDelivery(Scanner scanner) {
+        System.out.print("Enter Package ID: ");
+        String packageID = scanner.nextLine().trim();
+        Delivery current = findOpenDelivery(packageID);
+        if (current == null) {
+            System.out.println("No open delivery with that package ID.");
+            return;
+        }
+        System.out.print("Enter New ETA (blank to keep " + current.getEta() + "): ");
+        String eta = scanner.nextLine().trim();
+        long deadline;
+        int priority;
+        try {
+            deadline = readDeadline(scanner, current.getDeadline());
+            priority = readPriority(scanner, current.getPriority());
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        Delivery delivery;
+        synchronized (pendingDeliveries) {
+            delivery = findOpenDelivery(packageID);
+            if (delivery != null) {
+                if (!eta.isEmpty()) {
+                    delivery.setEta(eta);
+                }
+                setSchedule(delivery, deadline, priority);
+            }
+        }
+        if (delivery == null) {
+            System.out.println("No open delivery with that package ID.");
+            return;
+        }
+        System.out.println(packageID + ": ETA " + delivery.getEta() + ", deadline "
+                + formatDeadline(delivery.getDeadline()) + ", priority " + delivery.getPriority() + ".");
+        if (logDeliveryChange(FleetJournal.DELIVERY_STATUS, delivery)) {
+            System.out.println("Delivery data updated in file.");
+        }
+    }
+
+    // "yyyy-MM-dd HH:mm" in local time, or blank for the current value
+    private static long readDeadline(Scanner scanner, long current) {
+        System.out.print("Enter Deadline (yyyy-MM-dd HH:mm, blank to keep " + formatDeadline(current) + ", 'none' to clear): ");
+        String input = scanner.nextLine().trim();
+        if (input.isEmpty()) {
+            return current;
+        }
+        if (input.equalsIgnoreCase("none")) {
+            return 0;
+        }
+        try {
+            return LocalDateTime.parse(input, DEADLINE_FORMAT)
+                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid deadline, use yyyy-MM-dd HH:mm.");
+        }
+    }
+
+    private static int readPriority(Scanner scanner, int current) {
+        System.out.print("Enter Priority (" + Delivery.LOWEST_PRIORITY + "-" + Delivery.HIGHEST_PRIORITY
+                + ", higher is more urgent, blank to keep " + current + "): ");
+        String input = scanner.nextLine().trim();
+        if (input.isEmpty()) {
+            return current;
+        }
+        try {
+            int priority = Integer.parseInt(input);
+            if (priority >= Delivery.LOWEST_PRIORITY && priority <= Delivery.HIGHEST_PRIORITY) {
+                return priority;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid priority, use " + Delivery.LOWEST_PRIORITY
+                + " to " + Delivery.HIGHEST_PRIORITY + ".");
+    }
+
+    private static String formatDeadline(long deadline) {
+        return deadline <= 0 ? "none" : DEADLINE_FORMAT.format(
+                Instant.ofEpochMilli(deadline).atZone(ZoneId.systemDefault()));
+    }
+
+    // Journals a delivery's new state, then adds it to the history. The history write
+    // is repeated on replay, so a crash between the two loses nothing.
+    private boolean logDeliveryChange(String type, Delivery delivery) {
+        long time = System.currentTimeMillis();
+        String[] fields = deliveryFields(delivery);
+        // The time goes right after the original seven fields, where older records have
+        // it, followed by the scheduling fields
+        String[] record = new String[fields.length + 1];
+        System.arraycopy(fields, 0, record, 0, 7);
+        record[7] = String.valueOf(time);
+        System.arraycopy(fields, 7, record, 8, fields.length - 7);
+        if (!appendChange(type, record)) {
+            return false;
+        }
+        try {
+            history.record(delivery, time);
+        } catch (IOException e) {
+            System.err.println("Error recording delivery history: " + e.getMessage());
+        }
+        compactIfDue();
+        return true;
+    }
+
+    private void deliveryHistoryMenu(Scanner scanner) {
+        int choice;
+        do {
+            System.out.println("\n--- Delivery History ---");
+            System.out.println("1. By Date Range");
+            System.out.println("2. By Vehicle");
+            System.out.println("3. By Driver");
+            System.out.println("4. By Package ID");
+            System.out.println("5. Back to Delivery Menu");
+            System.out.print("Enter your choice: ");
+            choice = scanner.nextInt();
+            scanner.nextLine();
+
+            try {
+                switch (choice) {
+                    case 1: {
+                        LocalDate[] range = readDateRange(scanner);
+                        printEvents(range, visitor -> history.scan(range[0], range[1], visitor));
+                        break;
+                    }
+                    case 2: {
+                        System.out.print("Enter Vehicle Registration Number: ");
+                        String regNum = scanner.nextLine().trim();
+                        LocalDate[] range = readDateRange(scanner);
+                        printEvents(range, visitor -> history.scanVehicle(regNum, range[0], range[1], visitor));
+                        break;
+                    }
+                    case 3: {
+                        System.out.print("Enter Driver ID: ");
+                        String driverID = scanner.nextLine().trim();
+                        LocalDate[] range = readDateRange(scanner);
+                        printEvents(range, visitor -> history.scanDriver(driverID, range[0], range[1], visitor));
+                        break;
+                    }
+                    case 4: {
+                        System.out.print("Enter Package ID: ");
+                        CustomArrayList<DeliveryHistoryStore.Event> events = history.packageHistory(scanner.nextLine().trim());
+                        if (events.isEmpty()) {
+                            System.out.println("No history for that package.");
+                        }
+                        for (int i = 0; i < events.size(); i++) {
+                            System.out.println(events.get(i));
+                        }
+                        break;
+                    }
+                    case 5:
+                        break;
+                    default:
+                        System.out.println("Invalid choice.");
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading delivery history: " + e.getMessage());
+            }
+        } while (choice != 5);
+    }
+
+    // Blank dates default to today
+    private static LocalDate[] readDateRange(Scanner scanner) {
+        LocalDate today = LocalDate.now();
+        LocalDate from = readDate(scanner, "Enter From Date (yyyy-MM-dd, blank for today): ", today);
+        LocalDate to = readDate(scanner, "Enter To Date (yyyy-MM-dd, blank for today): ", today);
+        return from.isAfter(to) ? new LocalDate[] {to, from} : new LocalDate[] {from, to};
+    }
+
+    private static LocalDate readDate(Scanner scanner, String prompt, LocalDate fallback) {
+        while (true) {
+            System.out.print(prompt);
+            String input = scanner.nextLine().trim();
+            if (input.isEmpty()) {
+                return fallback;
+            }
+            try {
+                return LocalDate.parse(input);
+            } catch (DateTimeParseException e) {
+                System.out.println("Invalid date: " + input);
+            }
+        }
+    }
+
+    private interface HistoryScan {
+        void run(DeliveryHistoryStore.Visitor visitor) throws IOException;
+    }
+
+    private static void printEvents(LocalDate[] range, HistoryScan scan) throws IOException {
+        final int[] count = new int[1];
+        scan.run(event -> {
+            System.out.println(event);
+            count[0]++;
+        });
+        System.out.println(count[0] + " change(s) between " + range[0] + " and " + range[1] + ".");
+    }
+    
+    // Maintenance Scheduler
+    private void maintenanceSchedulerMenu(Scanner scanner) {
+        int choice;
+        do {
+            System.out.println("\n--- Maintenance Scheduler ---");
+            System.out.println("1. View Next Vehicle for Maintenance");
+            System.out.println("2. Record Maintenance for a Vehicle");
+            System.out.println("3. View Maintenance History of a Vehicle");
+            System.out.println("4. Spend on a Part");
+            System.out.println("5. Spend by Part");
+            System.out.println("6. Back to Main Menu");
+            System.out.print("Enter your choice: ");
+            choice = scanner.nextInt();
+            scanner.nextLine();
+
+            switch (choice) {
+                case 1:
+                    viewNextMaintenanceVehicle();
+                    break;
+                case 2:
+                    recordMaintenance(scanner);
+                    break;
+                case 3:
+                    viewMaintenanceHistory(scanner);
+                    break;
+                case 4:
+                    viewPartSpend(scanner);
+                    break;
+                case 5:
+                    viewSpendByPart(scanner);
+                    break;
+                case 6:
+                    break;
+                default:
+                    System.out.println("Invalid choice.");
+            }
+        } while (choice != 6);
+    }
+    
+    // Full rebuild from the registry, after bulk loads. Single vehicle changes are applied
+    // incrementally by the registry listener instead.
+    void rebuildVehicleIndexes() {
+        CustomArrayList<Vehicle> vehicleList = registry.vehicles();
+        synchronized (indexLock) {
+            registrationIndex.clear();
+            // Bottom-up heap construction, O(n) rather than n sift-ups
+            maintenanceRanking.rebuild(vehicleList);
+            fuelStatistics.rebuild(vehicleList);
+            fleetColumns.rebuild(vehicleList);
+            for (int i = 0; i < vehicleList.size(); i++) {
+                Vehicle vehicle = vehicleList.get(i);
+                registrationIndex.put(vehicle.getRegistrationNumber(), vehicle);
+            }
+        }
+    }
+
+    // Registry changes go through putVehicle/dropVehicle; the registry listener keeps the
+    // maintenance ranking, the fuel statistics and the registration index in step
+    // incrementally
+    void putVehicle(Vehicle vehicle) {
+        registry.putVehicle(vehicle);
+    }
+
+    // A removed vehicle's service history goes with it; a replaced one keeps its history
+    private Vehicle dropVehicle(String regNum) {
+        Vehicle removed = registry.removeVehicle(regNum);
+        if (removed != null) {
+            maintenance.removeVehicle(regNum);
+        }
+        return removed;
+    }
+
+    private void viewNextMaintenanceVehicle() {
+        CustomArrayList<MaintenanceRanking.Ranked> due;
+        synchronized (indexLock) {
+            due = maintenanceRanking.mostUrgent(MAINTENANCE_SHOWN);
+        }
+        if (due.isEmpty()) {
+            System.out.println("No vehicles in the maintenance queue.");
+            return;
+        }
+        MaintenanceRanking.Ranked next = due.get(0);
+        System.out.println("Next vehicle for maintenance: " + next.getVehicle().getRegistrationNumber() + " (Mileage: " + next.getVehicle().getMileage() + ")");
+        System.out.println("Most urgent first:");
+        for (int i = 0; i < due.size(); i++) {
+            MaintenanceRanking.Ranked ranked = due.get(i);
+            System.out.printf("%2d. %-12s %-10s risk %6.2f  %,.0f km since service, part wear %.2f, fuel %.1f%n",
+                    i + 1, ranked.getVehicle().getRegistrationNumber(), ranked.getVehicle().getType(),
+                    ranked.getScore(), ranked.getKmSinceService(), ranked.getPartWear(),
+                    ranked.getVehicle().getFuelUsage());
+        }
+    }
+
+    private void recordMaintenance(Scanner scanner) {
+        System.out.print("Enter Registration Number of vehicle maintained: ");
+        String regNum = scanner.nextLine();
+        
+        if (registry.containsVehicle(regNum)) {
+            System.out.print("Enter parts replaced (e.g., OilChange,TireReplacement): ");
+            String partsStr = scanner.nextLine();
+            CustomHashMap<String, Double> parts = new CustomHashMap<>();
+            double totalCost = 0.0;
+            String[] partArray = partsStr.split(",");
+            for (String part : partArray) {
+                part = part.trim();
+                if (part.isEmpty()) {
+                    continue;
+                }
+                System.out.print("Enter cost for " + part + ": ");
+                double cost = scanner.nextDouble();
+                // A part named twice is one line with the summed cost
+                Double earlier = parts.get(part);
+                parts.put(part, earlier == null ? cost : earlier + cost);
+                totalCost += cost;
+            }
+            scanner.nextLine(); // Consume newline
+            
+            // The lock is only taken once the input is read; the vehicle may have been
+            // removed by another terminal in the meantime
+            boolean saved;
+            Lock lock = registry.vehicleLock(regNum);
+            lock.lock();
+            try {
+                Vehicle vehicle = registry.getVehicle(regNum);
+                if (vehicle == null) {
+                    System.out.println("Vehicle not found.");
+                    return;
+                }
+                long time = maintenance.nextTime(regNum, System.currentTimeMillis());
+                MaintenanceRecord record = new MaintenanceRecord(regNum, time, vehicle.getMileage(), parts, totalCost);
+                maintenance.put(record);
+                System.out.println("Maintenance recorded successfully for " + regNum);
+                
+                // Re-score the vehicle now its service history changed
+                synchronized (indexLock) {
+                    maintenanceRanking.serviced(regNum);
+                }
+                
+                // Save data immediately
+                saved = appendChange(FleetJournal.MAINTENANCE_PUT, record.toFields());
+            } finally {
+                lock.unlock();
+            }
+            if (saved) {
+                System.out.println("Maintenance data saved to file.");
+                compactIfDue();
+            }
+        } else {
+            System.out.println("Vehicle not found.");
+        }
+    }
+
+    private void viewMaintenanceHistory(Scanner scanner) {
+        System.out.print("Enter Registration Number: ");
+        String regNum = scanner.nextLine().trim();
+        CustomArrayList<MaintenanceRecord> records = maintenance.history(regNum);
+        if (records.isEmpty()) {
+            System.out.println("No maintenance recorded for " + regNum + ".");
+            return;
+        }
+        double total = 0;
+        for (int i = 0; i < records.size(); i++) {
+            System.out.println(records.get(i));
+            total += records.get(i).getCost();
+        }
+        System.out.printf("%d service(s), total cost %.2f%n", records.size(), total);
+    }
+
+    private void viewPartSpend(Scanner scanner) {
+        System.out.print("Enter Part Name: ");
+        String part = scanner.nextLine().trim();
+        LocalDate[] range = readDateRange(scanner);
+        CustomArrayList<MaintenanceStore.PartUse> uses = maintenance.partUses(part, startOf(range[0]), endOf(range[1]));
+        double total = 0;
+        for (int i = 0; i < uses.size(); i++) {
+            MaintenanceStore.PartUse use = uses.get(i);
+            System.out.printf("%s %s: %s %.2f%n", use.record.getDate(), use.record.getVehicleID(), use.part, use.cost);
+            total += use.cost;
+        }
+        System.out.printf("%d replacement(s) of %s between %s and %s, total %.2f%n",
+                uses.size(), part, range[0], range[1], total);
+    }
+
+    // Every part with spend in the range, most expensive first
+    private void viewSpendByPart(Scanner scanner) {
+        LocalDate[] range = readDateRange(scanner);
+        long from = startOf(range[0]);
+        long to = endOf(range[1]);
+        CustomArrayList<String> parts = maintenance.parts();
+        double[] spend = new double[parts.size()];
+        double[] mostFirst = new double[parts.size()];
+        for (int i = 0; i < spend.length; i++) {
+            spend[i] = maintenance.partSpend(parts.get(i), from, to);
+            mostFirst[i] = -spend[i];
+        }
+        double total = 0;
+        for (int index : IndexSort.sortedIndices(mostFirst)) {
+            if (spend[index] > 0) {
+                System.out.printf("%-24s %12.2f%n", parts.get(index), spend[index]);
+                total += spend[index];
+            }
+        }
+        System.out.printf("Total spend on parts between %s and %s: %.2f%n", range[0], range[1], total);
+    }
+
+    private static long startOf(LocalDate date) {
+        return date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // Last millisecond of the day
+    private static long endOf(LocalDate date) {
+        return startOf(date.plusDays(1)) - 1;
+    }
+    
+    // Fuel Efficiency Reports
+    private void fuelEfficiencyReportsMenu(Scanner scanner) {
+        int choice;
+        do {
+            System.out.println("\n--- Fuel Efficiency Reports ---");
+            System.out.println("1. View Average Fuel Usage");
             System.out.println("2. Sort Vehicles by Fuel Performance");
-            System.out.println("3. Back to Main Menu");
+            System.out.println("3. Fuel Usage by Vehicle Type");
+            System.out.println("4. Worst Vehicles by Fuel Usage");
+            System.out.println("5. Vehicles Above a Fuel Usage Threshold");
+            System.out.println("6. Fleet Analytics");
+            System.out.println("7. Back to Main Menu");
             System.out.print("Enter your choice: ");
             choice = scanner.nextInt();
             scanner.nextLine();
@@ -455,249 +1454,787 @@ public class AdomLogisticsSystem {
                     sortVehiclesByFuelPerformance();
                     break;
                 case 3:
+                    fuelUsageByType();
+                    break;
+                case 4:
+                    worstFuelUsage(scanner);
+                    break;
+                case 5:
+                    fuelUsageAboveThreshold(scanner);
+                    break;
+                case 6:
+                    fleetAnalytics(scanner);
+                    break;
+                case 7:
                     break;
                 default:
                     System.out.println("Invalid choice.");
             }
-        } while (choice != 3);
+        } while (choice != 7);
     }
     
+    // Read from the running aggregates, whatever the size of the fleet
     private void calculateAverageFuelUsage() {
-        if (vehicles.isEmpty()) {
+        String report;
+        synchronized (indexLock) {
+            FuelStatistics.Summary all = fuelStatistics.overall();
+            report = all.count() == 0 ? null : String.format(
+                    "Average Fuel Usage (L/100km): %.2f%n"
+                    + "Vehicles: %d, standard deviation %.2f, min %.2f, max %.2f, median %.2f, 95th percentile %.2f",
+                    all.mean(), all.count(), all.standardDeviation(), all.min(), all.max(),
+                    all.percentile(0.5), all.percentile(0.95));
+        }
+        System.out.println(report == null ? "No vehicles to report on." : report);
+    }
+
+    private void fuelUsageByType() {
+        StringBuilder report = new StringBuilder();
+        synchronized (indexLock) {
+            CustomArrayList<FuelStatistics.Summary> types = fuelStatistics.types();
+            for (int i = 0; i < types.size(); i++) {
+                FuelStatistics.Summary type = types.get(i);
+                report.append(String.format("%-12s %8d %8.2f %8.2f %8.2f %8.2f %8.2f %8.2f%n",
+                        type.getName().isEmpty() ? "(none)" : type.getName(), type.count(), type.mean(),
+                        type.standardDeviation(), type.min(), type.percentile(0.5), type.percentile(0.95), type.max()));
+            }
+        }
+        if (report.length() == 0) {
             System.out.println("No vehicles to report on.");
             return;
         }
-        double totalFuel = 0;
-        CustomArrayList<Vehicle> vehicleList = vehicles.values();
-        for (int i = 0; i < vehicleList.size(); i++) {
-            totalFuel += vehicleList.get(i).getFuelUsage();
-        }
-        double average = totalFuel / vehicles.size();
-        System.out.println("Average Fuel Usage (L/100km): " + String.format("%.2f", average));
+        System.out.printf("%-12s %8s %8s %8s %8s %8s %8s %8s%n",
+                "Type", "Vehicles", "Average", "Std dev", "Min", "Median", "p95", "Max");
+        System.out.print(report);
     }
     
+    // The fuel statistics keep the fleet in order, so the ranking is a walk with no sort
     private void sortVehiclesByFuelPerformance() {
-        CustomArrayList<Vehicle> vehicleList = vehicles.values();
-        
-        // Insertion Sort
-        for (int i = 1; i < vehicleList.size(); i++) {
-            Vehicle key = vehicleList.get(i);
-            int j = i - 1;
-            while (j >= 0 && vehicleList.get(j).getFuelUsage() > key.getFuelUsage()) {
-                vehicleList.set(j + 1, vehicleList.get(j));
-                j = j - 1;
-            }
-            vehicleList.set(j + 1, key);
+        CustomArrayList<Vehicle> ranking;
+        synchronized (indexLock) {
+            ranking = fuelStatistics.ranking();
         }
         
         System.out.println("Vehicles sorted by fuel usage (most efficient first):");
-        for (int i = 0; i < vehicleList.size(); i++) {
-            Vehicle v = vehicleList.get(i);
+        printFuelUsage(ranking);
+    }
+
+    private void worstFuelUsage(Scanner scanner) {
+        System.out.print("How many vehicles (blank for " + WORST_FUEL_SHOWN + "): ");
+        String input = scanner.nextLine().trim();
+        int count;
+        try {
+            count = input.isEmpty() ? WORST_FUEL_SHOWN : Integer.parseInt(input);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number: " + input);
+            return;
+        }
+        CustomArrayList<Vehicle> worst;
+        synchronized (indexLock) {
+            worst = fuelStatistics.worst(count);
+        }
+        if (worst.isEmpty()) {
+            System.out.println("No vehicles to report on.");
+            return;
+        }
+        System.out.println("Vehicles using the most fuel (worst first):");
+        printFuelUsage(worst);
+    }
+
+    private void fuelUsageAboveThreshold(Scanner scanner) {
+        System.out.print("Enter Fuel Usage threshold (L/100km): ");
+        String input = scanner.nextLine().trim();
+        double threshold;
+        try {
+            threshold = Double.parseDouble(input);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number: " + input);
+            return;
+        }
+        CustomArrayList<Vehicle> above;
+        synchronized (indexLock) {
+            above = fuelStatistics.above(threshold);
+        }
+        printFuelUsage(above);
+        System.out.println(above.size() + " vehicle(s) above " + String.format("%.2f", threshold) + " L/100km.");
+    }
+
+    // Filter, group and aggregate over the fleet columns; blank answers leave a condition out
+    private void fleetAnalytics(Scanner scanner) {
+        FleetColumns.Filter filter = new FleetColumns.Filter();
+        System.out.print("Vehicle type (blank for all): ");
+        String type = scanner.nextLine().trim();
+        if (!type.isEmpty()) {
+            filter.type(type);
+        }
+        double[] mileage = readBounds(scanner, "Mileage");
+        if (mileage == null) {
+            return;
+        }
+        filter.mileageBetween(mileage[0], mileage[1]);
+        double[] fuel = readBounds(scanner, "Fuel Usage");
+        if (fuel == null) {
+            return;
+        }
+        filter.fuelBetween(fuel[0], fuel[1]);
+        System.out.print("Drivers: 1. Any, 2. Assigned only, 3. Unassigned only (blank for any): ");
+        String drivers = scanner.nextLine().trim();
+        if (drivers.equals("2") || drivers.equals("3")) {
+            filter.hasDriver(drivers.equals("2"));
+        }
+        System.out.print("Group by: 1. Nothing, 2. Type, 3. Driver assigned (blank for type): ");
+        String group = scanner.nextLine().trim();
+        FleetColumns.GroupBy groupBy = group.equals("1") ? FleetColumns.GroupBy.NONE
+                : group.equals("3") ? FleetColumns.GroupBy.ASSIGNMENT : FleetColumns.GroupBy.TYPE;
+        System.out.print("Measure: 1. Fuel Usage, 2. Mileage (blank for fuel usage): ");
+        FleetColumns.Measure measure = scanner.nextLine().trim().equals("2")
+                ? FleetColumns.Measure.MILEAGE : FleetColumns.Measure.FUEL_USAGE;
+
+        CustomArrayList<FleetColumns.Group> groups = analyze(filter, measure, groupBy);
+        if (groups.isEmpty()) {
+            System.out.println("No vehicles match.");
+            return;
+        }
+        System.out.printf("%-12s %8s %12s %12s %12s %14s%n", "Group", "Vehicles", "Average", "Min", "Max", "Total");
+        for (int i = 0; i < groups.size(); i++) {
+            FleetColumns.Group g = groups.get(i);
+            System.out.printf("%-12s %8d %12.2f %12.2f %12.2f %14.2f%n",
+                    g.getLabel().isEmpty() ? "(none)" : g.getLabel(), g.getCount(), g.getMean(),
+                    g.getMin(), g.getMax(), g.getSum());
+        }
+    }
+
+    CustomArrayList<FleetColumns.Group> analyze(FleetColumns.Filter filter, FleetColumns.Measure measure,
+                                                FleetColumns.GroupBy groupBy) {
+        synchronized (indexLock) {
+            return fleetColumns.aggregate(filter, measure, groupBy);
+        }
+    }
+
+    // {min, max}, open-ended where left blank; null after an invalid number
+    private static double[] readBounds(Scanner scanner, String what) {
+        double[] bounds = {Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+        String[] prompts = {"Minimum ", "Maximum "};
+        for (int i = 0; i < 2; i++) {
+            System.out.print(prompts[i] + what + " (blank for none): ");
+            String input = scanner.nextLine().trim();
+            if (input.isEmpty()) {
+                continue;
+            }
+            try {
+                bounds[i] = Double.parseDouble(input);
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid number: " + input);
+                return null;
+            }
+        }
+        return bounds;
+    }
+
+    private static void printFuelUsage(CustomArrayList<Vehicle> vehicles) {
+        for (int i = 0; i < vehicles.size(); i++) {
+            Vehicle v = vehicles.get(i);
             System.out.println(v.getRegistrationNumber() + " - Fuel Usage: " + String.format("%.2f", v.getFuelUsage()));
         }
     }
 
     // File Handling
-    private void loadData() {
+    // The .txt files are a snapshot; every change made since the snapshot lives in the
+    // journal and is replayed on top of it.
+    //
+    // The files are split into chunks parsed in parallel. Drivers and deliveries are
+    // parsed while the vehicles load; maintenance rows, which need their vehicle, are
+    // read once the vehicles are registered.
+    void loadData() {
         try {
+            ParallelCsvReader.Pending<CustomArrayList<Driver>> drivers =
+                    forkIfExists(DRIVERS_FILE, AdomLogisticsSystem::parseDrivers);
+            ParallelCsvReader.Pending<CustomArrayList<Delivery>> deliveries =
+                    forkIfExists(DELIVERIES_FILE, AdomLogisticsSystem::parseDeliveries);
             loadVehicles();
-            loadDrivers();
-            loadDeliveries();
+            if (drivers != null) {
+                loadDrivers(concat(drivers.join()));
+            }
+            if (deliveries != null) {
+                loadDeliveries(concat(deliveries.join()));
+            }
             loadMaintenance();
+            loadRoads();
+            // Replayed changes are not in the snapshot yet
+            if (journal.replay(this::applyJournalRecord) > 0) {
+                persistence.markDirty(ALL_FILES);
+            }
+            journal.open();
         } catch (IOException e) {
             System.err.println("Error loading data: " + e.getMessage());
         }
     }
 
-    private void saveData() {
+    // Blocks until every change is in the snapshot files; only files that changed since
+    // the last snapshot are rewritten
+    void saveData() {
+        try {
+            persistence.flush();
+            history.sync();
+        } catch (IOException e) {
+            System.err.println("Error saving data: " + e.getMessage());
+        }
+    }
+
+    // Marks every file as changed, so the next snapshot rewrites them all
+    void markAllDirty() {
+        persistence.markDirty(ALL_FILES);
+    }
+
+    // Releases the journal without writing a snapshot, for instances that are discarded
+    // rather than exited (benchmarks)
+    void close() {
+        persistence.close();
+        try {
+            journal.close();
+            history.close();
+        } catch (IOException e) {
+            System.err.println("Error closing journal: " + e.getMessage());
+        }
+    }
+
+    // Appends a change to the journal and compacts it if the active segment is full
+    private boolean logChange(String type, String... fields) {
+        if (!appendChange(type, fields)) {
+            return false;
+        }
+        compactIfDue();
+        return true;
+    }
+
+    // Appends only; used while a vehicle lock is held, where compacting (which reads every
+    // stripe) must wait until the lock is released
+    private boolean appendChange(String type, String... fields) {
+        return appendChange((Runnable) null, type, fields);
+    }
+
+    // Appends, then runs publish to make the change visible (see PersistenceService.append)
+    private boolean appendChange(Runnable publish, String type, String... fields) {
         try {
-            saveVehicles();
-            saveDrivers();
-            saveDeliveries();
-            saveMaintenance();
+            persistence.append(filesChangedBy(type), publish, type, fields);
+            return true;
         } catch (IOException e) {
             System.err.println("Error saving data: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Snapshot files that a journal record of the given type can change
+    private static int filesChangedBy(String type) {
+        switch (type) {
+            case FleetJournal.VEHICLE_PUT:
+                // Replacing a vehicle can free its old driver; its service history stays
+                return VEHICLES | DRIVERS;
+            case FleetJournal.VEHICLE_REMOVE:
+                // Removing a vehicle also drops its history and frees its driver
+                return VEHICLES | DRIVERS | MAINTENANCE;
+            case FleetJournal.DRIVER_ADD:
+                return DRIVERS;
+            case FleetJournal.DRIVER_ASSIGN:
+                return VEHICLES | DRIVERS;
+            case FleetJournal.DELIVERY_ADD:
+                return DELIVERIES | DRIVERS;
+            case FleetJournal.DELIVERY_PROCESS:
+            case FleetJournal.DELIVERY_STATUS:
+                return DELIVERIES;
+            case FleetJournal.MAINTENANCE_PUT:
+                return MAINTENANCE;
+            default:
+                return ALL_FILES;
+        }
+    }
+
+    // Hands the journal to the persistence thread for compaction once the active segment
+    // is full; the caller never waits for the snapshot
+    private void compactIfDue() {
+        if (journal.recordsInActiveSegment() >= COMPACTION_THRESHOLD) {
+            persistence.requestSnapshot();
+        }
+    }
+
+    // Runs on the persistence thread. Segments are only deleted once the new snapshot is
+    // fully on disk, so a crash mid-write replays them again on the next start; records
+    // made while the files are rendered may already be in them, and replaying those is
+    // harmless because every record sets state rather than adjusting it.
+    private void writeSnapshot(int files) throws IOException {
+        // The history must be on disk before the journal records that produced it go
+        history.sync();
+        if ((files & VEHICLES) != 0) {
+            CustomArrayList<Vehicle> vehicles = registry.vehicles();
+            writeAtomically(dataFile(VEHICLES_FILE), render(writer -> saveVehicles(vehicles, writer)));
+        }
+        if ((files & DRIVERS) != 0) {
+            writeAtomically(dataFile(DRIVERS_FILE), render(this::saveDrivers));
+        }
+        if ((files & DELIVERIES) != 0) {
+            writeAtomically(dataFile(DELIVERIES_FILE), render(this::saveDeliveries));
+        }
+        if ((files & MAINTENANCE) != 0) {
+            writeAtomically(dataFile(MAINTENANCE_FILE), render(this::saveMaintenance));
+        }
+    }
+
+    private interface FileRenderer {
+        void render(Writer target);
+    }
+
+    private static String render(FileRenderer renderer) {
+        StringWriter content = new StringWriter();
+        renderer.render(content);
+        return content.toString();
+    }
+
+    private static void writeAtomically(String path, String content) throws IOException {
+        PersistenceService.writeAtomically(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void applyJournalRecord(String type, String[] fields) {
+        switch (type) {
+            case FleetJournal.VEHICLE_PUT: {
+                Vehicle vehicle = new Vehicle(fields[0], fields[1],
+                        Double.parseDouble(fields[2]), Double.parseDouble(fields[3]));
+                if (!fields[4].isEmpty()) {
+                    vehicle.setDriverID(fields[4]);
+                }
+                // Records written before vehicles had a capacity keep the type's default
+                if (fields.length > 5) {
+                    vehicle.setCapacity(Integer.parseInt(fields[5]));
+                }
+                putVehicle(vehicle);
+                break;
+            }
+            case FleetJournal.VEHICLE_REMOVE:
+                dropVehicle(fields[0]);
+                break;
+            case FleetJournal.DRIVER_ADD:
+                // Sets state: a driver already pooled or assigned is not added again
+                if (!registry.hasDriver(fields[0])) {
+                    registry.addDriver(new Driver(fields[0], fields[1], Integer.parseInt(fields[2])));
+                }
+                break;
+            case FleetJournal.DRIVER_ASSIGN:
+                registry.assignDriver(fields[0], fields[1]);
+                break;
+            case FleetJournal.DELIVERY_ADD: {
+                registry.takeAvailableDriver(fields[4]);
+                Delivery delivery = replayedDelivery(fields);
+                replayHistory(delivery, fields);
+                synchronized (pendingDeliveries) {
+                    if (findOpenDelivery(fields[0]) == null) {
+                        addPending(delivery);
+                    }
+                }
+                break;
+            }
+            case FleetJournal.DELIVERY_PROCESS:
+                synchronized (pendingDeliveries) {
+                    pendingDeliveries.removeKey(fields[0]);
+                    scheduler.remove(fields[0]);
+                }
+                break;
+            case FleetJournal.DELIVERY_STATUS: {
+                Delivery changed = replayedDelivery(fields);
+                replayHistory(changed, fields);
+                synchronized (pendingDeliveries) {
+                    // Not found, or not able to move, when the snapshot already has the change;
+                    // later records bring the ETA and schedule up to date again
+                    Delivery delivery = findOpenDelivery(fields[0]);
+                    if (delivery != null) {
+                        if (!delivery.getStatus().equals(changed.getStatus())) {
+                            moveDelivery(fields[0], changed.getStatus());
+                        }
+                        delivery.setEta(changed.getEta());
+                        delivery.setAssignment(changed.getAssignedVehicleID(), changed.getAssignedDriverID());
+                        if (fields.length >= 11) {
+                            setSchedule(delivery, changed.getDeadline(), changed.getPriority());
+                        }
+                    }
+                }
+                break;
+            }
+            case FleetJournal.MAINTENANCE_PUT: {
+                if (registry.containsVehicle(fields[0])) {
+                    maintenance.put(MaintenanceRecord.fromFields(fields));
+                    synchronized (indexLock) {
+                        maintenanceRanking.serviced(fields[0]);
+                    }
+                }
+                break;
+            }
+            default:
+                System.err.println("Skipping unknown journal record: " + type);
+        }
+    }
+
+    // Delivery records hold the seven delivery fields, the time of the change, then the
+    // deadline, priority and creation time. Older records stop after the first seven or
+    // eight; their deliveries count as created at the time of the change, or now.
+    private static Delivery replayedDelivery(String[] fields) {
+        Delivery delivery = new Delivery(fields[0], fields[1], fields[2],
+                fields[3], fields[4], fields[5], fields[6]);
+        long time = fields.length >= 8 ? Long.parseLong(fields[7]) : System.currentTimeMillis();
+        if (fields.length >= 11) {
+            readSchedule(delivery, fields[8], fields[9], fields[10]);
+        } else {
+            delivery.setCreatedAt(time);
+        }
+        return delivery;
+    }
+
+    // Records written before the history existed carry no time and are not replayed into it
+    private void replayHistory(Delivery delivery, String[] fields) {
+        if (fields.length < 8) {
+            return;
+        }
+        try {
+            history.record(delivery, Long.parseLong(fields[7]));
+        } catch (IOException e) {
+            System.err.println("Error recording delivery history: " + e.getMessage());
+        }
+    }
+
+    // Called holding pendingDeliveries' monitor
+    private void addPending(Delivery delivery) {
+        pendingDeliveries.add(delivery);
+        scheduler.add(delivery);
+    }
+
+    // Called holding pendingDeliveries' monitor
+    private void setSchedule(Delivery delivery, long deadline, int priority) {
+        if (delivery.getDeadline() != deadline || delivery.getPriority() != priority) {
+            delivery.setDeadline(deadline);
+            delivery.setPriority(priority);
+            scheduler.update(delivery);
+        }
+    }
+
+    private Delivery findOpenDelivery(String packageID) {
+        synchronized (pendingDeliveries) {
+            Delivery delivery = pendingDeliveries.find(packageID);
+            return delivery != null ? delivery : inTransitDeliveries.find(packageID);
+        }
+    }
+
+    // Moves an open delivery to a new status, in O(1) through the package ID index.
+    // Returns the delivery, or null if it is not open or cannot move to that status.
+    // Called holding pendingDeliveries' monitor.
+    private Delivery moveDelivery(String packageID, String status) {
+        CustomLinkedList<Delivery> from = pendingDeliveries.containsKey(packageID)
+                ? pendingDeliveries : inTransitDeliveries;
+        Delivery delivery = from.find(packageID);
+        if (delivery == null || !Delivery.canMove(delivery.getStatus(), status)) {
+            return null;
+        }
+        from.removeKey(packageID);
+        if (from == pendingDeliveries) {
+            scheduler.remove(packageID);
+        }
+        delivery.setStatus(status);
+        if (Delivery.IN_TRANSIT.equals(status)) {
+            inTransitDeliveries.add(delivery);
+        }
+        return delivery;
+    }
+
+    // Pending deliveries followed by those in transit
+    private CustomArrayList<Delivery> openDeliveries() {
+        synchronized (pendingDeliveries) {
+            CustomArrayList<Delivery> open = pendingDeliveries.toArrayList();
+            CustomArrayList<Delivery> inTransit = inTransitDeliveries.toArrayList();
+            for (int i = 0; i < inTransit.size(); i++) {
+                open.add(inTransit.get(i));
+            }
+            return open;
+        }
+    }
+
+    private static String[] vehicleFields(Vehicle vehicle) {
+        return new String[] {
+            vehicle.getRegistrationNumber(), vehicle.getType(),
+            String.valueOf(vehicle.getMileage()), String.valueOf(vehicle.getFuelUsage()),
+            vehicle.getDriverID() != null ? vehicle.getDriverID() : "",
+            String.valueOf(vehicle.getCapacity())
+        };
+    }
+
+    private static String[] deliveryFields(Delivery delivery) {
+        return new String[] {
+            delivery.getPackageID(), delivery.getOrigin(), delivery.getDestination(),
+            delivery.getAssignedVehicleID(), delivery.getAssignedDriverID(),
+            delivery.getEta(), delivery.getStatus(),
+            String.valueOf(delivery.getDeadline()), String.valueOf(delivery.getPriority()),
+            String.valueOf(delivery.getCreatedAt())
+        };
+    }
+
+    // Deliveries written before scheduling existed have none of these fields; unreadable
+    // values keep the defaults
+    private static void readSchedule(Delivery delivery, String deadline, String priority, String createdAt) {
+        try {
+            delivery.setDeadline(Long.parseLong(deadline));
+            delivery.setPriority(Integer.parseInt(priority));
+            delivery.setCreatedAt(Long.parseLong(createdAt));
+        } catch (NumberFormatException e) {
+            // Keep the defaults for whatever did not parse
         }
     }
     
     // File I/O Implementation
     private void loadVehicles() throws IOException {
-        File file = new File(VEHICLES_FILE);
+        File file = new File(dataFile(VEHICLES_FILE));
         if (!file.exists()) return;
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-                String[] parts = line.split(",");
-                if (parts.length >= 4) {
-                    String regNum = parts[0].trim();
-                    String type = parts[1].trim();
-                    double mileage = Double.parseDouble(parts[2].trim());
-                    double fuelUsage = Double.parseDouble(parts[3].trim());
-                    Vehicle vehicle = new Vehicle(regNum, type, mileage, fuelUsage);
-                    if (parts.length > 4 && !parts[4].trim().isEmpty()) {
-                        vehicle.setDriverID(parts[4].trim());
-                    }
-                    vehicles.put(regNum, vehicle);
+
+        // Chunks come back in file order, so a registration listed twice keeps its last row
+        registry.putVehicles(concat(ParallelCsvReader.read(file, AdomLogisticsSystem::parseVehicles)));
+    }
+
+    private static CustomArrayList<Vehicle> parseVehicles(CsvTokenizer row) throws IOException {
+        CustomArrayList<Vehicle> loaded = new CustomArrayList<>();
+        while (row.next()) {
+            if (row.fieldCount() >= 4) {
+                Vehicle vehicle = new Vehicle(row.field(0), row.internedField(1),
+                                              row.doubleField(2), row.doubleField(3));
+                if (row.fieldCount() > 4 && !row.isEmpty(4)) {
+                    vehicle.setDriverID(row.field(4));
                 }
+                if (row.fieldCount() > 5 && !row.isEmpty(5)) {
+                    vehicle.setCapacity(row.intField(5));
+                }
+                loaded.add(vehicle);
             }
         }
-        updateMaintenanceQueue();
+        return loaded;
+    }
+
+    // The road network is read-only reference data, outside the snapshot and journal
+    private void loadRoads() throws IOException {
+        File file = new File(dataFile(ROADS_FILE));
+        if (file.exists()) {
+            routes = RoutePlanner.load(file);
+        }
+    }
+
+    private <R> ParallelCsvReader.Pending<R> forkIfExists(String fileName, ParallelCsvReader.ChunkParser<R> parser)
+            throws IOException {
+        File file = new File(dataFile(fileName));
+        return file.exists() ? ParallelCsvReader.fork(file, parser) : null;
+    }
+
+    // Joins per-chunk lists into one list, presized for the total
+    private static <T> CustomArrayList<T> concat(CustomArrayList<CustomArrayList<T>> chunks) {
+        int total = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            total += chunks.get(i).size();
+        }
+        CustomArrayList<T> all = new CustomArrayList<>(Math.max(total, 1));
+        for (int i = 0; i < chunks.size(); i++) {
+            CustomArrayList<T> chunk = chunks.get(i);
+            for (int j = 0; j < chunk.size(); j++) {
+                all.add(chunk.get(j));
+            }
+        }
+        return all;
     }
     
-    private void saveVehicles() throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(VEHICLES_FILE))) {
-            CustomArrayList<Vehicle> vehicleList = vehicles.values();
-            for (int i = 0; i < vehicleList.size(); i++) {
-                Vehicle vehicle = vehicleList.get(i);
-                writer.println(vehicle.getRegistrationNumber() + "," + 
-                             vehicle.getType() + "," + 
+    private void saveVehicles(CustomArrayList<Vehicle> vehicles, Writer target) {
+        try (PrintWriter writer = new PrintWriter(target)) {
+            for (int i = 0; i < vehicles.size(); i++) {
+                Vehicle vehicle = vehicles.get(i);
+                writer.println(CsvTokenizer.quote(vehicle.getRegistrationNumber()) + "," + 
+                             CsvTokenizer.quote(vehicle.getType()) + "," + 
                              vehicle.getMileage() + "," + 
                              vehicle.getFuelUsage() + "," + 
-                             (vehicle.getDriverID() != null ? vehicle.getDriverID() : ""));
+                             (vehicle.getDriverID() != null ? CsvTokenizer.quote(vehicle.getDriverID()) : "") + "," +
+                             vehicle.getCapacity());
             }
         }
     }
     
-    private void loadDrivers() throws IOException {
-        File file = new File(DRIVERS_FILE);
-        if (!file.exists()) return;
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-                String[] parts = line.split(",");
-                if (parts.length >= 4) {
-                    String driverID = parts[0].trim();
-                    String name = parts[1].trim();
-                    int experience = Integer.parseInt(parts[2].trim());
-                    boolean isAvailable = Boolean.parseBoolean(parts[3].trim());
-                    Driver driver = new Driver(driverID, name, experience);
-                    driver.setAvailable(isAvailable);
-                    if (isAvailable) {
-                        availableDrivers.add(driver);
-                    }
-                }
+    private static CustomArrayList<Driver> parseDrivers(CsvTokenizer row) throws IOException {
+        CustomArrayList<Driver> loaded = new CustomArrayList<>();
+        while (row.next()) {
+            if (row.fieldCount() >= 4) {
+                Driver driver = new Driver(row.field(0), row.field(1), row.intField(2));
+                driver.setAvailable(row.booleanField(3));
+                loaded.add(driver);
+            }
+        }
+        return loaded;
+    }
+
+    private void loadDrivers(CustomArrayList<Driver> drivers) {
+        CustomArrayList<Driver> available = new CustomArrayList<>(Math.max(drivers.size(), 1));
+        for (int i = 0; i < drivers.size(); i++) {
+            Driver driver = drivers.get(i);
+            if (driver.isAvailable()) {
+                available.add(driver);
+            } else {
+                // Vehicles are loaded first, so the assignment is already indexed
+                registry.addAssignedDriver(driver);
             }
         }
+        registry.addDrivers(available);
     }
 
-    private void saveDrivers() throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(DRIVERS_FILE))) {
+    private void saveDrivers(Writer target) {
+        try (PrintWriter writer = new PrintWriter(target)) {
             // Save available drivers
-            CustomArrayList<Driver> driverList = availableDrivers.toList();
+            CustomArrayList<Driver> driverList = registry.availableDrivers();
             for (int i = 0; i < driverList.size(); i++) {
                 Driver driver = driverList.get(i);
-                writer.println(driver.getDriverID() + "," + 
-                             driver.getName() + "," + 
+                writer.println(CsvTokenizer.quote(driver.getDriverID()) + "," + 
+                             CsvTokenizer.quote(driver.getName()) + "," + 
                              driver.getExperience() + "," + 
                              driver.isAvailable());
             }
             // Save assigned drivers (those with vehicles)
-            CustomArrayList<Vehicle> vehicleList = vehicles.values();
-            for (int i = 0; i < vehicleList.size(); i++) {
-                Vehicle vehicle = vehicleList.get(i);
-                if (vehicle.getDriverID() != null && !vehicle.getDriverID().isEmpty()) {
-                    // Find if this driver is already saved
-                    boolean alreadySaved = false;
-                    for (int j = 0; j < driverList.size(); j++) {
-                        Driver driver = driverList.get(j);
-                        if (driver.getDriverID().equals(vehicle.getDriverID())) {
-                            alreadySaved = true;
-                            break;
-                        }
-                    }
-                    if (!alreadySaved) {
-                        writer.println(vehicle.getDriverID() + ",AssignedDriver,5,false");
-                    }
+            CustomArrayList<Driver> assignedList = registry.assignedDrivers();
+            for (int i = 0; i < assignedList.size(); i++) {
+                Driver driver = assignedList.get(i);
+                writer.println(CsvTokenizer.quote(driver.getDriverID()) + "," + 
+                             CsvTokenizer.quote(driver.getName()) + "," + 
+                             driver.getExperience() + "," + 
+                             driver.isAvailable());
+            }
+        }
+    }
+
+    private static CustomArrayList<Delivery> parseDeliveries(CsvTokenizer row) throws IOException {
+        CustomArrayList<Delivery> loaded = new CustomArrayList<>();
+        while (row.next()) {
+            if (row.fieldCount() >= 7) {
+                // Cities, ETAs and statuses repeat across rows and share one String each
+                Delivery delivery = new Delivery(row.field(0), row.internedField(1), row.internedField(2),
+                                                 row.field(3), row.field(4), row.internedField(5),
+                                                 row.internedField(6));
+                if (row.fieldCount() >= 10) {
+                    readSchedule(delivery, row.field(7), row.field(8), row.field(9));
                 }
+                loaded.add(delivery);
             }
         }
+        return loaded;
     }
 
-    private void loadDeliveries() throws IOException {
-        File file = new File(DELIVERIES_FILE);
-        if (!file.exists()) return;
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-                String[] parts = line.split(",");
-                if (parts.length >= 7) {
-                    String packageID = parts[0].trim();
-                    String origin = parts[1].trim();
-                    String destination = parts[2].trim();
-                    String vehicleID = parts[3].trim();
-                    String driverID = parts[4].trim();
-                    String eta = parts[5].trim();
-                    String status = parts[6].trim();
-                    Delivery delivery = new Delivery(packageID, origin, destination, vehicleID, driverID, eta, status);
-                    if (status.equals("Pending")) {
-                        pendingDeliveries.add(delivery);
-                    }
+    // Older files may still hold finished deliveries; those move to the history, dated
+    // with the file's last change, and drop out of the file at the next snapshot. Rows
+    // without a creation time are taken to be as old as the file.
+    private void loadDeliveries(CustomArrayList<Delivery> deliveries) throws IOException {
+        CustomArrayList<Delivery> finished = new CustomArrayList<>();
+        long fileTime = new File(dataFile(DELIVERIES_FILE)).lastModified();
+        synchronized (pendingDeliveries) {
+            for (int i = 0; i < deliveries.size(); i++) {
+                Delivery delivery = deliveries.get(i);
+                if (delivery.getCreatedAt() == 0) {
+                    delivery.setCreatedAt(fileTime);
+                }
+                boolean open = Delivery.PENDING.equals(delivery.getStatus())
+                        || Delivery.IN_TRANSIT.equals(delivery.getStatus());
+                if (open && findOpenDelivery(delivery.getPackageID()) != null) {
+                    continue; // Listed twice, the first row wins
+                }
+                if (Delivery.PENDING.equals(delivery.getStatus())) {
+                    addPending(delivery);
+                } else if (Delivery.IN_TRANSIT.equals(delivery.getStatus())) {
+                    inTransitDeliveries.add(delivery);
+                } else {
+                    finished.add(delivery);
                 }
             }
         }
+        if (!finished.isEmpty()) {
+            history.recordAll(finished, fileTime);
+            persistence.markDirty(DELIVERIES);
+        }
     }
 
-    private void saveDeliveries() throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(DELIVERIES_FILE))) {
-            CustomArrayList<Delivery> deliveryList = pendingDeliveries.toArrayList();
+    private void saveDeliveries(Writer target) {
+        try (PrintWriter writer = new PrintWriter(target)) {
+            CustomArrayList<Delivery> deliveryList = openDeliveries();
             for (int i = 0; i < deliveryList.size(); i++) {
                 Delivery delivery = deliveryList.get(i);
-                writer.println(delivery.getPackageID() + "," + 
-                             delivery.getOrigin() + "," + 
-                             delivery.getDestination() + "," + 
-                             delivery.getAssignedVehicleID() + "," + 
-                             delivery.getAssignedDriverID() + "," + 
-                             delivery.getEta() + "," + 
-                             delivery.getStatus());
+                writer.println(CsvTokenizer.quote(delivery.getPackageID()) + "," + 
+                             CsvTokenizer.quote(delivery.getOrigin()) + "," + 
+                             CsvTokenizer.quote(delivery.getDestination()) + "," + 
+                             CsvTokenizer.quote(delivery.getAssignedVehicleID()) + "," + 
+                             CsvTokenizer.quote(delivery.getAssignedDriverID()) + "," + 
+                             CsvTokenizer.quote(delivery.getEta()) + "," + 
+                             CsvTokenizer.quote(delivery.getStatus()) + "," +
+                             delivery.getDeadline() + "," +
+                             delivery.getPriority() + "," +
+                             delivery.getCreatedAt());
             }
         }
     }
 
     private void loadMaintenance() throws IOException {
-        File file = new File(MAINTENANCE_FILE);
+        File file = new File(dataFile(MAINTENANCE_FILE));
         if (!file.exists()) return;
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-                String[] parts = line.split(",");
-                if (parts.length >= 3) {
-                    String vehicleID = parts[0].trim();
-                    String date = parts[1].trim();
-                    String maintenanceDetails = parts[2].trim();
-                    Vehicle vehicle = vehicles.get(vehicleID);
-                    if (vehicle != null) {
-                        vehicle.getMaintenanceHistory().put(date, maintenanceDetails);
+        // Chunks are applied as they are parsed, under each vehicle's lock
+        ParallelCsvReader.read(file, this::applyMaintenanceRows);
+        // The ranking was built before the history was there; one pass scores every
+        // vehicle against it instead of re-scoring per record
+        CustomArrayList<Vehicle> vehicleList = registry.vehicles();
+        synchronized (indexLock) {
+            maintenanceRanking.rebuild(vehicleList);
+        }
+    }
+
+    private Integer applyMaintenanceRows(CsvTokenizer row) throws IOException {
+        int applied = 0;
+        while (row.next()) {
+            if (row.fieldCount() >= 3) {
+                String[] fields = new String[row.fieldCount()];
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = row.field(i);
+                }
+                MaintenanceRecord record;
+                try {
+                    record = MaintenanceRecord.fromFields(fields);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Skipping maintenance line " + row.lineNumber() + ": " + e.getMessage());
+                    continue;
+                }
+                // Under the vehicle's lock, so a record is never kept for a vehicle that
+                // is being removed
+                Lock lock = registry.vehicleLock(record.getVehicleID());
+                lock.lock();
+                try {
+                    if (registry.containsVehicle(record.getVehicleID())) {
+                        maintenance.put(record);
+                        applied++;
                     }
+                } finally {
+                    lock.unlock();
                 }
             }
         }
+        return applied;
     }
 
-    private void saveMaintenance() throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(MAINTENANCE_FILE))) {
-            CustomArrayList<Vehicle> vehicleList = vehicles.values();
-            for (int i = 0; i < vehicleList.size(); i++) {
-                Vehicle vehicle = vehicleList.get(i);
-                CustomArrayList<CustomHashMap.Entry<String, String>> entries = vehicle.getMaintenanceHistory().entrySet();
-                for (int j = 0; j < entries.size(); j++) {
-                    CustomHashMap.Entry<String, String> entry = entries.get(j);
-                    writer.println(vehicle.getRegistrationNumber() + "," + 
-                                 entry.getKey() + "," + 
-                                 entry.getValue());
+    private void saveMaintenance(Writer target) {
+        try (PrintWriter writer = new PrintWriter(target)) {
+            StringBuilder line = new StringBuilder();
+            maintenance.forEach(record -> {
+                line.setLength(0);
+                String[] fields = record.toFields();
+                for (int i = 0; i < fields.length; i++) {
+                    if (i > 0) {
+                        line.append(',');
+                    }
+                    CsvTokenizer.appendField(line, fields[i]);
                 }
-            }
+                writer.println(line);
+            });
         }
     }
 
-    public CustomPriorityQueue<Vehicle> getMaintenanceQueue() {
-        return maintenanceQueue;
+    public MaintenanceRanking getMaintenanceRanking() {
+        return maintenanceRanking;
     }
 }
\ No newline at end of file
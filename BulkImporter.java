@@ -0,0 +1,125 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import algorithms.CsvTokenizer;
+import algorithms.CustomArrayList;
+
+// Streams a large CSV file into objects for the non-interactive import mode. Rows are
+// read with a CsvTokenizer, so numbers are parsed in place and the only allocations
+// per row are the strings the parsed object keeps.
+//
+// Each row goes through a RowParser, which throws IllegalArgumentException with a reason
+// for rows it rejects. Rejected rows are counted and the first few are reported with
+// their line number; a rejected first line is taken to be a header.
+public class BulkImporter<T> {
+    public interface RowParser<T> {
+        T parse(CsvTokenizer row);
+    }
+
+    private static final int PROGRESS_INTERVAL = 100_000;
+    private static final int MAX_REPORTED_REJECTS = 10;
+
+    private final String label;
+    private final int minFields;
+    private final RowParser<T> parser;
+
+    private long rowsRead;
+    private long rowsAccepted;
+    private long rowsRejected;
+    private long startNanos;
+    private long endNanos;
+
+    public BulkImporter(String label, int minFields, RowParser<T> parser) {
+        this.label = label;
+        this.minFields = minFields;
+        this.parser = parser;
+    }
+
+    public CustomArrayList<T> read(String path) throws IOException {
+        CustomArrayList<T> rows = new CustomArrayList<>();
+        startNanos = System.nanoTime();
+        try (CsvTokenizer row = new CsvTokenizer(
+                new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8))) {
+            while (row.next()) {
+                accept(row, rows);
+            }
+        }
+        endNanos = System.nanoTime();
+        return rows;
+    }
+
+    private void accept(CsvTokenizer row, CustomArrayList<T> rows) {
+        rowsRead++;
+        try {
+            if (row.fieldCount() < minFields) {
+                throw new IllegalArgumentException("expected at least " + minFields + " fields, found " + row.fieldCount());
+            }
+            rows.add(parser.parse(row));
+            rowsAccepted++;
+        } catch (IllegalArgumentException e) {
+            if (row.lineNumber() == 1) {
+                return; // Header
+            }
+            rowsRejected++;
+            if (rowsRejected <= MAX_REPORTED_REJECTS) {
+                System.err.println(label + " line " + row.lineNumber() + " rejected: " + e.getMessage());
+            }
+        }
+        if (rowsRead % PROGRESS_INTERVAL == 0) {
+            System.out.println("  " + rowsRead + " " + label + " rows read, "
+                    + (long) rate(rowsRead, System.nanoTime() - startNanos) + " rows/s");
+        }
+    }
+
+    public long rowsAccepted() {
+        return rowsAccepted;
+    }
+
+    public long rowsRejected() {
+        return rowsRejected;
+    }
+
+    public String summary() {
+        long elapsed = endNanos - startNanos;
+        return String.format("%s: %d rows read, %d accepted, %d rejected in %.2f s (%d rows/s)",
+                label, rowsRead, rowsAccepted, rowsRejected, elapsed / 1e9, (long) rate(rowsRead, elapsed));
+    }
+
+    private static double rate(long rows, long nanos) {
+        return nanos <= 0 ? 0 : rows * 1e9 / nanos;
+    }
+
+    // Helpers for RowParsers
+
+    public static String required(CsvTokenizer row, int field, String name) {
+        if (row.isEmpty(field)) {
+            throw new IllegalArgumentException(name + " is empty");
+        }
+        return row.field(field);
+    }
+
+    public static double nonNegativeDouble(CsvTokenizer row, int field, String name) {
+        double result;
+        try {
+            result = row.doubleField(field);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " is " + e.getMessage());
+        }
+        if (!(result >= 0) || Double.isInfinite(result)) {
+            throw new IllegalArgumentException(name + " must be a non-negative number: " + result);
+        }
+        return result;
+    }
+
+    public static int nonNegativeInt(CsvTokenizer row, int field, String name) {
+        int result;
+        try {
+            result = row.intField(field);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " is " + e.getMessage());
+        }
+        if (result < 0) {
+            throw new IllegalArgumentException(name + " must not be negative: " + result);
+        }
+        return result;
+    }
+}
@@ -1,6 +1,19 @@
 import algorithms.CustomArrayList;
 import algorithms.CustomHashMap;
 public class Delivery {
+    // A delivery moves Pending -> InTransit -> Delivered, and can be cancelled until it
+    // has been delivered
+    public static final String PENDING = "Pending";
+    public static final String IN_TRANSIT = "InTransit";
+    public static final String DELIVERED = "Delivered";
+    public static final String CANCELLED = "Cancelled";
+
+    // Priorities run from LOWEST to HIGHEST; see DeliveryScheduler for how they weigh
+    // against deadlines
+    public static final int LOWEST_PRIORITY = 1;
+    public static final int NORMAL_PRIORITY = 3;
+    public static final int HIGHEST_PRIORITY = 5;
+
     private String packageID;
     private String origin;
     private String destination;
@@ -8,6 +21,10 @@ public class Delivery {
     private String assignedDriverID;
     private String eta;
     private String status;
+    // Epoch milliseconds; a deadline of 0 means none
+    private long deadline;
+    private int priority = NORMAL_PRIORITY;
+    private long createdAt;
 
     public Delivery(String packageID, String origin, String destination, 
                    String vehicleID, String driverID, String eta, String status) {
@@ -52,7 +69,43 @@ public class Delivery {
     public void setStatus(String status) {
         this.status = status;
     }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(long deadline) {
+        this.deadline = Math.max(0, deadline);
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = Math.max(LOWEST_PRIORITY, Math.min(HIGHEST_PRIORITY, priority));
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public static boolean canMove(String from, String to) {
+        return (PENDING.equals(from) && IN_TRANSIT.equals(to))
+                || (IN_TRANSIT.equals(from) && DELIVERED.equals(to))
+                || ((PENDING.equals(from) || IN_TRANSIT.equals(from)) && CANCELLED.equals(to));
+    }
     
+    // Moves the delivery to another vehicle and its driver, e.g. when routes are re-planned
+    public void setAssignment(String vehicleID, String driverID) {
+        this.assignedVehicleID = vehicleID;
+        this.assignedDriverID = driverID;
+    }
+
     public void setEta(String eta) {
         this.eta = eta;
     }
@@ -0,0 +1,644 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import algorithms.CustomArrayList;
+import algorithms.LongObjectHashMap;
+import algorithms.StringIntHashMap;
+
+// Append-only history of every delivery status change, partitioned by day. Each day has
+// a segment history/<yyyy-MM-dd>.log of journal-format records (status, time, then the
+// delivery's fields, with a CRC32) and an index history/<yyyy-MM-dd>.idx of lines
+//   P|V|D <tab> package, vehicle or driver ID <tab> byte offset of the record
+// appended as records are written. When a day's segment is sealed (the next day's record
+// arrives, or the store closes) its entries are also written sorted by kind and key to
+// history/<yyyy-MM-dd>.sidx, so a lookup by package, vehicle or driver binary-searches
+// that file, reads only the matching entries and seeks straight to their records. Only
+// the day still open for appending is looked up by reading its .idx through.
+//
+// In memory are the day -> segment map, the mappings of the last few sorted indexes
+// looked up (at most MAPPED_INDEXES; older ones are dropped) and, for the open day only,
+// a package/status/time set of its records for the duplicate check below. Scans stream
+// from disk and only visit days that have a segment.
+//
+// Records are written through to the OS and fsynced by sync(), which the snapshot writer
+// calls before discarding journal segments, so a change is always either in the journal
+// or durably here. Replayed journal records are recorded again; a record identical to one
+// already in its segment (same package, status and time) is skipped.
+public class DeliveryHistoryStore {
+    public static class Event {
+        private final long time;
+        private final Delivery delivery;
+
+        Event(long time, Delivery delivery) {
+            this.time = time;
+            this.delivery = delivery;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        // A copy of the delivery as it was after this change
+        public Delivery getDelivery() {
+            return delivery;
+        }
+
+        public LocalDate getDate() {
+            return Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()).toLocalDate();
+        }
+
+        @Override
+        public String toString() {
+            return Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()).toLocalDateTime().withNano(0)
+                    + " " + delivery.getPackageID() + " " + delivery.getStatus()
+                    + " (" + delivery.getOrigin() + " -> " + delivery.getDestination()
+                    + ", vehicle " + delivery.getAssignedVehicleID() + ", driver " + delivery.getAssignedDriverID()
+                    + ", ETA " + delivery.getEta() + ")";
+        }
+    }
+
+    public interface Visitor {
+        void visit(Event event);
+    }
+
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String SORTED_INDEX_SUFFIX = ".sidx";
+    // Sorted index layout: magic | log length covered | entry count | position[count] |
+    // entries (kind byte, key length short, UTF-8 key, record offset long)
+    private static final int SORTED_INDEX_MAGIC = 0x41534931; // "ASI1"
+    private static final int SORTED_INDEX_HEADER = 16;
+    private static final char PACKAGE_KEY = 'P';
+    private static final char VEHICLE_KEY = 'V';
+    private static final char DRIVER_KEY = 'D';
+    // Sorted indexes kept mapped between lookups
+    private static final int MAPPED_INDEXES = 8;
+
+    private final File directory;
+    private final ZoneId zone = ZoneId.systemDefault();
+    // Epoch day -> segment, for every day with history on disk
+    private final LongObjectHashMap<Segment> segments = new LongObjectHashMap<>();
+    // The one segment open for appending, or null
+    private Segment active;
+    // Segments whose sorted index was looked up most recently, newest first. A slot may
+    // name a segment whose mapping was since dropped (the day reopened); it is then
+    // only taking up room until it falls off the end.
+    private final Segment[] mapped = new Segment[MAPPED_INDEXES];
+
+    private static class Segment {
+        final long day;
+        final File log;
+        final File index;
+        final File sortedIndex;
+        // Mapped sortedIndex while this segment is among the recently looked up ones;
+        // dropped when it falls out of them or the day reopens
+        MappedByteBuffer sorted;
+        // Only set while this is the active segment
+        FileOutputStream logStream;
+        OutputStream logOut;
+        FileOutputStream indexStream;
+        OutputStream indexOut;
+        long length;
+        // package \t status \t time of every record, to skip replayed duplicates
+        StringIntHashMap recorded;
+        boolean unsynced;
+
+        Segment(File directory, long day) {
+            String name = LocalDate.ofEpochDay(day).toString();
+            this.day = day;
+            this.log = new File(directory, name + LOG_SUFFIX);
+            this.index = new File(directory, name + INDEX_SUFFIX);
+            this.sortedIndex = new File(directory, name + SORTED_INDEX_SUFFIX);
+        }
+    }
+
+    public DeliveryHistoryStore(String directory) {
+        this.directory = new File(directory);
+        String[] names = this.directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.endsWith(LOG_SUFFIX)) {
+                    try {
+                        long day = LocalDate.parse(name.substring(0, name.length() - LOG_SUFFIX.length())).toEpochDay();
+                        segments.put(day, new Segment(this.directory, day));
+                    } catch (DateTimeParseException e) {
+                        // Not one of ours
+                    }
+                }
+            }
+        }
+    }
+
+    public synchronized void record(Delivery delivery, long time) throws IOException {
+        append(delivery, time);
+        active.logOut.flush();
+        active.indexOut.flush();
+    }
+
+    // Records the same change for many deliveries, writing the segment once at the end
+    public synchronized void recordAll(CustomArrayList<Delivery> deliveries, long time) throws IOException {
+        for (int i = 0; i < deliveries.size(); i++) {
+            append(deliveries.get(i), time);
+        }
+        if (active != null) {
+            active.logOut.flush();
+            active.indexOut.flush();
+        }
+    }
+
+    private void append(Delivery delivery, long time) throws IOException {
+        Segment segment = openForAppend(dayOf(time));
+        String key = delivery.getPackageID() + '\t' + delivery.getStatus() + '\t' + time;
+        if (segment.recorded.containsKey(key)) {
+            return;
+        }
+        byte[] record = (FleetJournal.encode(delivery.getStatus(), String.valueOf(time), delivery.getPackageID(),
+                delivery.getOrigin(), delivery.getDestination(), delivery.getAssignedVehicleID(),
+                delivery.getAssignedDriverID(), delivery.getEta()) + '\n').getBytes(StandardCharsets.UTF_8);
+        long offset = segment.length;
+        segment.logOut.write(record);
+        segment.length += record.length;
+        segment.recorded.put(key, 1);
+        segment.unsynced = true;
+
+        StringBuilder entries = new StringBuilder();
+        appendIndexEntry(entries, PACKAGE_KEY, delivery.getPackageID(), offset);
+        appendIndexEntry(entries, VEHICLE_KEY, delivery.getAssignedVehicleID(), offset);
+        appendIndexEntry(entries, DRIVER_KEY, delivery.getAssignedDriverID(), offset);
+        segment.indexOut.write(entries.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static boolean searchable(String key) {
+        return key != null && !key.isEmpty() && key.indexOf('\t') < 0 && key.indexOf('\n') < 0;
+    }
+
+    private static void appendIndexEntry(StringBuilder out, char kind, String key, long offset) {
+        if (!searchable(key)) {
+            return; // Not searchable; the record is still found by date
+        }
+        out.append(kind).append('\t').append(key).append('\t').append(offset).append('\n');
+    }
+
+    // Makes the segment the active one. The segment is read back first: a torn record
+    // left by a crash is cut off, the index is rebuilt if it does not match the log, and
+    // the records already there are remembered for the duplicate check.
+    private Segment openForAppend(long day) throws IOException {
+        if (active != null && active.day == day) {
+            return active;
+        }
+        closeActive();
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create history directory " + directory);
+        }
+        Segment segment = segments.get(day);
+        if (segment == null) {
+            segment = new Segment(directory, day);
+            segments.put(day, segment);
+        }
+
+        StringIntHashMap recorded = new StringIntHashMap();
+        StringBuilder index = new StringBuilder();
+        long valid = 0;
+        if (segment.log.exists()) {
+            try (RecordReader reader = new RecordReader(segment.log)) {
+                Event event;
+                while ((event = reader.next()) != null) {
+                    Delivery delivery = event.getDelivery();
+                    recorded.put(delivery.getPackageID() + '\t' + delivery.getStatus() + '\t' + event.getTime(), 1);
+                    appendIndexEntry(index, PACKAGE_KEY, delivery.getPackageID(), reader.offset());
+                    appendIndexEntry(index, VEHICLE_KEY, delivery.getAssignedVehicleID(), reader.offset());
+                    appendIndexEntry(index, DRIVER_KEY, delivery.getAssignedDriverID(), reader.offset());
+                    valid = reader.end();
+                }
+            }
+            if (valid < segment.log.length()) {
+                try (RandomAccessFile file = new RandomAccessFile(segment.log, "rw")) {
+                    file.setLength(valid);
+                }
+            }
+        }
+        byte[] expectedIndex = index.toString().getBytes(StandardCharsets.UTF_8);
+        if (segment.index.length() != expectedIndex.length) {
+            PersistenceService.writeAtomically(segment.index.getPath(), expectedIndex);
+        }
+
+        // Appends make the sorted index stale; it is written again when the day is sealed
+        segment.sorted = null;
+        segment.sortedIndex.delete();
+
+        segment.logStream = new FileOutputStream(segment.log, true);
+        segment.logOut = new BufferedOutputStream(segment.logStream);
+        segment.indexStream = new FileOutputStream(segment.index, true);
+        segment.indexOut = new BufferedOutputStream(segment.indexStream);
+        segment.length = valid;
+        segment.recorded = recorded;
+        active = segment;
+        return segment;
+    }
+
+    // fsyncs everything recorded so far
+    public synchronized void sync() throws IOException {
+        if (active != null && active.unsynced) {
+            active.logOut.flush();
+            active.indexOut.flush();
+            active.logStream.getFD().sync();
+            active.indexStream.getFD().sync();
+            active.unsynced = false;
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        closeActive();
+    }
+
+    // Seals the active segment. If writing its sorted index fails, the first lookup of
+    // that day writes it instead.
+    private void closeActive() throws IOException {
+        if (active == null) {
+            return;
+        }
+        sync();
+        Segment sealed = active;
+        active.logOut.close();
+        active.indexOut.close();
+        active.logStream = null;
+        active.logOut = null;
+        active.indexStream = null;
+        active.indexOut = null;
+        active.recorded = null;
+        active = null;
+        writeSortedIndex(sealed);
+    }
+
+    // Every change recorded on the days from..to (inclusive), oldest first
+    public synchronized void scan(LocalDate from, LocalDate to, Visitor visitor) throws IOException {
+        flushActive();
+        for (long day : daysWithHistory(from.toEpochDay(), to.toEpochDay())) {
+            Segment segment = segments.get(day);
+            if (segment.log.exists()) {
+                try (RecordReader reader = new RecordReader(segment.log)) {
+                    Event event;
+                    while ((event = reader.next()) != null) {
+                        visitor.visit(event);
+                    }
+                }
+            }
+        }
+    }
+
+    public synchronized void scanVehicle(String vehicleID, LocalDate from, LocalDate to, Visitor visitor) throws IOException {
+        scanIndexed(VEHICLE_KEY, vehicleID, from.toEpochDay(), to.toEpochDay(), visitor);
+    }
+
+    public synchronized void scanDriver(String driverID, LocalDate from, LocalDate to, Visitor visitor) throws IOException {
+        scanIndexed(DRIVER_KEY, driverID, from.toEpochDay(), to.toEpochDay(), visitor);
+    }
+
+    // Every recorded change of one package, oldest first
+    public synchronized CustomArrayList<Event> packageHistory(String packageID) throws IOException {
+        final CustomArrayList<Event> events = new CustomArrayList<>();
+        scanIndexed(PACKAGE_KEY, packageID, Long.MIN_VALUE, Long.MAX_VALUE, events::add);
+        return events;
+    }
+
+    // The days in fromDay..toDay (inclusive) that have a segment, in order
+    private long[] daysWithHistory(long fromDay, long toDay) {
+        long[] days = segments.keys();
+        int count = 0;
+        for (long day : days) {
+            if (day >= fromDay && day <= toDay) {
+                days[count++] = day;
+            }
+        }
+        days = Arrays.copyOf(days, count);
+        Arrays.sort(days);
+        return days;
+    }
+
+    private void scanIndexed(char kind, String key, long fromDay, long toDay, Visitor visitor) throws IOException {
+        flushActive();
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        for (long day : daysWithHistory(fromDay, toDay)) {
+            Segment segment = segments.get(day);
+            if (!segment.log.exists()) {
+                continue;
+            }
+            long[] offsets;
+            if (segment == active) {
+                offsets = segment.index.exists() ? findOffsets(segment.index, kind, key) : new long[0];
+            } else {
+                offsets = findSortedOffsets(segment, (byte) kind, keyBytes);
+            }
+            if (offsets.length == 0) {
+                continue;
+            }
+            try (RandomAccessFile log = new RandomAccessFile(segment.log, "r")) {
+                for (long offset : offsets) {
+                    log.seek(offset);
+                    Event event = decodeEvent(readLine(log));
+                    if (event != null) {
+                        visitor.visit(event);
+                    }
+                }
+            }
+        }
+    }
+
+    // Offsets of the records listed under kind/key in a sealed segment's sorted index, in
+    // file order. The index is (re)written first if it is missing or does not cover the
+    // whole log (a crash before the day was sealed, or an index from an older run).
+    private long[] findSortedOffsets(Segment segment, byte kind, byte[] key) throws IOException {
+        MappedByteBuffer index = segment.sorted;
+        if (index == null) {
+            index = mapSortedIndex(segment);
+            if (index == null) {
+                writeSortedIndex(segment);
+                index = mapSortedIndex(segment);
+                if (index == null) {
+                    throw new IOException("Cannot read history index " + segment.sortedIndex);
+                }
+            }
+            segment.sorted = index;
+        }
+        markMapped(segment);
+        int count = index.getInt(12);
+        // First entry not below kind/key
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareEntry(index, index.getInt(SORTED_INDEX_HEADER + mid * 4), kind, key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        long[] offsets = new long[8];
+        int found = 0;
+        for (int i = low; i < count; i++) {
+            int entry = index.getInt(SORTED_INDEX_HEADER + i * 4);
+            if (compareEntry(index, entry, kind, key) != 0) {
+                break;
+            }
+            if (found == offsets.length) {
+                long[] grown = new long[found * 2];
+                System.arraycopy(offsets, 0, grown, 0, found);
+                offsets = grown;
+            }
+            offsets[found++] = index.getLong(entry + 3 + key.length);
+        }
+        long[] result = new long[found];
+        System.arraycopy(offsets, 0, result, 0, found);
+        return result;
+    }
+
+    // Moves the segment to the front of the recently mapped ones, dropping the mapping of
+    // the one that falls off the end
+    private void markMapped(Segment segment) {
+        int slot = 0;
+        while (slot < mapped.length - 1 && mapped[slot] != segment) {
+            slot++;
+        }
+        Segment evicted = mapped[slot];
+        System.arraycopy(mapped, 0, mapped, 1, slot);
+        mapped[0] = segment;
+        if (evicted != null && evicted != segment) {
+            evicted.sorted = null;
+        }
+    }
+
+    // The sorted index if it exists and covers the log as it is now, otherwise null
+    private static MappedByteBuffer mapSortedIndex(Segment segment) throws IOException {
+        if (!segment.sortedIndex.exists()) {
+            return null;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.sortedIndex, "r");
+             FileChannel channel = file.getChannel()) {
+            if (channel.size() < SORTED_INDEX_HEADER) {
+                return null;
+            }
+            MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (index.getInt(0) != SORTED_INDEX_MAGIC || index.getLong(4) != segment.log.length()) {
+                return null;
+            }
+            return index;
+        }
+    }
+
+    // Orders entries by kind, then key bytes (unsigned), shorter keys first on a tie
+    private static int compareEntry(ByteBuffer index, int entry, byte kind, byte[] key) {
+        if (index.get(entry) != kind) {
+            return Integer.compare(index.get(entry), kind);
+        }
+        int length = index.getShort(entry + 1) & 0xFFFF;
+        int shared = Math.min(length, key.length);
+        for (int i = 0; i < shared; i++) {
+            int c = Integer.compare(index.get(entry + 3 + i) & 0xFF, key[i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private static class IndexEntry {
+        final byte kind;
+        final byte[] key;
+        final long offset;
+
+        IndexEntry(byte kind, byte[] key, long offset) {
+            this.kind = kind;
+            this.key = key;
+            this.offset = offset;
+        }
+    }
+
+    // Reads the segment's log and writes its entries sorted by kind and key. The sort is
+    // stable, so one key's offsets stay in file order.
+    private static void writeSortedIndex(Segment segment) throws IOException {
+        CustomArrayList<IndexEntry> entries = new CustomArrayList<>();
+        int bytes = 0;
+        long covered = 0;
+        try (RecordReader reader = new RecordReader(segment.log)) {
+            Event event;
+            while ((event = reader.next()) != null) {
+                Delivery delivery = event.getDelivery();
+                bytes += addSortedEntry(entries, PACKAGE_KEY, delivery.getPackageID(), reader.offset());
+                bytes += addSortedEntry(entries, VEHICLE_KEY, delivery.getAssignedVehicleID(), reader.offset());
+                bytes += addSortedEntry(entries, DRIVER_KEY, delivery.getAssignedDriverID(), reader.offset());
+                covered = reader.end();
+            }
+        }
+        if (covered != segment.log.length()) {
+            // A torn tail; the day is only indexed once openForAppend has cut it off
+            return;
+        }
+        entries.sort((a, b) -> {
+            if (a.kind != b.kind) {
+                return Integer.compare(a.kind, b.kind);
+            }
+            int shared = Math.min(a.key.length, b.key.length);
+            for (int i = 0; i < shared; i++) {
+                int c = Integer.compare(a.key[i] & 0xFF, b.key[i] & 0xFF);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return Integer.compare(a.key.length, b.key.length);
+        });
+
+        int count = entries.size();
+        ByteBuffer out = ByteBuffer.allocate(SORTED_INDEX_HEADER + count * 4 + bytes);
+        out.putInt(SORTED_INDEX_MAGIC);
+        out.putLong(covered);
+        out.putInt(count);
+        int position = SORTED_INDEX_HEADER + count * 4;
+        for (int i = 0; i < count; i++) {
+            out.putInt(position);
+            position += 11 + entries.get(i).key.length;
+        }
+        for (int i = 0; i < count; i++) {
+            IndexEntry entry = entries.get(i);
+            out.put(entry.kind);
+            out.putShort((short) entry.key.length);
+            out.put(entry.key);
+            out.putLong(entry.offset);
+        }
+        PersistenceService.writeAtomically(segment.sortedIndex.getPath(), out.array());
+        segment.sorted = null;
+    }
+
+    // Size of the entry in the sorted index, 0 if the key is not searchable
+    private static int addSortedEntry(CustomArrayList<IndexEntry> entries, char kind, String key, long offset) {
+        if (!searchable(key)) {
+            return 0;
+        }
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            return 0;
+        }
+        entries.add(new IndexEntry((byte) kind, bytes, offset));
+        return 11 + bytes.length;
+    }
+
+    // Offsets of the records the index lists under kind/key, in file order
+    private static long[] findOffsets(File index, char kind, String key) throws IOException {
+        long[] offsets = new long[8];
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(index), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int keyEnd = line.lastIndexOf('\t');
+                if (line.length() < 2 || line.charAt(0) != kind || keyEnd != 2 + key.length()
+                        || !line.startsWith(key, 2)) {
+                    continue;
+                }
+                try {
+                    long offset = Long.parseLong(line.substring(keyEnd + 1));
+                    if (count == offsets.length) {
+                        long[] grown = new long[count * 2];
+                        System.arraycopy(offsets, 0, grown, 0, count);
+                        offsets = grown;
+                    }
+                    offsets[count++] = offset;
+                } catch (NumberFormatException e) {
+                    // Torn last line
+                }
+            }
+        }
+        long[] result = new long[count];
+        System.arraycopy(offsets, 0, result, 0, count);
+        return result;
+    }
+
+    private void flushActive() throws IOException {
+        if (active != null) {
+            active.logOut.flush();
+            active.indexOut.flush();
+        }
+    }
+
+    private long dayOf(long time) {
+        return Instant.ofEpochMilli(time).atZone(zone).toLocalDate().toEpochDay();
+    }
+
+    // UTF-8 line at the file pointer, without its line break; null at the end of the file
+    private static String readLine(RandomAccessFile file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = file.read()) >= 0 && b != '\n') {
+            bytes.write(b);
+        }
+        if (b < 0 && bytes.size() == 0) {
+            return null;
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Event decodeEvent(String line) {
+        if (line == null) {
+            return null;
+        }
+        String[] record = FleetJournal.decode(line);
+        if (record == null || record.length < 8) {
+            return null;
+        }
+        try {
+            long time = Long.parseLong(record[1]);
+            return new Event(time, new Delivery(record[2], record[3], record[4], record[5], record[6],
+                                                record[7], record[0]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Streams the intact records of a segment, tracking byte offsets; stops at the first
+    // damaged record, which can only be the torn tail of a crash
+    private static class RecordReader implements Closeable {
+        private final InputStream in;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        private long position;
+        private long recordStart;
+
+        RecordReader(File file) throws IOException {
+            in = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+        }
+
+        Event next() throws IOException {
+            line.reset();
+            recordStart = position;
+            int b;
+            while ((b = in.read()) >= 0) {
+                position++;
+                if (b == '\n') {
+                    return decodeEvent(new String(line.toByteArray(), StandardCharsets.UTF_8));
+                }
+                line.write(b);
+            }
+            return null; // End of file, or a last record without its line break
+        }
+
+        // Start of the record last returned by next()
+        long offset() {
+            return recordStart;
+        }
+
+        // End of the record last returned by next(), including its line break
+        long end() {
+            return position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+import java.util.concurrent.TimeUnit;
+import algorithms.CustomArrayList;
+import algorithms.CustomHashMap;
+import algorithms.CustomPriorityQueue;
+
+// Dispatch order for pending deliveries: earliest deadline first, weighted by priority,
+// with aging so nothing waits forever.
+//
+// Every delivery gets a fixed urgency key when it is queued:
+//
+//   due = clamp(deadline, createdAt, createdAt + agingHorizon)
+//   key = due - (priority - NORMAL) * priorityStep
+//
+// A delivery without a deadline (or with one beyond the horizon) is treated as due one
+// horizon after it was created, and a deadline already past when it was created counts
+// as due at creation. Aging is built into the key rather than recomputed as time
+// passes: a delivery queued at time t has a key of at least t - (HIGHEST - NORMAL)
+// priority steps, so one that has waited longer than the horizon plus
+// (HIGHEST - LOWEST) steps is ahead of every new arrival and cannot be starved. Since
+// keys never change on their own, the heaps stay valid without a periodic re-sort.
+//
+// Deliveries are queued per origin depot, and a top-level heap orders the depots by the
+// key of their most urgent delivery. Dispatching the next delivery overall, dispatching
+// from one depot and removing a cancelled delivery are all O(log n); only the depot
+// whose head changed is re-sifted in the top-level heap.
+//
+// Not thread-safe; the caller guards it together with the pending list.
+public class DeliveryScheduler {
+    public static final long DEFAULT_AGING_HORIZON = TimeUnit.HOURS.toMillis(4);
+    public static final long DEFAULT_PRIORITY_STEP = TimeUnit.MINUTES.toMillis(30);
+
+    private static final class Entry {
+        final Delivery delivery;
+        final long key;
+        // Arrival order, so equal keys are dispatched first come, first served
+        final long sequence;
+        CustomPriorityQueue.Handle<Entry> handle;
+        Depot depot;
+
+        Entry(Delivery delivery, long key, long sequence) {
+            this.delivery = delivery;
+            this.key = key;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class Depot {
+        final String origin;
+        final CustomPriorityQueue<Entry> queue = new CustomPriorityQueue<>(DeliveryScheduler::compare, true);
+        CustomPriorityQueue.Handle<Depot> handle;
+
+        Depot(String origin) {
+            this.origin = origin;
+        }
+    }
+
+    private final long agingHorizon;
+    private final long priorityStep;
+    private final CustomHashMap<String, Depot> depots = new CustomHashMap<>();
+    private final CustomPriorityQueue<Depot> depotOrder = new CustomPriorityQueue<>(
+            (d1, d2) -> compare(d1.queue.peek(), d2.queue.peek()), true);
+    private final CustomHashMap<String, Entry> entries = new CustomHashMap<>();
+    private long nextSequence;
+
+    public DeliveryScheduler() {
+        this(DEFAULT_AGING_HORIZON, DEFAULT_PRIORITY_STEP);
+    }
+
+    public DeliveryScheduler(long agingHorizonMillis, long priorityStepMillis) {
+        this.agingHorizon = agingHorizonMillis;
+        this.priorityStep = priorityStepMillis;
+    }
+
+    private static int compare(Entry e1, Entry e2) {
+        int result = Long.compare(e1.key, e2.key);
+        return result != 0 ? result : Long.compare(e1.sequence, e2.sequence);
+    }
+
+    public long urgencyKey(Delivery delivery) {
+        long due = delivery.getCreatedAt() + agingHorizon;
+        if (delivery.getDeadline() > 0 && delivery.getDeadline() < due) {
+            // A past deadline must not rank a new delivery ahead of ones already waiting
+            due = Math.max(delivery.getDeadline(), delivery.getCreatedAt());
+        }
+        return due - (delivery.getPriority() - Delivery.NORMAL_PRIORITY) * priorityStep;
+    }
+
+    // Queues a delivery; returns false if one with the same package ID is already queued
+    public boolean add(Delivery delivery) {
+        if (entries.containsKey(delivery.getPackageID())) {
+            return false;
+        }
+        Entry entry = new Entry(delivery, urgencyKey(delivery), nextSequence++);
+        Depot depot = depots.get(delivery.getOrigin());
+        if (depot == null) {
+            depot = new Depot(delivery.getOrigin());
+            depots.put(depot.origin, depot);
+        }
+        entry.depot = depot;
+        boolean newHead = depot.queue.isEmpty() || compare(entry, depot.queue.peek()) < 0;
+        entry.handle = depot.queue.offer(entry);
+        entries.put(delivery.getPackageID(), entry);
+        if (depot.handle == null) {
+            depot.handle = depotOrder.offer(depot);
+        } else if (newHead) {
+            depotOrder.decreaseKey(depot.handle);
+        }
+        return true;
+    }
+
+    // Takes a delivery out of the queue, e.g. when it is cancelled; returns it, or null
+    public Delivery remove(String packageID) {
+        Entry entry = entries.remove(packageID);
+        if (entry == null) {
+            return null;
+        }
+        Depot depot = entry.depot;
+        boolean wasHead = depot.queue.peek() == entry;
+        depot.queue.remove(entry.handle);
+        depotChanged(depot, wasHead);
+        return entry.delivery;
+    }
+
+    // Re-queues a delivery after its deadline or priority changed
+    public void update(Delivery delivery) {
+        if (remove(delivery.getPackageID()) != null) {
+            add(delivery);
+        }
+    }
+
+    // The most urgent delivery of any depot, or null if none are queued
+    public Delivery peek() {
+        Depot depot = depotOrder.peek();
+        return depot == null ? null : depot.queue.peek().delivery;
+    }
+
+    public Delivery poll() {
+        Delivery next = peek();
+        return next == null ? null : remove(next.getPackageID());
+    }
+
+    // The most urgent delivery leaving from origin, or null
+    public Delivery peek(String origin) {
+        Depot depot = depots.get(origin);
+        return depot == null ? null : depot.queue.peek().delivery;
+    }
+
+    // Takes up to count of the most urgent deliveries leaving from origin, most urgent
+    // first, in O(count log n)
+    public CustomArrayList<Delivery> drainBatch(String origin, int count) {
+        CustomArrayList<Delivery> batch = new CustomArrayList<>(Math.max(1, Math.min(count, size())));
+        Depot depot = depots.get(origin);
+        if (depot == null) {
+            return batch;
+        }
+        while (batch.size() < count && !depot.queue.isEmpty()) {
+            Entry entry = depot.queue.poll();
+            entries.remove(entry.delivery.getPackageID());
+            batch.add(entry.delivery);
+        }
+        depotChanged(depot, true);
+        return batch;
+    }
+
+    public boolean contains(String packageID) {
+        return entries.containsKey(packageID);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    // Origins with queued deliveries
+    public CustomArrayList<String> origins() {
+        return depots.keySet();
+    }
+
+    public int size(String origin) {
+        Depot depot = depots.get(origin);
+        return depot == null ? 0 : depot.queue.size();
+    }
+
+    public void clear() {
+        depots.clear();
+        depotOrder.clear();
+        entries.clear();
+    }
+
+    // Keeps the depot's slot in the top-level heap in step after its queue lost entries
+    private void depotChanged(Depot depot, boolean headChanged) {
+        if (depot.queue.isEmpty()) {
+            depotOrder.remove(depot.handle);
+            depot.handle = null;
+            depots.remove(depot.origin);
+        } else if (headChanged) {
+            depotOrder.update(depot.handle);
+        }
+    }
+}
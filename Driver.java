@@ -4,7 +4,7 @@ public class Driver {
     private String driverID;
     private String name;
     private int experience;
-    private boolean isAvailable;
+    private volatile boolean isAvailable;
 
     public Driver(String driverID, String name, int experience) {
         this.driverID = driverID;
@@ -0,0 +1,110 @@
+import algorithms.AssignmentSolver;
+import algorithms.CustomArrayList;
+import algorithms.CustomHashMap;
+
+// Matches available drivers to vehicles without one in a single batch, at the lowest
+// total cost. The cost of putting a driver on a vehicle is pluggable, but it may only
+// depend on the driver's experience: drivers with the same experience are then
+// interchangeable, and the solver works on one row per experience level instead of one
+// per driver, which is what keeps thousands of each fast.
+public class DriverAssignment {
+    public interface CostFunction {
+        double cost(int experience, Vehicle vehicle);
+    }
+
+    // Experience beyond this many years counts the same
+    private static final int FULL_EXPERIENCE = 20;
+    // Mileage at which a vehicle counts as fully worn
+    private static final double HIGH_MILEAGE = 300000;
+
+    // Puts drivers on vehicles that suit their experience: newcomers on light, fresh
+    // vehicles and veterans on heavy or worn ones
+    public static final CostFunction SKILL_MATCH = (experience, vehicle) -> {
+        double gap = skill(experience) - difficulty(vehicle);
+        return gap * gap;
+    };
+
+    // Gives the hardest vehicles to the most experienced drivers first, even if that
+    // leaves an easy vehicle with a veteran
+    public static final CostFunction HARDEST_FIRST = (experience, vehicle) ->
+            -skill(experience) * difficulty(vehicle);
+
+    private DriverAssignment() {
+    }
+
+    // Experience on a 0..1 scale
+    static double skill(int experience) {
+        return Math.min(Math.max(experience, 0), FULL_EXPERIENCE) / (double) FULL_EXPERIENCE;
+    }
+
+    // How demanding a vehicle is to drive, on a 0..1 scale: mostly its type, the rest
+    // its mileage
+    static double difficulty(Vehicle vehicle) {
+        double type;
+        switch (vehicle.getType() == null ? "" : vehicle.getType().trim().toLowerCase()) {
+            case "truck":
+            case "lorry":
+                type = 1.0;
+                break;
+            case "bus":
+                type = 0.8;
+                break;
+            case "van":
+                type = 0.4;
+                break;
+            case "car":
+            case "motorbike":
+                type = 0.2;
+                break;
+            default:
+                type = 0.6;
+        }
+        double wear = Math.min(Math.max(vehicle.getMileage(), 0) / HIGH_MILEAGE, 1.0);
+        return 0.7 * type + 0.3 * wear;
+    }
+
+    // Returns the driver chosen for each vehicle (same index), or null. The smaller side
+    // is matched completely.
+    public static Driver[] assign(CustomArrayList<Driver> drivers, CustomArrayList<Vehicle> vehicles,
+                                  CostFunction cost) {
+        // One class per experience level, each holding its drivers
+        CustomHashMap<Integer, Integer> classOf = new CustomHashMap<>();
+        CustomArrayList<CustomArrayList<Driver>> classes = new CustomArrayList<>();
+        CustomArrayList<Integer> experienceOf = new CustomArrayList<>();
+        for (int i = 0; i < drivers.size(); i++) {
+            Driver driver = drivers.get(i);
+            Integer k = classOf.get(driver.getExperience());
+            if (k == null) {
+                k = classes.size();
+                classOf.put(driver.getExperience(), k);
+                classes.add(new CustomArrayList<>());
+                experienceOf.add(driver.getExperience());
+            }
+            classes.get(k).add(driver);
+        }
+
+        int[] supply = new int[classes.size()];
+        int[] experience = new int[classes.size()];
+        for (int k = 0; k < supply.length; k++) {
+            supply[k] = classes.get(k).size();
+            experience[k] = experienceOf.get(k);
+        }
+        Vehicle[] columns = new Vehicle[vehicles.size()];
+        for (int j = 0; j < columns.length; j++) {
+            columns[j] = vehicles.get(j);
+        }
+        int[] owner = AssignmentSolver.solveClasses(supply, columns.length,
+                (k, j) -> cost.cost(experience[k], columns[j]));
+
+        // Hand out each class's drivers in pool order
+        int[] used = new int[supply.length];
+        Driver[] result = new Driver[columns.length];
+        for (int j = 0; j < columns.length; j++) {
+            int k = owner[j];
+            if (k != AssignmentSolver.UNASSIGNED) {
+                result[j] = classes.get(k).get(used[k]++);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,502 @@
+import algorithms.CustomArrayList;
+import algorithms.StringIntHashMap;
+
+// The fleet as columns for whole-fleet reports: one array per attribute, a row per
+// vehicle, instead of a list of Vehicle objects scattered over the heap. A query reads
+// only the columns it needs, front to back, so a scan is a few sequential array passes.
+//   - mileage and fuel usage are double[]
+//   - type and driver are dictionary-encoded into int[] (driver -1 for none)
+// Rows are kept up to date from the registry events: a vehicle is appended, a removed
+// row is filled with the last one, and a new driver overwrites one cell.
+//
+// A query filters first, building a selection vector of matching rows one predicate at a
+// time without branching on the outcome, then folds the selected rows into per-group
+// count, sum, min and max in a single pass. The loops are plain scalar Java (the Vector
+// API needs Java 16+ with an incubator module): one loop per grouping, plain compares
+// for min and max, and independent accumulators where there is no grouping, so the JIT
+// can unroll them without a branch or a dependency chain per row.
+//
+// Not thread-safe; AdomLogisticsSystem guards it with indexLock.
+public class FleetColumns {
+    public enum Measure { MILEAGE, FUEL_USAGE }
+
+    public enum GroupBy { NONE, TYPE, ASSIGNMENT }
+
+    // Unset conditions match every vehicle
+    public static final class Filter {
+        private String type;
+        private double minMileage = Double.NEGATIVE_INFINITY;
+        private double maxMileage = Double.POSITIVE_INFINITY;
+        private double minFuel = Double.NEGATIVE_INFINITY;
+        private double maxFuel = Double.POSITIVE_INFINITY;
+        // 1 with a driver, 0 without, -1 either
+        private int assigned = -1;
+
+        public Filter type(String type) {
+            this.type = type;
+            return this;
+        }
+
+        // Inclusive
+        public Filter mileageBetween(double min, double max) {
+            this.minMileage = min;
+            this.maxMileage = max;
+            return this;
+        }
+
+        // Inclusive
+        public Filter fuelBetween(double min, double max) {
+            this.minFuel = min;
+            this.maxFuel = max;
+            return this;
+        }
+
+        public Filter hasDriver(boolean assigned) {
+            this.assigned = assigned ? 1 : 0;
+            return this;
+        }
+
+        boolean isEmpty() {
+            return type == null && assigned < 0
+                    && minMileage == Double.NEGATIVE_INFINITY && maxMileage == Double.POSITIVE_INFINITY
+                    && minFuel == Double.NEGATIVE_INFINITY && maxFuel == Double.POSITIVE_INFINITY;
+        }
+    }
+
+    public static final class Group {
+        private final String label;
+        private final int count;
+        private final double sum;
+        private final double min;
+        private final double max;
+
+        Group(String label, int count, double sum, double min, double max) {
+            this.label = label;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        // The type as first seen, "Assigned"/"Unassigned", or "All"
+        public String getLabel() {
+            return label;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getSum() {
+            return sum;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : sum / count;
+        }
+    }
+
+    private static final int INITIAL_ROWS = 16;
+
+    private Vehicle[] vehicles = new Vehicle[INITIAL_ROWS];
+    private double[] mileage = new double[INITIAL_ROWS];
+    private double[] fuelUsage = new double[INITIAL_ROWS];
+    private int[] type = new int[INITIAL_ROWS];
+    private int[] driverRef = new int[INITIAL_ROWS];
+    private int size;
+    // Registration -> row
+    private final StringIntHashMap rowOf = new StringIntHashMap();
+    // Lower-cased type -> code, and code -> type as first seen. Codes are never reused,
+    // so a type whose vehicles are all gone keeps its code until the next rebuild.
+    private final StringIntHashMap typeCodes = new StringIntHashMap();
+    private final CustomArrayList<String> typeNames = new CustomArrayList<>();
+    private final StringIntHashMap driverCodes = new StringIntHashMap();
+    // Scratch selection vector, reused between queries
+    private int[] selection = new int[INITIAL_ROWS];
+
+    public void add(Vehicle vehicle) {
+        int row = rowOf.get(vehicle.getRegistrationNumber());
+        if (row < 0) {
+            ensureRows(size + 1);
+            row = size++;
+            rowOf.put(vehicle.getRegistrationNumber(), row);
+        }
+        fill(row, vehicle);
+    }
+
+    public void remove(Vehicle vehicle) {
+        int row = rowOf.get(vehicle.getRegistrationNumber());
+        // A replaced vehicle's registration may already belong to its successor
+        if (row < 0 || vehicles[row] != vehicle) {
+            return;
+        }
+        rowOf.remove(vehicle.getRegistrationNumber());
+        int last = --size;
+        if (row != last) {
+            vehicles[row] = vehicles[last];
+            mileage[row] = mileage[last];
+            fuelUsage[row] = fuelUsage[last];
+            type[row] = type[last];
+            driverRef[row] = driverRef[last];
+            rowOf.put(vehicles[row].getRegistrationNumber(), row);
+        }
+        vehicles[last] = null;
+    }
+
+    public void driverChanged(Vehicle vehicle) {
+        int row = rowOf.get(vehicle.getRegistrationNumber());
+        if (row >= 0 && vehicles[row] == vehicle) {
+            driverRef[row] = driverCode(vehicle.getDriverID());
+        }
+    }
+
+    public void rebuild(CustomArrayList<Vehicle> all) {
+        for (int i = 0; i < size; i++) {
+            vehicles[i] = null;
+        }
+        size = 0;
+        rowOf.clear();
+        typeCodes.clear();
+        typeNames.clear();
+        driverCodes.clear();
+        ensureRows(all.size());
+        for (int i = 0; i < all.size(); i++) {
+            add(all.get(i));
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // One group per value of groupBy that has a matching vehicle, in the order the values
+    // were first seen ("Assigned" before "Unassigned")
+    public CustomArrayList<Group> aggregate(Filter filter, Measure measure, GroupBy groupBy) {
+        double[] values = measure == Measure.MILEAGE ? mileage : fuelUsage;
+        int groups = groupBy == GroupBy.TYPE ? typeNames.size() : groupBy == GroupBy.ASSIGNMENT ? 2 : 1;
+        int[] count = new int[groups];
+        double[] sum = new double[groups];
+        double[] min = new double[groups];
+        double[] max = new double[groups];
+        for (int g = 0; g < groups; g++) {
+            min[g] = Double.POSITIVE_INFINITY;
+            max[g] = Double.NEGATIVE_INFINITY;
+        }
+
+        if (filter == null || filter.isEmpty()) {
+            foldAll(values, groupBy, count, sum, min, max);
+        } else {
+            int selected = select(filter);
+            foldSelected(values, groupBy, selection, selected, count, sum, min, max);
+        }
+
+        CustomArrayList<Group> result = new CustomArrayList<>(Math.max(groups, 1));
+        for (int g = 0; g < groups; g++) {
+            if (Double.isNaN(sum[g])) {
+                min[g] = Double.NaN;
+                max[g] = Double.NaN;
+            }
+            if (count[g] > 0) {
+                result.add(new Group(label(groupBy, g), count[g], sum[g], min[g], max[g]));
+            }
+        }
+        return result;
+    }
+
+    // Every row. Min and max use plain compares, which the JIT turns into branch-free
+    // selects; a NaN value never wins them, but it does make the group's sum NaN, which
+    // aggregate() uses to give that group a NaN min and max as Math.min/max would.
+    private void foldAll(double[] values, GroupBy groupBy, int[] count, double[] sum, double[] min, double[] max) {
+        int n = size;
+        if (groupBy == GroupBy.NONE) {
+            // Four independent accumulators, so consecutive rows do not wait on each other
+            double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            double lo0 = Double.POSITIVE_INFINITY, lo1 = lo0, lo2 = lo0, lo3 = lo0;
+            double hi0 = Double.NEGATIVE_INFINITY, hi1 = hi0, hi2 = hi0, hi3 = hi0;
+            int i = 0;
+            for (; i + 3 < n; i += 4) {
+                double a = values[i];
+                double b = values[i + 1];
+                double c = values[i + 2];
+                double d = values[i + 3];
+                s0 += a;
+                s1 += b;
+                s2 += c;
+                s3 += d;
+                lo0 = a < lo0 ? a : lo0;
+                lo1 = b < lo1 ? b : lo1;
+                lo2 = c < lo2 ? c : lo2;
+                lo3 = d < lo3 ? d : lo3;
+                hi0 = a > hi0 ? a : hi0;
+                hi1 = b > hi1 ? b : hi1;
+                hi2 = c > hi2 ? c : hi2;
+                hi3 = d > hi3 ? d : hi3;
+            }
+            for (; i < n; i++) {
+                double a = values[i];
+                s0 += a;
+                lo0 = a < lo0 ? a : lo0;
+                hi0 = a > hi0 ? a : hi0;
+            }
+            double lo01 = lo0 < lo1 ? lo0 : lo1;
+            double lo23 = lo2 < lo3 ? lo2 : lo3;
+            double hi01 = hi0 > hi1 ? hi0 : hi1;
+            double hi23 = hi2 > hi3 ? hi2 : hi3;
+            count[0] = n;
+            sum[0] = (s0 + s1) + (s2 + s3);
+            min[0] = lo01 < lo23 ? lo01 : lo23;
+            max[0] = hi01 > hi23 ? hi01 : hi23;
+        } else if (groupBy == GroupBy.TYPE) {
+            int[] keys = type;
+            for (int i = 0; i < n; i++) {
+                int g = keys[i];
+                double v = values[i];
+                count[g]++;
+                sum[g] += v;
+                min[g] = v < min[g] ? v : min[g];
+                max[g] = v > max[g] ? v : max[g];
+            }
+        } else {
+            // Assigned (0) and unassigned (1) in locals rather than the arrays
+            int[] keys = driverRef;
+            int assigned = 0;
+            double sumAssigned = 0;
+            double sumUnassigned = 0;
+            double lo0 = Double.POSITIVE_INFINITY, lo1 = lo0;
+            double hi0 = Double.NEGATIVE_INFINITY, hi1 = hi0;
+            for (int i = 0; i < n; i++) {
+                double v = values[i];
+                // Drivers have codes from 0; the sign bit marks "Unassigned"
+                boolean unassigned = keys[i] < 0;
+                assigned += unassigned ? 0 : 1;
+                sumAssigned += unassigned ? 0 : v;
+                sumUnassigned += unassigned ? v : 0;
+                lo0 = !unassigned & v < lo0 ? v : lo0;
+                hi0 = !unassigned & v > hi0 ? v : hi0;
+                lo1 = unassigned & v < lo1 ? v : lo1;
+                hi1 = unassigned & v > hi1 ? v : hi1;
+            }
+            storeAssignment(n, assigned, sumAssigned, sumUnassigned, lo0, hi0, lo1, hi1, count, sum, min, max);
+        }
+    }
+
+    // The selected rows only, one loop per grouping so none decides the group per row
+    private void foldSelected(double[] values, GroupBy groupBy, int[] rows, int n,
+                              int[] count, double[] sum, double[] min, double[] max) {
+        if (groupBy == GroupBy.NONE) {
+            double s0 = 0, s1 = 0;
+            double lo0 = Double.POSITIVE_INFINITY, lo1 = lo0;
+            double hi0 = Double.NEGATIVE_INFINITY, hi1 = hi0;
+            int j = 0;
+            for (; j + 1 < n; j += 2) {
+                double a = values[rows[j]];
+                double b = values[rows[j + 1]];
+                s0 += a;
+                s1 += b;
+                lo0 = a < lo0 ? a : lo0;
+                lo1 = b < lo1 ? b : lo1;
+                hi0 = a > hi0 ? a : hi0;
+                hi1 = b > hi1 ? b : hi1;
+            }
+            if (j < n) {
+                double a = values[rows[j]];
+                s0 += a;
+                lo0 = a < lo0 ? a : lo0;
+                hi0 = a > hi0 ? a : hi0;
+            }
+            count[0] = n;
+            sum[0] = s0 + s1;
+            min[0] = lo0 < lo1 ? lo0 : lo1;
+            max[0] = hi0 > hi1 ? hi0 : hi1;
+        } else if (groupBy == GroupBy.TYPE) {
+            int[] keys = type;
+            for (int j = 0; j < n; j++) {
+                int i = rows[j];
+                int g = keys[i];
+                double v = values[i];
+                count[g]++;
+                sum[g] += v;
+                min[g] = v < min[g] ? v : min[g];
+                max[g] = v > max[g] ? v : max[g];
+            }
+        } else {
+            int[] keys = driverRef;
+            int assigned = 0;
+            double sumAssigned = 0;
+            double sumUnassigned = 0;
+            double lo0 = Double.POSITIVE_INFINITY, lo1 = lo0;
+            double hi0 = Double.NEGATIVE_INFINITY, hi1 = hi0;
+            for (int j = 0; j < n; j++) {
+                int i = rows[j];
+                double v = values[i];
+                boolean unassigned = keys[i] < 0;
+                assigned += unassigned ? 0 : 1;
+                sumAssigned += unassigned ? 0 : v;
+                sumUnassigned += unassigned ? v : 0;
+                lo0 = !unassigned & v < lo0 ? v : lo0;
+                hi0 = !unassigned & v > hi0 ? v : hi0;
+                lo1 = unassigned & v < lo1 ? v : lo1;
+                hi1 = unassigned & v > hi1 ? v : hi1;
+            }
+            storeAssignment(n, assigned, sumAssigned, sumUnassigned, lo0, hi0, lo1, hi1, count, sum, min, max);
+        }
+    }
+
+    private static void storeAssignment(int n, int assigned, double sumAssigned, double sumUnassigned,
+                                        double lo0, double hi0, double lo1, double hi1,
+                                        int[] count, double[] sum, double[] min, double[] max) {
+        count[0] = assigned;
+        count[1] = n - assigned;
+        sum[0] = sumAssigned;
+        sum[1] = sumUnassigned;
+        min[0] = lo0;
+        max[0] = hi0;
+        min[1] = lo1;
+        max[1] = hi1;
+    }
+
+    // Fills the selection vector with the rows passing every condition and returns how
+    // many there are. The first condition scans the column; each later one compacts the
+    // rows still selected. A row is always written and the count only moves on a match,
+    // so there is no branch for the JIT to mispredict.
+    private int select(Filter filter) {
+        if (selection.length < size) {
+            selection = new int[vehicles.length];
+        }
+        int[] sel = selection;
+        int n = -1;
+        if (filter.type != null) {
+            int code = typeCodes.get(typeKey(filter.type));
+            if (code < 0) {
+                return 0;
+            }
+            n = 0;
+            for (int i = 0; i < size; i++) {
+                sel[n] = i;
+                n += type[i] == code ? 1 : 0;
+            }
+        }
+        if (filter.assigned >= 0) {
+            // driverRef >>> 31 is 0 with a driver, 1 without
+            int wanted = 1 - filter.assigned;
+            if (n < 0) {
+                n = 0;
+                for (int i = 0; i < size; i++) {
+                    sel[n] = i;
+                    n += driverRef[i] >>> 31 == wanted ? 1 : 0;
+                }
+            } else {
+                int kept = 0;
+                for (int j = 0; j < n; j++) {
+                    int i = sel[j];
+                    sel[kept] = i;
+                    kept += driverRef[i] >>> 31 == wanted ? 1 : 0;
+                }
+                n = kept;
+            }
+        }
+        n = between(mileage, filter.minMileage, filter.maxMileage, sel, n);
+        // At least one condition is set, so n >= 0 by now
+        return between(fuelUsage, filter.minFuel, filter.maxFuel, sel, n);
+    }
+
+    // Narrows the selection to rows with column values in [lo, hi]; n < 0 means nothing
+    // has been selected yet, so the whole column is scanned
+    private int between(double[] column, double lo, double hi, int[] sel, int n) {
+        if (lo == Double.NEGATIVE_INFINITY && hi == Double.POSITIVE_INFINITY) {
+            return n;
+        }
+        int kept = 0;
+        if (n < 0) {
+            for (int i = 0; i < size; i++) {
+                double v = column[i];
+                sel[kept] = i;
+                kept += v >= lo & v <= hi ? 1 : 0;
+            }
+        } else {
+            for (int j = 0; j < n; j++) {
+                int i = sel[j];
+                double v = column[i];
+                sel[kept] = i;
+                kept += v >= lo & v <= hi ? 1 : 0;
+            }
+        }
+        return kept;
+    }
+
+    private String label(GroupBy groupBy, int group) {
+        switch (groupBy) {
+            case TYPE:
+                return typeNames.get(group);
+            case ASSIGNMENT:
+                return group == 0 ? "Assigned" : "Unassigned";
+            default:
+                return "All";
+        }
+    }
+
+    private void fill(int row, Vehicle vehicle) {
+        vehicles[row] = vehicle;
+        mileage[row] = vehicle.getMileage();
+        fuelUsage[row] = vehicle.getFuelUsage();
+        type[row] = typeCode(vehicle.getType());
+        driverRef[row] = driverCode(vehicle.getDriverID());
+    }
+
+    private int typeCode(String name) {
+        String key = typeKey(name);
+        int code = typeCodes.get(key);
+        if (code < 0) {
+            code = typeNames.size();
+            typeCodes.put(key, code);
+            typeNames.add(name == null ? "" : name.trim());
+        }
+        return code;
+    }
+
+    private static String typeKey(String name) {
+        return name == null ? "" : name.trim().toLowerCase();
+    }
+
+    private int driverCode(String driverID) {
+        if (driverID == null || driverID.isEmpty()) {
+            return -1;
+        }
+        int code = driverCodes.get(driverID);
+        if (code < 0) {
+            code = driverCodes.size();
+            driverCodes.put(driverID, code);
+        }
+        return code;
+    }
+
+    private void ensureRows(int rows) {
+        if (rows <= vehicles.length) {
+            return;
+        }
+        int capacity = Math.max(rows, vehicles.length * 2);
+        Vehicle[] grownVehicles = new Vehicle[capacity];
+        double[] grownMileage = new double[capacity];
+        double[] grownFuelUsage = new double[capacity];
+        int[] grownType = new int[capacity];
+        int[] grownDriverRef = new int[capacity];
+        System.arraycopy(vehicles, 0, grownVehicles, 0, size);
+        System.arraycopy(mileage, 0, grownMileage, 0, size);
+        System.arraycopy(fuelUsage, 0, grownFuelUsage, 0, size);
+        System.arraycopy(type, 0, grownType, 0, size);
+        System.arraycopy(driverRef, 0, grownDriverRef, 0, size);
+        vehicles = grownVehicles;
+        mileage = grownMileage;
+        fuelUsage = grownFuelUsage;
+        type = grownType;
+        driverRef = grownDriverRef;
+    }
+}
@@ -0,0 +1,327 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+// Append-only write-ahead log. Every mutation is written as one tab-separated record
+// followed by a CRC32 of the record, so a record torn by a crash is detected and dropped
+// on replay. Records go to numbered segment files (journal-<n>.log); sealed segments are
+// deleted once a snapshot covering them has been written.
+//
+// The durability mode decides when append() returns: SYNC fsyncs every record before
+// returning; GROUP_COMMIT also waits for the fsync, but one fsync covers every record
+// written by then, so concurrent appenders share it; ASYNC returns once the record is
+// handed to the OS and leaves the fsync to a later sync() call.
+public class FleetJournal {
+    public enum Durability {
+        SYNC, GROUP_COMMIT, ASYNC
+    }
+
+    // Record types
+    public static final String VEHICLE_PUT = "VP";
+    public static final String VEHICLE_REMOVE = "VR";
+    public static final String DRIVER_ADD = "DA";
+    public static final String DRIVER_ASSIGN = "DS";
+    public static final String DELIVERY_ADD = "LA";
+    // Older journals only; a pending delivery leaving the list
+    public static final String DELIVERY_PROCESS = "LP";
+    public static final String DELIVERY_STATUS = "LS";
+    public static final String MAINTENANCE_PUT = "MP";
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final char SEPARATOR = '\t';
+
+    public interface Replayer {
+        void apply(String type, String[] fields);
+    }
+
+    private final File directory;
+    private final Durability durability;
+    private long activeSegment;
+    private FileOutputStream activeStream;
+    private Writer writer;
+    private int recordsInSegment;
+    // Records appended so far; guarded by this
+    private long appended;
+    // Held while fsyncing and while the active segment is swapped, so a segment is never
+    // closed under a running fsync. Lock order: syncLock, then this.
+    private final Object syncLock = new Object();
+    // Records known to be on disk; guarded by syncLock
+    private long synced;
+
+    public FleetJournal(String directory) {
+        this(directory, Durability.SYNC);
+    }
+
+    public FleetJournal(String directory, Durability durability) {
+        this.directory = new File(directory);
+        this.durability = durability;
+    }
+
+    public Durability durability() {
+        return durability;
+    }
+
+    // Replays all intact records of every segment on disk, oldest first
+    public int replay(Replayer replayer) throws IOException {
+        int applied = 0;
+        long[] segments = listSegments();
+        for (long segment : segments) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(segmentFile(segment)), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] record = decode(line);
+                    if (record == null) {
+                        break; // Torn tail of a segment, nothing valid follows it
+                    }
+                    String[] fields = new String[record.length - 1];
+                    System.arraycopy(record, 1, fields, 0, fields.length);
+                    replayer.apply(record[0], fields);
+                    applied++;
+                }
+            }
+        }
+        return applied;
+    }
+
+    // Starts a fresh segment after any existing ones
+    public void open() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (!directory.exists() && !directory.mkdirs()) {
+                    throw new IOException("Cannot create journal directory " + directory);
+                }
+                long[] segments = listSegments();
+                activeSegment = segments.length == 0 ? 1 : segments[segments.length - 1] + 1;
+                openSegment();
+            }
+        }
+    }
+
+    // Safe to call from several threads; records from different threads never interleave
+    public void append(String type, String... fields) throws IOException {
+        String record = encode(type, fields);
+        long sequence;
+        synchronized (this) {
+            if (writer == null) {
+                throw new IOException("Journal is not open");
+            }
+            writer.write(record);
+            writer.write('\n');
+            writer.flush();
+            if (durability == Durability.SYNC) {
+                activeStream.getFD().sync();
+            }
+            recordsInSegment++;
+            sequence = ++appended;
+        }
+        if (durability == Durability.GROUP_COMMIT) {
+            sync(sequence);
+        }
+    }
+
+    // Forces every record appended so far to disk
+    public void sync() throws IOException {
+        long sequence;
+        synchronized (this) {
+            sequence = appended;
+        }
+        sync(sequence);
+    }
+
+    // The first thread in fsyncs on behalf of every record written by then; threads
+    // queued behind it usually find their record already covered and return at once.
+    // Appends carry on during the fsync.
+    private void sync(long sequence) throws IOException {
+        synchronized (syncLock) {
+            if (synced >= sequence) {
+                return;
+            }
+            FileOutputStream stream;
+            long covered;
+            synchronized (this) {
+                stream = activeStream;
+                covered = appended;
+            }
+            if (stream != null) {
+                stream.getFD().sync();
+            }
+            synced = covered;
+        }
+    }
+
+    public synchronized int recordsInActiveSegment() {
+        return recordsInSegment;
+    }
+
+    // Seals the active segment and starts a new one; returns the id of the sealed segment
+    public long rotate() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                long sealed = activeSegment;
+                closeSegment();
+                activeSegment++;
+                openSegment();
+                return sealed;
+            }
+        }
+    }
+
+    // Deletes every segment up to and including the given id
+    public void discardThrough(long segment) throws IOException {
+        long[] segments = listSegments();
+        for (long id : segments) {
+            if (id <= segment && !segmentFile(id).delete()) {
+                throw new IOException("Cannot delete journal segment " + segmentFile(id));
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                closeSegment();
+            }
+        }
+    }
+
+    private void openSegment() throws IOException {
+        activeStream = new FileOutputStream(segmentFile(activeSegment), true);
+        writer = new BufferedWriter(new OutputStreamWriter(activeStream, StandardCharsets.UTF_8));
+        recordsInSegment = 0;
+    }
+
+    // Called holding syncLock and this; a sealed segment is always fully on disk
+    private void closeSegment() throws IOException {
+        if (writer != null) {
+            writer.flush();
+            activeStream.getFD().sync();
+            synced = appended;
+            writer.close();
+            writer = null;
+            activeStream = null;
+        }
+    }
+
+    private File segmentFile(long segment) {
+        return new File(directory, SEGMENT_PREFIX + segment + SEGMENT_SUFFIX);
+    }
+
+    // Segment ids found on disk in ascending order
+    private long[] listSegments() {
+        String[] names = directory.list();
+        if (names == null) {
+            return new long[0];
+        }
+        long[] ids = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    ids[count++] = Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length()));
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        // Insertion sort, there are only ever a handful of segments
+        for (int i = 1; i < count; i++) {
+            long key = ids[i];
+            int j = i - 1;
+            while (j >= 0 && ids[j] > key) {
+                ids[j + 1] = ids[j];
+                j--;
+            }
+            ids[j + 1] = key;
+        }
+        long[] result = new long[count];
+        System.arraycopy(ids, 0, result, 0, count);
+        return result;
+    }
+
+    private static long checksum(String body) {
+        CRC32 crc = new CRC32();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+
+    // One record without its line break: type and escaped fields separated by tabs,
+    // followed by the CRC32 of everything before it. Also used by DeliveryHistoryStore.
+    static String encode(String type, String... fields) {
+        StringBuilder record = new StringBuilder(type);
+        for (String field : fields) {
+            record.append(SEPARATOR);
+            escape(field, record);
+        }
+        long crc = checksum(record.toString());
+        return record.append(SEPARATOR).append(Long.toHexString(crc)).toString();
+    }
+
+    // Splits a line into [type, fields...], or returns null if the checksum does not match
+    static String[] decode(String line) {
+        int lastSeparator = line.lastIndexOf(SEPARATOR);
+        if (lastSeparator <= 0) {
+            return null;
+        }
+        String body = line.substring(0, lastSeparator);
+        try {
+            if (Long.parseLong(line.substring(lastSeparator + 1), 16) != checksum(body)) {
+                return null;
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        int count = 1;
+        for (int i = 0; i < body.length(); i++) {
+            if (body.charAt(i) == SEPARATOR) {
+                count++;
+            }
+        }
+        String[] parts = new String[count];
+        StringBuilder current = new StringBuilder();
+        int index = 0;
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c == SEPARATOR) {
+                parts[index++] = current.toString();
+                current.setLength(0);
+            } else if (c == '\\' && i + 1 < body.length()) {
+                char next = body.charAt(++i);
+                current.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                current.append(c);
+            }
+        }
+        parts[index] = current.toString();
+        return parts;
+    }
+
+    private static void escape(String field, StringBuilder out) {
+        if (field == null) {
+            return;
+        }
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            switch (c) {
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,365 @@
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import algorithms.CustomArrayList;
+import algorithms.LockFreeQueue;
+import algorithms.StripedHashMap;
+
+// Thread-safe home of the vehicle registry and the available-driver pool, so several
+// dispatcher terminals can work on the fleet at once.
+//
+// Atomicity: every vehicle operation is atomic for its registration number (it runs
+// under that vehicle's stripe lock). assignNextDriver() is atomic as a whole: a driver
+// is only taken from the pool if the vehicle exists, and no other change to that
+// vehicle can interleave. Listeners are called under the same stripe lock, so the
+// events for one vehicle arrive in the order the changes happened.
+//
+// The driver pool is a lock-free queue: check-ins and dispatch pulls from any number of
+// threads never wait on each other.
+//
+// Assignments are indexed both ways: a vehicle's driverID names its driver, and
+// vehicleByDriver/assignedDrivers map a driverID back to the vehicle and the driver's
+// record. Both directions are only changed under the vehicle's stripe lock, so they
+// move together with the vehicle.
+public class FleetRegistry {
+    public interface Listener {
+        void vehicleAdded(Vehicle vehicle);
+
+        void vehicleRemoved(Vehicle vehicle);
+
+        // The vehicle was given a driver in place (the vehicle object stays the same)
+        void driverChanged(Vehicle vehicle);
+
+        // Sent once after putVehicles() instead of an event per vehicle, outside any lock,
+        // so derived indexes can be rebuilt in one pass
+        void vehiclesLoaded(CustomArrayList<Vehicle> vehicles);
+    }
+
+    private final StripedHashMap<String, Vehicle> vehicles = new StripedHashMap<>();
+    private final LockFreeQueue<Driver> availableDrivers = new LockFreeQueue<>();
+    // driverID -> the driver queued in availableDrivers, so finding a driver by ID does
+    // not scan the pool. An entry is added before its driver is offered and dropped once
+    // the driver is taken, so it can briefly name a driver another thread just polled;
+    // taking that driver out of the queue then fails, as it would have anyway.
+    private final StripedHashMap<String, Driver> availableByID = new StripedHashMap<>();
+    private final StripedHashMap<String, Vehicle> vehicleByDriver = new StripedHashMap<>();
+    private final StripedHashMap<String, Driver> assignedDrivers = new StripedHashMap<>();
+    private final CustomArrayList<Listener> listeners = new CustomArrayList<>();
+
+    // Listeners must be registered before the registry is shared between threads
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    // Held by callers that need a vehicle change and its side effects (e.g. journaling)
+    // to happen as one step
+    public Lock vehicleLock(String regNum) {
+        return vehicles.writeLock(regNum);
+    }
+
+    // Vehicles
+
+    public Vehicle getVehicle(String regNum) {
+        return vehicles.get(regNum);
+    }
+
+    public boolean containsVehicle(String regNum) {
+        return vehicles.containsKey(regNum);
+    }
+
+    // Adds or replaces the vehicle; returns the one it replaced, or null
+    public Vehicle putVehicle(Vehicle vehicle) {
+        Lock lock = vehicleLock(vehicle.getRegistrationNumber());
+        lock.lock();
+        try {
+            Vehicle previous = vehicles.put(vehicle.getRegistrationNumber(), vehicle);
+            if (previous != null && !sameDriver(previous, vehicle)) {
+                releaseDriver(previous);
+            }
+            indexDriver(vehicle);
+            for (int i = 0; i < listeners.size(); i++) {
+                if (previous != null) {
+                    listeners.get(i).vehicleRemoved(previous);
+                }
+                listeners.get(i).vehicleAdded(vehicle);
+            }
+            return previous;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Bulk insert for loaders and importers: the map is presized once and listeners get
+    // a single vehiclesLoaded() event at the end
+    public void putVehicles(CustomArrayList<Vehicle> batch) {
+        vehicles.ensureCapacity(vehicles.size() + batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Vehicle vehicle = batch.get(i);
+            Lock lock = vehicleLock(vehicle.getRegistrationNumber());
+            lock.lock();
+            try {
+                Vehicle previous = vehicles.put(vehicle.getRegistrationNumber(), vehicle);
+                if (previous != null && !sameDriver(previous, vehicle)) {
+                    releaseDriver(previous);
+                }
+                indexDriver(vehicle);
+            } finally {
+                lock.unlock();
+            }
+        }
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).vehiclesLoaded(batch);
+        }
+    }
+
+    public Vehicle removeVehicle(String regNum) {
+        Lock lock = vehicleLock(regNum);
+        lock.lock();
+        try {
+            Vehicle removed = vehicles.remove(regNum);
+            if (removed != null) {
+                releaseDriver(removed);
+                for (int i = 0; i < listeners.size(); i++) {
+                    listeners.get(i).vehicleRemoved(removed);
+                }
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int vehicleCount() {
+        return vehicles.size();
+    }
+
+    public boolean hasVehicles() {
+        return !vehicles.isEmpty();
+    }
+
+    public CustomArrayList<Vehicle> vehicles() {
+        return vehicles.values();
+    }
+
+    // Visits each vehicle under its stripe's read lock, so its state (driver, maintenance
+    // history) cannot change while it is being read
+    public void forEachVehicle(Consumer<Vehicle> action) {
+        vehicles.forEachValue(action);
+    }
+
+    // Drivers
+
+    public void addDriver(Driver driver) {
+        availableByID.put(driver.getDriverID(), driver);
+        availableDrivers.offer(driver);
+    }
+
+    // Queues a batch of drivers in one step, keeping their order
+    public void addDrivers(CustomArrayList<Driver> drivers) {
+        for (int i = 0; i < drivers.size(); i++) {
+            availableByID.put(drivers.get(i).getDriverID(), drivers.get(i));
+        }
+        availableDrivers.offerAll(drivers);
+    }
+
+    public Driver pollDriver() {
+        Driver driver = availableDrivers.poll();
+        if (driver != null) {
+            availableByID.remove(driver.getDriverID(), driver);
+        }
+        return driver;
+    }
+
+    // Takes up to max drivers from the front of the pool; returns how many were taken
+    public int pollDrivers(CustomArrayList<Driver> target, int max) {
+        int taken = availableDrivers.drainTo(target, max);
+        for (int i = target.size() - taken; i < target.size(); i++) {
+            availableByID.remove(target.get(i).getDriverID(), target.get(i));
+        }
+        return taken;
+    }
+
+    public boolean hasAvailableDrivers() {
+        return !availableDrivers.isEmpty();
+    }
+
+    public CustomArrayList<Driver> availableDrivers() {
+        return availableDrivers.toList();
+    }
+
+    public Driver findAvailableDriver(String driverID) {
+        return availableByID.get(driverID);
+    }
+
+    // Whether the driver is in the pool or assigned to a vehicle
+    public boolean hasDriver(String driverID) {
+        return findAvailableDriver(driverID) != null || assignedDrivers.get(driverID) != null;
+    }
+
+    // Takes a specific driver out of the pool; returns false if it was not there (or
+    // another thread took them first)
+    public boolean takeAvailableDriver(String driverID) {
+        Driver driver = findAvailableDriver(driverID);
+        if (driver == null || !takeFromPool(driver)) {
+            return false;
+        }
+        driver.setAvailable(false);
+        return true;
+    }
+
+    private boolean takeFromPool(Driver driver) {
+        if (!availableDrivers.remove(driver)) {
+            return false;
+        }
+        availableByID.remove(driver.getDriverID(), driver);
+        return true;
+    }
+
+    // Polls the next available driver and puts them on the vehicle as one atomic step.
+    // Returns the driver, or null (and takes nobody) if the vehicle does not exist or
+    // no driver is available. A driver the vehicle had before goes back to the pool.
+    public Driver assignNextDriver(String regNum) {
+        Lock lock = vehicleLock(regNum);
+        lock.lock();
+        try {
+            Vehicle vehicle = vehicles.get(regNum);
+            if (vehicle == null) {
+                return null;
+            }
+            Driver driver = pollDriver();
+            if (driver != null) {
+                link(vehicle, driver);
+            }
+            return driver;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Puts a driver already taken from the pool on the vehicle, unless the vehicle is gone
+    // or got a driver in the meantime; returns false (and links nothing) in that case
+    public boolean assignIfVacant(String regNum, Driver driver) {
+        Lock lock = vehicleLock(regNum);
+        lock.lock();
+        try {
+            Vehicle vehicle = vehicles.get(regNum);
+            if (vehicle == null || (vehicle.getDriverID() != null && !vehicle.getDriverID().isEmpty())) {
+                return false;
+            }
+            link(vehicle, driver);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Puts a specific driver on the vehicle (journal replay). The driver is taken out of
+    // the pool if queued there; an unknown driver gets a placeholder record.
+    public boolean assignDriver(String regNum, String driverID) {
+        Lock lock = vehicleLock(regNum);
+        lock.lock();
+        try {
+            Vehicle vehicle = vehicles.get(regNum);
+            Driver driver = findAvailableDriver(driverID);
+            if (driver == null || !takeFromPool(driver)) {
+                driver = assignedDrivers.get(driverID);
+            }
+            if (vehicle == null) {
+                if (driver != null) {
+                    driver.setAvailable(false);
+                }
+                return false;
+            }
+            link(vehicle, driver != null ? driver : placeholderDriver(driverID));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Records an assigned driver read from disk; returns false (and keeps nothing) if no
+    // vehicle has that driver
+    public boolean addAssignedDriver(Driver driver) {
+        Vehicle vehicle = vehicleByDriver.get(driver.getDriverID());
+        if (vehicle == null) {
+            return false;
+        }
+        Lock lock = vehicleLock(vehicle.getRegistrationNumber());
+        lock.lock();
+        try {
+            if (vehicleByDriver.get(driver.getDriverID()) != vehicle) {
+                return false;
+            }
+            driver.setAvailable(false);
+            assignedDrivers.put(driver.getDriverID(), driver);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Vehicle vehicleForDriver(String driverID) {
+        return driverID == null ? null : vehicleByDriver.get(driverID);
+    }
+
+    public Driver driverForVehicle(String regNum) {
+        Vehicle vehicle = vehicles.get(regNum);
+        return vehicle == null || vehicle.getDriverID() == null ? null : assignedDrivers.get(vehicle.getDriverID());
+    }
+
+    public CustomArrayList<Driver> assignedDrivers() {
+        return assignedDrivers.values();
+    }
+
+    // The helpers below run under the vehicle's stripe lock
+
+    private void link(Vehicle vehicle, Driver driver) {
+        if (!driver.getDriverID().equals(vehicle.getDriverID())) {
+            releaseDriver(vehicle);
+        }
+        vehicle.setDriverID(driver.getDriverID());
+        driver.setAvailable(false);
+        assignedDrivers.put(driver.getDriverID(), driver);
+        vehicleByDriver.put(driver.getDriverID(), vehicle);
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).driverChanged(vehicle);
+        }
+    }
+
+    // Indexes the driver a vehicle arrived with (loaded or replayed vehicles)
+    private void indexDriver(Vehicle vehicle) {
+        String driverID = vehicle.getDriverID();
+        if (driverID == null || driverID.isEmpty()) {
+            return;
+        }
+        vehicleByDriver.put(driverID, vehicle);
+        if (assignedDrivers.get(driverID) == null) {
+            assignedDrivers.put(driverID, placeholderDriver(driverID));
+        }
+    }
+
+    // Unlinks the vehicle's driver and returns them to the pool
+    private void releaseDriver(Vehicle vehicle) {
+        String driverID = vehicle.getDriverID();
+        if (driverID == null || vehicleByDriver.get(driverID) != vehicle) {
+            return;
+        }
+        vehicleByDriver.remove(driverID);
+        Driver driver = assignedDrivers.remove(driverID);
+        if (driver != null) {
+            driver.setAvailable(true);
+            addDriver(driver);
+        }
+    }
+
+    private static boolean sameDriver(Vehicle a, Vehicle b) {
+        return a.getDriverID() == null ? b.getDriverID() == null : a.getDriverID().equals(b.getDriverID());
+    }
+
+    // Stands in for a driver whose record was never saved (files written before assigned
+    // drivers were persisted)
+    private static Driver placeholderDriver(String driverID) {
+        Driver driver = new Driver(driverID, "AssignedDriver", 5);
+        driver.setAvailable(false);
+        return driver;
+    }
+}
@@ -0,0 +1,152 @@
+import algorithms.CustomArrayList;
+import algorithms.CustomHashMap;
+import algorithms.LogHistogram;
+import algorithms.OrderStatisticTree;
+import algorithms.RunningStats;
+
+// Fuel usage aggregates kept up to date as vehicles come and go, for the whole fleet
+// and per vehicle type: a RunningStats for the count, mean and spread, and a LogHistogram
+// for percentiles, min and max (within 0.4%). A change costs O(1), and a report reads the
+// aggregates instead of visiting every vehicle.
+//
+// The vehicles themselves are kept in an order-statistics tree by fuel usage, so the
+// worst k, or every vehicle above a threshold, cost O(log n + k) and the full ranking is
+// an in-order walk with nothing to sort.
+//
+// Not thread-safe; AdomLogisticsSystem guards it with indexLock.
+public class FuelStatistics {
+    public static final class Summary {
+        private final String name;
+        private final RunningStats stats = new RunningStats();
+        private final LogHistogram histogram = new LogHistogram();
+
+        Summary(String name) {
+            this.name = name;
+        }
+
+        void add(double fuelUsage) {
+            stats.add(fuelUsage);
+            histogram.add(fuelUsage);
+        }
+
+        void remove(double fuelUsage) {
+            stats.remove(fuelUsage);
+            histogram.remove(fuelUsage);
+        }
+
+        // The type as first seen, or "All" for the whole fleet
+        public String getName() {
+            return name;
+        }
+
+        public long count() {
+            return stats.count();
+        }
+
+        public double mean() {
+            return stats.mean();
+        }
+
+        public double standardDeviation() {
+            return stats.standardDeviation();
+        }
+
+        public double min() {
+            return histogram.min();
+        }
+
+        public double max() {
+            return histogram.max();
+        }
+
+        // q in [0, 1], e.g. 0.95 for the 95th percentile
+        public double percentile(double q) {
+            return histogram.quantile(q);
+        }
+    }
+
+    // Lowest fuel usage first; ties are broken by registration so every vehicle has its
+    // own place
+    private static final java.util.Comparator<Vehicle> BY_FUEL = (a, b) -> {
+        int c = Double.compare(a.getFuelUsage(), b.getFuelUsage());
+        return c != 0 ? c : a.getRegistrationNumber().compareTo(b.getRegistrationNumber());
+    };
+
+    private Summary overall = new Summary("All");
+    private final OrderStatisticTree<Vehicle> byFuel = new OrderStatisticTree<>(BY_FUEL);
+    // Lower-cased type -> its summary; types whose vehicles are all gone keep an empty one
+    private final CustomHashMap<String, Summary> byType = new CustomHashMap<>();
+
+    public void add(Vehicle vehicle) {
+        overall.add(vehicle.getFuelUsage());
+        type(vehicle.getType()).add(vehicle.getFuelUsage());
+        byFuel.add(vehicle);
+    }
+
+    public void remove(Vehicle vehicle) {
+        if (byFuel.remove(vehicle)) {
+            overall.remove(vehicle.getFuelUsage());
+            type(vehicle.getType()).remove(vehicle.getFuelUsage());
+        }
+    }
+
+    // One sort and a linear-time tree build rather than n insertions
+    public void rebuild(CustomArrayList<Vehicle> vehicles) {
+        overall = new Summary("All");
+        byType.clear();
+        CustomArrayList<Vehicle> sorted = new CustomArrayList<>(Math.max(vehicles.size(), 1));
+        for (int i = 0; i < vehicles.size(); i++) {
+            Vehicle vehicle = vehicles.get(i);
+            overall.add(vehicle.getFuelUsage());
+            type(vehicle.getType()).add(vehicle.getFuelUsage());
+            sorted.add(vehicle);
+        }
+        sorted.sort(BY_FUEL);
+        byFuel.buildFrom(sorted);
+    }
+
+    // The k vehicles using the most fuel, worst first
+    public CustomArrayList<Vehicle> worst(int k) {
+        return byFuel.largest(k);
+    }
+
+    // Every vehicle using more than the threshold, worst first
+    public CustomArrayList<Vehicle> above(double threshold) {
+        // Sorts after every vehicle at the threshold and before any above it, since no
+        // registration sorts before the empty one
+        Vehicle probe = new Vehicle("", null, 0, Math.nextUp(threshold));
+        return byFuel.largest(byFuel.size() - byFuel.rank(probe));
+    }
+
+    // All vehicles, most efficient first
+    public CustomArrayList<Vehicle> ranking() {
+        return byFuel.range(0, byFuel.size());
+    }
+
+    public Summary overall() {
+        return overall;
+    }
+
+    // Types with at least one vehicle
+    public CustomArrayList<Summary> types() {
+        CustomArrayList<Summary> all = byType.values();
+        CustomArrayList<Summary> result = new CustomArrayList<>(Math.max(all.size(), 1));
+        for (int i = 0; i < all.size(); i++) {
+            if (all.get(i).count() > 0) {
+                result.add(all.get(i));
+            }
+        }
+        return result;
+    }
+
+    private Summary type(String type) {
+        String name = type == null ? "" : type.trim();
+        String key = name.toLowerCase();
+        Summary summary = byType.get(key);
+        if (summary == null) {
+            summary = new Summary(name);
+            byType.put(key, summary);
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,270 @@
+import algorithms.CustomArrayList;
+import algorithms.CustomHashMap;
+import algorithms.CustomLinkedList;
+import algorithms.CustomPriorityQueue;
+
+// Orders vehicles by how urgently they need a service. The score is pluggable, computed
+// from the vehicle and three inputs taken from its service history and the fleet:
+//   - kilometres driven since its last service with a known mileage
+//   - its fuel usage relative to the average of its type
+//   - its worst part wear: kilometres since a part was last replaced, over the usual
+//     kilometres between replacements of that part on this vehicle
+// Scores are cached in an indexed heap and a vehicle is scored again only when its own
+// inputs change (it is added, replaced or serviced), in O(log n). A type's average moves
+// with every vehicle that joins or leaves it, so each vehicle's fuel input would go
+// stale; instead of re-scoring the type on every change, its vehicles are re-scored
+// together once the average has drifted more than TYPE_DRIFT from the one they were
+// scored with.
+//
+// Not thread-safe; AdomLogisticsSystem guards it with indexLock.
+public class MaintenanceRanking {
+    public interface RiskModel {
+        double score(Inputs inputs);
+    }
+
+    public static final class Inputs {
+        public final Vehicle vehicle;
+        public final double kmSinceService;
+        // Fuel usage over the type's average; 1 when the type has no usage on record
+        public final double fuelRatio;
+        // 0 when no part has been replaced twice with the mileage known
+        public final double partWear;
+
+        Inputs(Vehicle vehicle, double kmSinceService, double fuelRatio, double partWear) {
+            this.vehicle = vehicle;
+            this.kmSinceService = kmSinceService;
+            this.fuelRatio = fuelRatio;
+            this.partWear = partWear;
+        }
+    }
+
+    // Kilometres between routine services
+    private static final double SERVICE_INTERVAL_KM = 10000;
+    // Fuel usage this far above the type's average counts as much as a whole interval
+    private static final double FUEL_EXCESS_PER_INTERVAL = 0.15;
+    private static final double TYPE_DRIFT = 0.05;
+    // Shorter replacement intervals (a part redone after a bad fit) count as this long
+    private static final double MIN_PART_INTERVAL_KM = 1000;
+
+    // Each term is in service intervals: 1.0 from the odometer is a vehicle due its
+    // routine service, 1.0 from a part is a part due for replacement
+    public static final RiskModel WEIGHTED = inputs ->
+            inputs.kmSinceService / SERVICE_INTERVAL_KM
+                    + Math.max(0, inputs.fuelRatio - 1) / FUEL_EXCESS_PER_INTERVAL
+                    + inputs.partWear;
+
+    // The original ranking: highest total mileage first
+    public static final RiskModel MILEAGE = inputs -> inputs.vehicle.getMileage();
+
+    public static final class Ranked {
+        private final Vehicle vehicle;
+        private final TypeGroup group;
+        // From the vehicle's history; only change when it is serviced
+        private double kmSinceService;
+        private double partWear;
+        private double score;
+        private CustomPriorityQueue.Handle<Ranked> handle;
+        private CustomLinkedList.Node<Ranked> member;
+
+        Ranked(Vehicle vehicle, TypeGroup group) {
+            this.vehicle = vehicle;
+            this.group = group;
+        }
+
+        public Vehicle getVehicle() {
+            return vehicle;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public double getKmSinceService() {
+            return kmSinceService;
+        }
+
+        public double getPartWear() {
+            return partWear;
+        }
+    }
+
+    private static final class TypeGroup {
+        final CustomLinkedList<Ranked> members = new CustomLinkedList<>();
+        double fuelSum;
+        // Average the members were last scored with, once they have been
+        boolean scored;
+        double scoredAverage;
+
+        double average() {
+            return members.isEmpty() ? 0 : fuelSum / members.size();
+        }
+    }
+
+    private final RiskModel model;
+    private final MaintenanceStore history;
+    private final CustomPriorityQueue<Ranked> queue = new CustomPriorityQueue<>(
+            (a, b) -> Double.compare(b.score, a.score), true);
+    private final CustomHashMap<String, Ranked> byRegistration = new CustomHashMap<>();
+    private final CustomHashMap<String, TypeGroup> groups = new CustomHashMap<>();
+
+    public MaintenanceRanking(RiskModel model, MaintenanceStore history) {
+        this.model = model;
+        this.history = history;
+    }
+
+    public void add(Vehicle vehicle) {
+        TypeGroup group = group(vehicle.getType());
+        Ranked ranked = new Ranked(vehicle, group);
+        ranked.member = group.members.addNode(ranked);
+        group.fuelSum += vehicle.getFuelUsage();
+        readHistory(ranked);
+        ranked.score = score(ranked);
+        ranked.handle = queue.offer(ranked);
+        byRegistration.put(vehicle.getRegistrationNumber(), ranked);
+        checkDrift(group);
+    }
+
+    public void remove(Vehicle vehicle) {
+        Ranked ranked = byRegistration.get(vehicle.getRegistrationNumber());
+        // A replaced vehicle's registration may already belong to its successor
+        if (ranked == null || ranked.vehicle != vehicle) {
+            return;
+        }
+        byRegistration.remove(vehicle.getRegistrationNumber());
+        queue.remove(ranked.handle);
+        TypeGroup group = ranked.group;
+        group.members.remove(ranked.member);
+        group.fuelSum -= vehicle.getFuelUsage();
+        checkDrift(group);
+    }
+
+    // Re-reads the vehicle's history after a service was recorded
+    public void serviced(String regNum) {
+        Ranked ranked = byRegistration.get(regNum);
+        if (ranked != null) {
+            readHistory(ranked);
+            rescore(ranked);
+        }
+    }
+
+    // Scores every vehicle afresh and builds the heap bottom-up, after bulk loads
+    public void rebuild(CustomArrayList<Vehicle> vehicles) {
+        queue.clear();
+        byRegistration.clear();
+        groups.clear();
+        byRegistration.ensureCapacity(vehicles.size());
+        CustomArrayList<Ranked> all = new CustomArrayList<>(Math.max(vehicles.size(), 1));
+        for (int i = 0; i < vehicles.size(); i++) {
+            Vehicle vehicle = vehicles.get(i);
+            TypeGroup group = group(vehicle.getType());
+            Ranked ranked = new Ranked(vehicle, group);
+            ranked.member = group.members.addNode(ranked);
+            group.fuelSum += vehicle.getFuelUsage();
+            byRegistration.put(vehicle.getRegistrationNumber(), ranked);
+            all.add(ranked);
+        }
+        CustomArrayList<TypeGroup> types = groups.values();
+        for (int i = 0; i < types.size(); i++) {
+            types.get(i).scored = true;
+            types.get(i).scoredAverage = types.get(i).average();
+        }
+        for (int i = 0; i < all.size(); i++) {
+            readHistory(all.get(i));
+            all.get(i).score = score(all.get(i));
+        }
+        CustomArrayList<CustomPriorityQueue.Handle<Ranked>> handles = queue.offerAll(all);
+        for (int i = 0; i < all.size(); i++) {
+            all.get(i).handle = handles.get(i);
+        }
+    }
+
+    public Ranked peek() {
+        return queue.peek();
+    }
+
+    // The k vehicles most in need of a service, most urgent first, in O(k log k)
+    public CustomArrayList<Ranked> mostUrgent(int k) {
+        return queue.peekFirst(k);
+    }
+
+    public Ranked get(String regNum) {
+        return byRegistration.get(regNum);
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    private TypeGroup group(String type) {
+        String key = type == null ? "" : type.trim().toLowerCase();
+        TypeGroup group = groups.get(key);
+        if (group == null) {
+            group = new TypeGroup();
+            groups.put(key, group);
+        }
+        return group;
+    }
+
+    private double score(Ranked ranked) {
+        double average = ranked.group.scoredAverage;
+        double fuelRatio = average > 0 ? ranked.vehicle.getFuelUsage() / average : 1;
+        return model.score(new Inputs(ranked.vehicle, ranked.kmSinceService, fuelRatio, ranked.partWear));
+    }
+
+    private void rescore(Ranked ranked) {
+        ranked.score = score(ranked);
+        queue.update(ranked.handle);
+    }
+
+    private void checkDrift(TypeGroup group) {
+        double average = group.average();
+        if (group.scored && Math.abs(average - group.scoredAverage) <= TYPE_DRIFT * Math.abs(group.scoredAverage)) {
+            return;
+        }
+        group.scored = true;
+        group.scoredAverage = average;
+        CustomArrayList<Ranked> members = group.members.toArrayList();
+        for (int i = 0; i < members.size(); i++) {
+            rescore(members.get(i));
+        }
+    }
+
+    // Records with an unknown mileage (kept before mileage was recorded) still count as
+    // replacements but cannot date one in kilometres
+    private void readHistory(Ranked ranked) {
+        double mileage = ranked.vehicle.getMileage();
+        CustomArrayList<MaintenanceRecord> records = history.history(ranked.vehicle.getRegistrationNumber());
+        double lastService = 0;
+        // Part key -> {first known mileage, last known mileage, replacements with one}
+        CustomHashMap<String, double[]> parts = new CustomHashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            MaintenanceRecord record = records.get(i);
+            if (Double.isNaN(record.getMileage())) {
+                continue;
+            }
+            lastService = record.getMileage();
+            CustomArrayList<String> names = record.getPartsReplaced().keySet();
+            for (int k = 0; k < names.size(); k++) {
+                String key = MaintenanceStore.partKey(names.get(k));
+                double[] seen = parts.get(key);
+                if (seen == null) {
+                    parts.put(key, new double[] {record.getMileage(), record.getMileage(), 1});
+                } else if (seen[1] != record.getMileage()) {
+                    seen[1] = record.getMileage();
+                    seen[2]++;
+                }
+            }
+        }
+        double wear = 0;
+        CustomArrayList<double[]> seen = parts.values();
+        for (int i = 0; i < seen.size(); i++) {
+            double[] part = seen.get(i);
+            double interval = part[2] > 1 ? (part[1] - part[0]) / (part[2] - 1) : 0;
+            if (interval > 0) {
+                wear = Math.max(wear, Math.max(0, mileage - part[1]) / Math.max(interval, MIN_PART_INTERVAL_KM));
+            }
+        }
+        ranked.kmSinceService = Math.max(0, mileage - lastService);
+        ranked.partWear = wear;
+    }
+}
@@ -1,38 +1,150 @@
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import algorithms.CustomArrayList;
 import algorithms.CustomHashMap;
+
+// One service of one vehicle. A record is identified by its vehicle and time, so storing
+// it again (a replayed journal record) replaces it instead of adding a copy.
+//
+// As fields, for maintenance.txt and the journal:
+//   vehicle, time (epoch ms), mileage (blank if unknown), cost, then part, part cost, ...
+// Files written before records were typed hold vehicle, date, then the text of
+// toString() at the time, "Date: ..., Parts: {part=cost, ...}, Cost: ...", possibly
+// split at its commas; fromFields() still reads those.
 public class MaintenanceRecord {
-    private String vehicleID;
-    private String date;
-    private CustomHashMap<String, Double> partsReplaced;
-    private double cost;
-    
-    public MaintenanceRecord(String vehicleID, String date, 
-                           CustomHashMap<String, Double> parts, double cost) {
+    private static final String LEGACY_PREFIX = "Date: ";
+
+    private final String vehicleID;
+    private final long time;
+    // Odometer reading at the service; NaN for records that predate it being kept
+    private final double mileage;
+    private final CustomHashMap<String, Double> partsReplaced;
+    private final double cost;
+
+    public MaintenanceRecord(String vehicleID, long time, double mileage,
+                             CustomHashMap<String, Double> parts, double cost) {
         this.vehicleID = vehicleID;
-        this.date = date;
+        this.time = time;
+        this.mileage = mileage;
         this.partsReplaced = parts;
         this.cost = cost;
     }
-    
+
     // Getters
     public String getVehicleID() {
         return vehicleID;
     }
-    
-    public String getDate() {
-        return date;
+
+    public long getTime() {
+        return time;
     }
-    
+
+    public LocalDate getDate() {
+        return Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    public double getMileage() {
+        return mileage;
+    }
+
     public CustomHashMap<String, Double> getPartsReplaced() {
         return partsReplaced;
     }
-    
+
     public double getCost() {
         return cost;
     }
-    
+
+    public String[] toFields() {
+        CustomArrayList<CustomHashMap.Entry<String, Double>> parts = partsReplaced.entrySet();
+        String[] fields = new String[4 + 2 * parts.size()];
+        fields[0] = vehicleID;
+        fields[1] = Long.toString(time);
+        fields[2] = Double.isNaN(mileage) ? "" : Double.toString(mileage);
+        fields[3] = Double.toString(cost);
+        for (int i = 0; i < parts.size(); i++) {
+            fields[4 + 2 * i] = parts.get(i).getKey();
+            fields[5 + 2 * i] = Double.toString(parts.get(i).getValue());
+        }
+        return fields;
+    }
+
+    // Reads either layout; throws IllegalArgumentException for anything else
+    public static MaintenanceRecord fromFields(String[] fields) {
+        if (fields.length < 3) {
+            throw new IllegalArgumentException("Expected at least 3 fields, found " + fields.length);
+        }
+        if (fields[2].startsWith(LEGACY_PREFIX)) {
+            return fromLegacy(fields);
+        }
+        if (fields.length < 4 || fields.length % 2 != 0) {
+            throw new IllegalArgumentException("Expected parts in name, cost pairs");
+        }
+        try {
+            CustomHashMap<String, Double> parts = new CustomHashMap<>();
+            for (int i = 4; i < fields.length; i += 2) {
+                parts.put(fields[i], Double.parseDouble(fields[i + 1]));
+            }
+            double mileage = fields[2].isEmpty() ? Double.NaN : Double.parseDouble(fields[2]);
+            return new MaintenanceRecord(fields[0], Long.parseLong(fields[1]), mileage, parts,
+                    Double.parseDouble(fields[3]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + e.getMessage());
+        }
+    }
+
+    // The old text was split wherever it had a comma, so it is joined back together first.
+    // Legacy records only carry a date; they are placed at the start of that day.
+    private static MaintenanceRecord fromLegacy(String[] fields) {
+        StringBuilder text = new StringBuilder(fields[2]);
+        for (int i = 3; i < fields.length; i++) {
+            text.append(", ").append(fields[i]);
+        }
+        String details = text.toString();
+        int partsAt = details.indexOf(", Parts: {");
+        int costAt = details.lastIndexOf("}, Cost: ");
+        if (partsAt < 0 || costAt < partsAt) {
+            throw new IllegalArgumentException("Unreadable maintenance details: " + details);
+        }
+        try {
+            long time = LocalDate.parse(fields[1].trim()).atStartOfDay(ZoneId.systemDefault())
+                    .toInstant().toEpochMilli();
+            CustomHashMap<String, Double> parts = new CustomHashMap<>();
+            String list = details.substring(partsAt + ", Parts: {".length(), costAt);
+            if (!list.isEmpty()) {
+                for (String entry : list.split(", ")) {
+                    int equals = entry.lastIndexOf('=');
+                    if (equals < 0) {
+                        throw new IllegalArgumentException("Unreadable part: " + entry);
+                    }
+                    parts.put(entry.substring(0, equals), Double.parseDouble(entry.substring(equals + 1)));
+                }
+            }
+            double cost = Double.parseDouble(details.substring(costAt + "}, Cost: ".length()).trim());
+            return new MaintenanceRecord(fields[0], time, Double.NaN, parts, cost);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Unreadable maintenance details: " + details);
+        }
+    }
+
     @Override
     public String toString() {
-        return "Date: " + date + ", Parts: " + partsReplaced + ", Cost: " + cost;
+        StringBuilder sb = new StringBuilder();
+        sb.append(Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()).toLocalDateTime().withNano(0));
+        if (!Double.isNaN(mileage)) {
+            sb.append(" at ").append(String.format("%.0f", mileage)).append(" km");
+        }
+        sb.append(": ");
+        CustomArrayList<CustomHashMap.Entry<String, Double>> parts = partsReplaced.entrySet();
+        for (int i = 0; i < parts.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(parts.get(i).getKey()).append(String.format(" %.2f", parts.get(i).getValue()));
+        }
+        sb.append(String.format(" (total %.2f)", cost));
+        return sb.toString();
     }
 }
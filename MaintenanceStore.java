@@ -0,0 +1,170 @@
+import java.util.function.Consumer;
+import algorithms.CustomArrayList;
+import algorithms.CustomHashMap;
+import algorithms.CustomSkipList;
+
+// Every maintenance record, indexed twice: per vehicle in time order, and per part in
+// time order, so "spend on brake pads last quarter" is a range scan of one part's index
+// rather than a pass over every record. Part names are matched without regard to case or
+// surrounding spaces. All methods take the store's monitor.
+public class MaintenanceStore {
+    // One part replaced in one service
+    public static final class PartUse {
+        public final MaintenanceRecord record;
+        public final String part;
+        public final double cost;
+
+        PartUse(MaintenanceRecord record, String part, double cost) {
+            this.record = record;
+            this.part = part;
+            this.cost = cost;
+        }
+    }
+
+    // Vehicle -> time -> record
+    private final CustomHashMap<String, CustomSkipList<Long, MaintenanceRecord>> byVehicle = new CustomHashMap<>();
+    // Part key -> time -> uses at that time (several vehicles may be serviced at once)
+    private final CustomHashMap<String, CustomSkipList<Long, CustomArrayList<PartUse>>> byPart = new CustomHashMap<>();
+    private int size;
+
+    public static String partKey(String part) {
+        return part.trim().toLowerCase();
+    }
+
+    // Adds the record, replacing the vehicle's record at the same time if there is one
+    public synchronized void put(MaintenanceRecord record) {
+        CustomSkipList<Long, MaintenanceRecord> records = byVehicle.get(record.getVehicleID());
+        if (records == null) {
+            records = new CustomSkipList<>(Long::compare);
+            byVehicle.put(record.getVehicleID(), records);
+        }
+        MaintenanceRecord old = records.get(record.getTime());
+        if (old != null) {
+            unindexParts(old);
+            size--;
+        }
+        records.put(record.getTime(), record);
+        size++;
+
+        CustomArrayList<CustomHashMap.Entry<String, Double>> parts = record.getPartsReplaced().entrySet();
+        for (int i = 0; i < parts.size(); i++) {
+            String key = partKey(parts.get(i).getKey());
+            CustomSkipList<Long, CustomArrayList<PartUse>> uses = byPart.get(key);
+            if (uses == null) {
+                uses = new CustomSkipList<>(Long::compare);
+                byPart.put(key, uses);
+            }
+            CustomArrayList<PartUse> atTime = uses.get(record.getTime());
+            if (atTime == null) {
+                atTime = new CustomArrayList<>(1);
+                uses.put(record.getTime(), atTime);
+            }
+            atTime.add(new PartUse(record, parts.get(i).getKey(), parts.get(i).getValue()));
+        }
+    }
+
+    // The earliest time from now on that the vehicle has no record at, so a new record
+    // never replaces one made in the same millisecond
+    public synchronized long nextTime(String vehicleID, long now) {
+        MaintenanceRecord last = lastService(vehicleID);
+        return last == null ? now : Math.max(now, last.getTime() + 1);
+    }
+
+    // The vehicle's most recent record, or null
+    public synchronized MaintenanceRecord lastService(String vehicleID) {
+        CustomSkipList<Long, MaintenanceRecord> records = byVehicle.get(vehicleID);
+        return records == null ? null : records.lastValue();
+    }
+
+    // Oldest first
+    public synchronized CustomArrayList<MaintenanceRecord> history(String vehicleID) {
+        CustomSkipList<Long, MaintenanceRecord> records = byVehicle.get(vehicleID);
+        return records == null ? new CustomArrayList<>() : records.range(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public synchronized void removeVehicle(String vehicleID) {
+        CustomSkipList<Long, MaintenanceRecord> records = byVehicle.remove(vehicleID);
+        if (records == null) {
+            return;
+        }
+        CustomArrayList<MaintenanceRecord> all = records.range(Long.MIN_VALUE, Long.MAX_VALUE);
+        for (int i = 0; i < all.size(); i++) {
+            unindexParts(all.get(i));
+        }
+        size -= all.size();
+    }
+
+    // Uses of a part between two times (inclusive), oldest first
+    public synchronized CustomArrayList<PartUse> partUses(String part, long from, long to) {
+        CustomArrayList<PartUse> result = new CustomArrayList<>();
+        CustomSkipList<Long, CustomArrayList<PartUse>> uses = byPart.get(partKey(part));
+        if (uses != null) {
+            CustomArrayList<CustomArrayList<PartUse>> buckets = uses.range(from, to);
+            for (int i = 0; i < buckets.size(); i++) {
+                CustomArrayList<PartUse> atTime = buckets.get(i);
+                for (int k = 0; k < atTime.size(); k++) {
+                    result.add(atTime.get(k));
+                }
+            }
+        }
+        return result;
+    }
+
+    // Total spent on a part between two times (inclusive)
+    public synchronized double partSpend(String part, long from, long to) {
+        double total = 0;
+        CustomSkipList<Long, CustomArrayList<PartUse>> uses = byPart.get(partKey(part));
+        if (uses != null) {
+            CustomArrayList<CustomArrayList<PartUse>> buckets = uses.range(from, to);
+            for (int i = 0; i < buckets.size(); i++) {
+                CustomArrayList<PartUse> atTime = buckets.get(i);
+                for (int k = 0; k < atTime.size(); k++) {
+                    total += atTime.get(k).cost;
+                }
+            }
+        }
+        return total;
+    }
+
+    // Keys of the parts in at least one record
+    public synchronized CustomArrayList<String> parts() {
+        return byPart.keySet();
+    }
+
+    public synchronized void forEach(Consumer<MaintenanceRecord> visitor) {
+        CustomArrayList<CustomSkipList<Long, MaintenanceRecord>> vehicles = byVehicle.values();
+        for (int i = 0; i < vehicles.size(); i++) {
+            CustomArrayList<MaintenanceRecord> records = vehicles.get(i).range(Long.MIN_VALUE, Long.MAX_VALUE);
+            for (int k = 0; k < records.size(); k++) {
+                visitor.accept(records.get(k));
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void unindexParts(MaintenanceRecord record) {
+        CustomArrayList<CustomHashMap.Entry<String, Double>> parts = record.getPartsReplaced().entrySet();
+        for (int i = 0; i < parts.size(); i++) {
+            String key = partKey(parts.get(i).getKey());
+            CustomSkipList<Long, CustomArrayList<PartUse>> uses = byPart.get(key);
+            CustomArrayList<PartUse> atTime = uses == null ? null : uses.get(record.getTime());
+            if (atTime == null) {
+                continue;
+            }
+            for (int k = atTime.size() - 1; k >= 0; k--) {
+                if (atTime.get(k).record == record) {
+                    atTime.remove(k);
+                }
+            }
+            if (atTime.isEmpty()) {
+                uses.remove(record.getTime());
+                if (uses.isEmpty()) {
+                    byPart.remove(key);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Writes the snapshot files on a background thread, so no operation waits for a file to
+// be rewritten. Changes mark the files they touch as dirty; a snapshot request waits out
+// the coalescing window, so a burst of changes costs one rewrite, then seals the active
+// journal segment, rewrites only the dirty files and deletes the segments they cover.
+//
+// In ASYNC mode the same thread also fsyncs the journal once per window, which bounds
+// how much a crash can lose to one window of changes.
+//
+// A record and its dirty bit go in under the shared side of appendLock; sealing a segment
+// and taking the dirty bits happen together under the exclusive side. So every record in
+// a sealed segment has its bit in the snapshot that deletes the segment.
+public class PersistenceService {
+    public interface SnapshotWriter {
+        // Writes the files whose bits are set in dirtyFiles
+        void write(int dirtyFiles) throws IOException;
+    }
+
+    private static final long NOT_REQUESTED = Long.MIN_VALUE;
+    // Shortest interval between journal fsyncs in ASYNC mode, even with no window
+    private static final long MIN_SYNC_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final FleetJournal journal;
+    private final SnapshotWriter snapshotWriter;
+    private final long windowNanos;
+    private final long syncPeriodNanos;
+    private final Thread writer;
+    // Shared by appenders (so group commit still batches them), exclusive for a rotation
+    private final ReadWriteLock appendLock = new ReentrantReadWriteLock();
+
+    // Everything below is guarded by this
+    private int dirtyFiles;
+    // System.nanoTime() at which the requested snapshot is due
+    private long snapshotDue = NOT_REQUESTED;
+    private long flushesRequested;
+    private long flushesDone;
+    private IOException failure;
+    private boolean closed;
+
+    public PersistenceService(FleetJournal journal, SnapshotWriter snapshotWriter, long windowMillis) {
+        this.journal = journal;
+        this.snapshotWriter = snapshotWriter;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, windowMillis));
+        this.syncPeriodNanos = Math.max(windowNanos, MIN_SYNC_PERIOD_NANOS);
+        this.writer = new Thread(this::writeLoop, "persistence-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public synchronized void markDirty(int files) {
+        dirtyFiles |= files;
+    }
+
+    // Journals a change to the given files
+    public void append(int files, String type, String... fields) throws IOException {
+        append(files, null, type, fields);
+    }
+
+    // Journals a change, then makes it visible to other threads with publish (which runs
+    // even if the journal write fails). No rotation can come between the two, so the
+    // record is written before anyone can act on the change, and the snapshot that
+    // discards its segment still sees the change.
+    public void append(int files, Runnable publish, String type, String... fields) throws IOException {
+        appendLock.readLock().lock();
+        try {
+            markDirty(files);
+            journal.append(type, fields);
+        } finally {
+            try {
+                if (publish != null) {
+                    publish.run();
+                }
+            } finally {
+                appendLock.readLock().unlock();
+            }
+        }
+    }
+
+    // Schedules a snapshot one window from now; requests made before it runs are merged
+    public synchronized void requestSnapshot() {
+        if (snapshotDue == NOT_REQUESTED) {
+            snapshotDue = System.nanoTime() + windowNanos;
+            notifyAll();
+        }
+    }
+
+    // Barrier: returns once every change made before the call is in the snapshot files
+    // and the journal is synced. Rethrows the first write error since the last flush.
+    public void flush() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("Persistence service is closed");
+            }
+            long ticket = ++flushesRequested;
+            notifyAll();
+            boolean interrupted = false;
+            while (flushesDone < ticket) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            IOException error = failure;
+            failure = null;
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    // Stops the writer after the work in progress; pending changes stay in the journal
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        long nextSync = System.nanoTime() + syncPeriodNanos;
+        while (true) {
+            long ticket;
+            int files = 0;
+            boolean snapshot;
+            synchronized (this) {
+                while (true) {
+                    if (flushesRequested > flushesDone) {
+                        snapshot = true;
+                        break;
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    long now = System.nanoTime();
+                    if (snapshotDue != NOT_REQUESTED && now - snapshotDue >= 0) {
+                        snapshot = true;
+                        break;
+                    }
+                    boolean async = journal.durability() == FleetJournal.Durability.ASYNC;
+                    if (async && now - nextSync >= 0) {
+                        snapshot = false;
+                        break;
+                    }
+                    long wakeUp = snapshotDue;
+                    if (async && (wakeUp == NOT_REQUESTED || nextSync - wakeUp < 0)) {
+                        wakeUp = nextSync;
+                    }
+                    try {
+                        if (wakeUp == NOT_REQUESTED) {
+                            wait();
+                        } else {
+                            TimeUnit.NANOSECONDS.timedWait(this, wakeUp - now);
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                ticket = flushesRequested;
+                if (snapshot) {
+                    snapshotDue = NOT_REQUESTED;
+                }
+            }
+
+            IOException error = null;
+            try {
+                long sealed = -1;
+                if (snapshot) {
+                    appendLock.writeLock().lock();
+                    try {
+                        synchronized (this) {
+                            files = dirtyFiles;
+                            dirtyFiles = 0;
+                        }
+                        if (files != 0) {
+                            sealed = journal.rotate();
+                        }
+                    } finally {
+                        appendLock.writeLock().unlock();
+                    }
+                }
+                if (files != 0) {
+                    snapshotWriter.write(files);
+                    journal.discardThrough(sealed);
+                }
+                journal.sync();
+            } catch (IOException e) {
+                error = e;
+                System.err.println("Error saving data: " + e.getMessage());
+            }
+
+            synchronized (this) {
+                if (error != null) {
+                    // Sealed segments are only deleted after a successful write, so the
+                    // changes are still in the journal; try the files again next time
+                    dirtyFiles |= files;
+                    if (failure == null) {
+                        failure = error;
+                    }
+                }
+                flushesDone = ticket;
+                notifyAll();
+            }
+            nextSync = System.nanoTime() + syncPeriodNanos;
+        }
+    }
+
+    // Write to a temp file, fsync, then rename over the old file
+    public static void writeAtomically(String path, byte[] content) throws IOException {
+        File target = new File(path);
+        File temp = new File(path + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(content);
+            out.getFD().sync();
+        }
+        Files.move(temp.toPath(), target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(target.getAbsoluteFile().getParentFile());
+    }
+
+    // The rename itself is only durable once the directory entry is on disk. Not every
+    // platform can open a directory for syncing (Windows cannot), so this is best effort.
+    private static void syncDirectory(File directory) {
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Unsupported here; the file contents are synced regardless
+        }
+    }
+}
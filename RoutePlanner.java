@@ -0,0 +1,85 @@
+import java.io.File;
+import java.io.IOException;
+import algorithms.CustomHashMap;
+import algorithms.CustomLinkedList;
+import algorithms.RoadGraph;
+
+// Travel times between places by road, for delivery ETAs. One-off questions are
+// answered by an A* search over the road graph; an origin asked about again is taken to
+// be a depot, and gets a table of travel times to every place, so further deliveries
+// from it cost one array lookup. Tables of the least recently used depots are dropped
+// once MAX_TABLES are held.
+public class RoutePlanner {
+    // Queries from one origin before its full table is worth computing
+    private static final int DEPOT_QUERIES = 2;
+    private static final int MAX_TABLES = 16;
+
+    private static final class Table {
+        final int source;
+        final double[] minutes;
+
+        Table(int source, double[] minutes) {
+            this.source = source;
+            this.minutes = minutes;
+        }
+    }
+
+    private final RoadGraph graph;
+    // Everything below is guarded by this, as is the graph's query scratch space
+    private final int[] queriesFrom;
+    private final CustomHashMap<Integer, CustomLinkedList.Node<Table>> tables = new CustomHashMap<>();
+    // Least recently used first
+    private final CustomLinkedList<Table> recency = new CustomLinkedList<>();
+
+    public RoutePlanner(RoadGraph graph) {
+        this.graph = graph;
+        this.queriesFrom = new int[graph.nodeCount()];
+    }
+
+    public static RoutePlanner load(File roads) throws IOException {
+        return new RoutePlanner(RoadGraph.load(roads, RoadGraph.DEFAULT_LANDMARKS));
+    }
+
+    public RoadGraph graph() {
+        return graph;
+    }
+
+    public boolean knows(String place) {
+        return graph.node(place) >= 0;
+    }
+
+    // Travel time in minutes, or RoadGraph.UNREACHABLE if either place is unknown or no
+    // road connects them
+    public synchronized double travelMinutes(String from, String to) {
+        int source = graph.node(from);
+        int target = graph.node(to);
+        if (source < 0 || target < 0) {
+            return RoadGraph.UNREACHABLE;
+        }
+        CustomLinkedList.Node<Table> node = tables.get(source);
+        if (node != null) {
+            recency.remove(node);
+            tables.put(source, recency.addNode(node.get()));
+            return node.get().minutes[target];
+        }
+        if (++queriesFrom[source] < DEPOT_QUERIES) {
+            return graph.travelTime(source, target);
+        }
+        if (recency.size() >= MAX_TABLES) {
+            tables.remove(recency.removeFirst().source);
+        }
+        Table table = new Table(source, graph.distancesFrom(source));
+        tables.put(source, recency.addNode(table));
+        return table.minutes[target];
+    }
+
+    public synchronized int cachedTables() {
+        return recency.size();
+    }
+
+    // "2h 05m", or "45m" under an hour
+    public static String formatDuration(double minutes) {
+        long total = Math.round(minutes);
+        return total < 60 ? total + "m" : String.format("%dh %02dm", total / 60, total % 60);
+    }
+}
@@ -0,0 +1,224 @@
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import algorithms.CustomArrayList;
+import algorithms.CustomHashMap;
+import algorithms.IndexSort;
+import algorithms.RoadGraph;
+import algorithms.SavingsRouter;
+
+// Batches pending deliveries into multi-stop trips. Deliveries are grouped by origin
+// depot and each depot is planned on its own fork/join task with SavingsRouter, all
+// sharing one deadline.
+//
+// A depot's fleet is the vehicles with a driver whose pending deliveries mostly leave
+// from it. Routes are planned for the largest capacity in that fleet; each route then
+// goes to the vehicle that is free soonest among those big enough for its load, so a
+// vehicle may be given several trips one after the other.
+public class TripPlanner {
+    public static final long DEFAULT_TIME_LIMIT_MILLIS = 2000;
+
+    public static final class Trip {
+        public final Vehicle vehicle;
+        public final String origin;
+        // Deliveries in drop-off order
+        public final CustomArrayList<Delivery> deliveries = new CustomArrayList<>();
+        // Minutes after the plan starts at which each delivery is dropped off
+        public final CustomArrayList<Double> arrivalMinutes = new CustomArrayList<>();
+        // Minutes after the plan starts at which the vehicle leaves and is back
+        public final double start;
+        public final double end;
+
+        Trip(Vehicle vehicle, String origin, double start, double end) {
+            this.vehicle = vehicle;
+            this.origin = origin;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    public static final class Result {
+        public final CustomArrayList<Trip> trips = new CustomArrayList<>();
+        // Deliveries whose depot has no vehicle, or that no road reaches
+        public final CustomArrayList<Delivery> unplanned = new CustomArrayList<>();
+        public boolean complete = true;
+    }
+
+    private TripPlanner() {
+    }
+
+    // Plans trips for the given pending deliveries; vehicles are looked up by
+    // registration (null for unknown ones)
+    public static Result plan(RoadGraph graph, CustomArrayList<Delivery> pending,
+                              Function<String, Vehicle> vehicles, long timeLimitMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeLimitMillis);
+        CustomHashMap<String, CustomArrayList<Delivery>> byOrigin = new CustomHashMap<>();
+        CustomHashMap<String, CustomHashMap<String, Integer>> originCounts = new CustomHashMap<>();
+        for (int i = 0; i < pending.size(); i++) {
+            Delivery delivery = pending.get(i);
+            // Same rule as place names in the road graph: case and spaces do not matter
+            String origin = delivery.getOrigin().trim().toLowerCase();
+            CustomArrayList<Delivery> group = byOrigin.get(origin);
+            if (group == null) {
+                group = new CustomArrayList<>();
+                byOrigin.put(origin, group);
+            }
+            group.add(delivery);
+            String vehicleID = delivery.getAssignedVehicleID();
+            if (vehicleID != null) {
+                CustomHashMap<String, Integer> counts = originCounts.get(vehicleID);
+                if (counts == null) {
+                    counts = new CustomHashMap<>();
+                    originCounts.put(vehicleID, counts);
+                }
+                Integer count = counts.get(origin);
+                counts.put(origin, count == null ? 1 : count + 1);
+            }
+        }
+
+        // Each vehicle joins the fleet of the depot most of its deliveries leave from
+        CustomHashMap<String, CustomArrayList<Vehicle>> fleets = new CustomHashMap<>();
+        CustomArrayList<String> vehicleIDs = originCounts.keySet();
+        for (int i = 0; i < vehicleIDs.size(); i++) {
+            Vehicle vehicle = vehicles.apply(vehicleIDs.get(i));
+            if (vehicle == null || vehicle.getDriverID() == null || vehicle.getDriverID().isEmpty()) {
+                continue;
+            }
+            CustomHashMap<String, Integer> counts = originCounts.get(vehicleIDs.get(i));
+            CustomArrayList<String> origins = counts.keySet();
+            String home = null;
+            for (int k = 0; k < origins.size(); k++) {
+                if (home == null || counts.get(origins.get(k)) > counts.get(home)) {
+                    home = origins.get(k);
+                }
+            }
+            CustomArrayList<Vehicle> fleet = fleets.get(home);
+            if (fleet == null) {
+                fleet = new CustomArrayList<>();
+                fleets.put(home, fleet);
+            }
+            fleet.add(vehicle);
+        }
+
+        CustomArrayList<String> origins = byOrigin.keySet();
+        final Result[] results = new Result[origins.size()];
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[origins.size()];
+        for (int i = 0; i < tasks.length; i++) {
+            final int slot = i;
+            final CustomArrayList<Delivery> group = byOrigin.get(origins.get(i));
+            final CustomArrayList<Vehicle> fleet = fleets.get(origins.get(i));
+            tasks[i] = ForkJoinTask.adapt(() -> results[slot] = planDepot(graph, group, fleet, deadline));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        Result merged = new Result();
+        for (Result result : results) {
+            for (int i = 0; i < result.trips.size(); i++) {
+                merged.trips.add(result.trips.get(i));
+            }
+            for (int i = 0; i < result.unplanned.size(); i++) {
+                merged.unplanned.add(result.unplanned.get(i));
+            }
+            merged.complete &= result.complete;
+        }
+        return merged;
+    }
+
+    private static Result planDepot(RoadGraph graph, CustomArrayList<Delivery> group,
+                                    CustomArrayList<Vehicle> fleet, long deadline) {
+        Result result = new Result();
+        int depot = graph.node(group.get(0).getOrigin());
+        if (fleet == null || depot < 0) {
+            addAll(result.unplanned, group);
+            return result;
+        }
+        int capacity = 1;
+        for (int i = 0; i < fleet.size(); i++) {
+            capacity = Math.max(capacity, fleet.get(i).getCapacity());
+        }
+
+        // One stop per destination, split into loads of at most capacity; deliveries
+        // to places missing from the road network cannot be planned
+        CustomHashMap<Integer, CustomArrayList<Delivery>> byDestination = new CustomHashMap<>();
+        for (int i = 0; i < group.size(); i++) {
+            Delivery delivery = group.get(i);
+            int node = graph.node(delivery.getDestination());
+            if (node < 0) {
+                result.unplanned.add(delivery);
+                continue;
+            }
+            CustomArrayList<Delivery> here = byDestination.get(node);
+            if (here == null) {
+                here = new CustomArrayList<>();
+                byDestination.put(node, here);
+            }
+            here.add(delivery);
+        }
+        CustomArrayList<CustomArrayList<Delivery>> loads = new CustomArrayList<>();
+        CustomArrayList<Integer> loadNodes = new CustomArrayList<>();
+        CustomArrayList<Integer> nodes = byDestination.keySet();
+        for (int i = 0; i < nodes.size(); i++) {
+            CustomArrayList<Delivery> here = byDestination.get(nodes.get(i));
+            for (int from = 0; from < here.size(); from += capacity) {
+                CustomArrayList<Delivery> load = new CustomArrayList<>();
+                for (int k = from; k < Math.min(from + capacity, here.size()); k++) {
+                    load.add(here.get(k));
+                }
+                loads.add(load);
+                loadNodes.add(nodes.get(i));
+            }
+        }
+        int[] stops = new int[loads.size()];
+        int[] demand = new int[loads.size()];
+        for (int i = 0; i < stops.length; i++) {
+            stops[i] = loadNodes.get(i);
+            demand[i] = loads.get(i).size();
+        }
+
+        SavingsRouter.Plan plan = SavingsRouter.plan(graph, graph.newSearch(), depot, stops, demand, capacity,
+                SavingsRouter.DEFAULT_NEIGHBOURS, deadline);
+        result.complete = plan.complete;
+        for (int stop : plan.unrouted) {
+            addAll(result.unplanned, loads.get(stop));
+        }
+
+        // Longest routes first, each to the vehicle that can carry it and is free soonest
+        int[][] routes = plan.routes;
+        double[] longestFirst = new double[routes.length];
+        for (int r = 0; r < routes.length; r++) {
+            longestFirst[r] = -plan.routeMinutes[r];
+        }
+        double[] freeAt = new double[fleet.size()];
+        for (int index : IndexSort.sortedIndices(longestFirst)) {
+            int[] route = routes[index];
+            int routeLoad = 0;
+            for (int stop : route) {
+                routeLoad += demand[stop];
+            }
+            int chosen = -1;
+            for (int v = 0; v < fleet.size(); v++) {
+                if (fleet.get(v).getCapacity() >= routeLoad && (chosen < 0 || freeAt[v] < freeAt[chosen])) {
+                    chosen = v;
+                }
+            }
+            double start = freeAt[chosen];
+            freeAt[chosen] += plan.routeMinutes[index];
+            Trip trip = new Trip(fleet.get(chosen), group.get(0).getOrigin(), start, freeAt[chosen]);
+            for (int stop : route) {
+                CustomArrayList<Delivery> load = loads.get(stop);
+                for (int k = 0; k < load.size(); k++) {
+                    trip.deliveries.add(load.get(k));
+                    trip.arrivalMinutes.add(start + plan.arrivalMinutes[stop]);
+                }
+            }
+            result.trips.add(trip);
+        }
+        return result;
+    }
+
+    private static void addAll(CustomArrayList<Delivery> target, CustomArrayList<Delivery> source) {
+        for (int i = 0; i < source.size(); i++) {
+            target.add(source.get(i));
+        }
+    }
+}
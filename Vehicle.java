@@ -1,18 +1,31 @@
-import algorithms.CustomHashMap;
 public class Vehicle {
     private String registrationNumber;
     private String type;
-    private double mileage;
+    // Written by whichever dispatcher thread changes the vehicle
+    private volatile double mileage;
     private double fuelUsage;
-    private String driverID;
-    private CustomHashMap<String, String> maintenanceHistory;
+    private volatile String driverID;
+    // Parcels per trip
+    private int capacity;
 
     public Vehicle(String regNum, String type, double mileage, double fuelUsage) {
         this.registrationNumber = regNum;
         this.type = type;
         this.mileage = mileage;
         this.fuelUsage = fuelUsage;
-        this.maintenanceHistory = new CustomHashMap<>();
+        this.capacity = defaultCapacity(type);
+    }
+
+    // Capacity of a vehicle whose own was never given
+    public static int defaultCapacity(String type) {
+        String name = type == null ? "" : type.trim().toLowerCase();
+        if (name.equals("truck") || name.equals("lorry")) {
+            return 40;
+        }
+        if (name.equals("van")) {
+            return 15;
+        }
+        return 20;
     }
     
     // Getters and setters
@@ -44,8 +57,12 @@ public class Vehicle {
         this.driverID = driverID; 
     }
     
-    public CustomHashMap<String, String> getMaintenanceHistory() {
-        return maintenanceHistory;
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = Math.max(1, capacity);
     }
     
     @Override
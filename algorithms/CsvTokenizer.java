@@ -0,0 +1,395 @@
+package algorithms;
+
+import java.io.IOException;
+import java.io.Reader;
+
+// Streaming CSV reader shared by the load paths. Input is read through one char buffer
+// and each record is decoded into one reusable line buffer; fields are (start, end)
+// ranges over that buffer, so numbers are parsed in place and a String is only created
+// when a caller asks for one.
+//
+// Fields are separated by commas; unquoted fields are trimmed. A field starting with a
+// double quote may contain commas, newlines and doubled quotes ("") and is taken
+// verbatim. Blank lines are skipped.
+public class CsvTokenizer implements AutoCloseable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Interned values are meant for small vocabularies (types, cities, statuses); past
+    // this many distinct values new ones are simply not interned
+    private static final int MAX_INTERNED = 4096;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    private char[] line = new char[256];
+    private int lineLength;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int fieldCount;
+    private boolean recordQuoted;
+    private long lineNumber;
+    private long nextLineNumber;
+
+    private String[] internTable = new String[64];
+    private int internCount;
+
+    public CsvTokenizer(Reader reader) {
+        this(reader, 1);
+    }
+
+    // For input that starts part-way through a file, on line firstLine
+    public CsvTokenizer(Reader reader, long firstLine) {
+        this.reader = reader;
+        this.nextLineNumber = firstLine;
+    }
+
+    // Advances to the next non-blank record; returns false at the end of the input
+    public boolean next() throws IOException {
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                return false;
+            }
+            lineNumber = nextLineNumber;
+            if (c == '\n') {
+                nextLineNumber++;
+                continue;
+            }
+            readRecord(c);
+            if (fieldCount > 1 || ends[0] > starts[0] || recordQuoted) {
+                return true;
+            }
+        }
+    }
+
+    private void readRecord(int c) throws IOException {
+        lineLength = 0;
+        fieldCount = 0;
+        recordQuoted = false;
+        int fieldStart = 0;
+        boolean inQuotes = false;
+        boolean fieldQuoted = false;
+        while (true) {
+            if (inQuotes) {
+                if (c < 0) {
+                    throw new IOException("Unterminated quoted field on line " + lineNumber);
+                }
+                if (c == '"') {
+                    int following = read();
+                    if (following == '"') {
+                        append('"');
+                    } else {
+                        inQuotes = false;
+                        c = following;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') {
+                        nextLineNumber++;
+                    }
+                    append((char) c);
+                }
+            } else if (c < 0 || c == '\n' || c == ',') {
+                addField(fieldStart, fieldQuoted);
+                if (c != ',') {
+                    if (c == '\n') {
+                        nextLineNumber++;
+                    }
+                    return;
+                }
+                fieldStart = lineLength;
+                fieldQuoted = false;
+            } else if (c == '"' && isBlank(fieldStart, lineLength)) {
+                lineLength = fieldStart; // Drop whitespace before the opening quote
+                inQuotes = true;
+                fieldQuoted = true;
+                recordQuoted = true;
+            } else if (c != '\r' && !(fieldQuoted && c <= ' ')) {
+                append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    private void addField(int start, boolean fieldQuoted) {
+        if (fieldCount == starts.length) {
+            starts = grow(starts);
+            ends = grow(ends);
+        }
+        int end = lineLength;
+        if (!fieldQuoted) {
+            while (start < end && line[start] <= ' ') {
+                start++;
+            }
+            while (end > start && line[end - 1] <= ' ') {
+                end--;
+            }
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        fieldCount++;
+    }
+
+    private boolean isBlank(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void append(char c) {
+        if (lineLength == line.length) {
+            char[] grown = new char[line.length * 2];
+            System.arraycopy(line, 0, grown, 0, lineLength);
+            line = grown;
+        }
+        line[lineLength++] = c;
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    private static int[] grow(int[] array) {
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    // Line the current record starts on (1-based)
+    public long lineNumber() {
+        return lineNumber;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    public boolean isEmpty(int field) {
+        checkField(field);
+        return starts[field] == ends[field];
+    }
+
+    public String field(int field) {
+        checkField(field);
+        return new String(line, starts[field], ends[field] - starts[field]);
+    }
+
+    // The field joined with every field after it, for a trailing free-text column that
+    // was written without quotes and may itself contain commas
+    public String rest(int field, String separator) {
+        StringBuilder sb = new StringBuilder(field(field));
+        for (int i = field + 1; i < fieldCount; i++) {
+            sb.append(separator).append(line, starts[i], ends[i] - starts[i]);
+        }
+        return sb.toString();
+    }
+
+    public boolean fieldEquals(int field, String value) {
+        checkField(field);
+        int length = ends[field] - starts[field];
+        if (length != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (line[starts[field] + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns one shared String per distinct value, without allocating when the value
+    // has been seen before
+    public String internedField(int field) {
+        checkField(field);
+        int start = starts[field];
+        int length = ends[field] - start;
+        // Same hash as String.hashCode(), so growInternTable() finds the same slots
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + line[start + i];
+        }
+        int mask = internTable.length - 1;
+        int index = Hashing.mix(h) & mask;
+        String candidate;
+        while ((candidate = internTable[index]) != null) {
+            if (fieldEquals(field, candidate)) {
+                return candidate;
+            }
+            index = (index + 1) & mask;
+        }
+        String value = new String(line, start, length);
+        if (internCount < MAX_INTERNED) {
+            internTable[index] = value;
+            if (++internCount * 2 > internTable.length) {
+                growInternTable();
+            }
+        }
+        return value;
+    }
+
+    private void growInternTable() {
+        String[] old = internTable;
+        internTable = new String[old.length * 2];
+        int mask = internTable.length - 1;
+        for (String value : old) {
+            if (value != null) {
+                int index = Hashing.mix(value.hashCode()) & mask;
+                while (internTable[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                internTable[index] = value;
+            }
+        }
+    }
+
+    public int intField(int field) {
+        checkField(field);
+        int i = starts[field];
+        int end = ends[field];
+        boolean negative = i < end && line[i] == '-';
+        if (negative || (i < end && line[i] == '+')) {
+            i++;
+        }
+        if (i == end) {
+            throw malformed(field, "integer");
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw malformed(field, "integer");
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw malformed(field, "integer");
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw malformed(field, "integer");
+        }
+        return (int) value;
+    }
+
+    // Plain decimals with up to 15 significant digits are parsed in place: the digits
+    // form an exact long and one division by an exact power of ten is correctly rounded.
+    // Anything else (exponents, NaN, long mantissas) goes through Double.parseDouble.
+    public double doubleField(int field) {
+        checkField(field);
+        int i = starts[field];
+        int end = ends[field];
+        boolean negative = i < end && line[i] == '-';
+        if (negative || (i < end && line[i] == '+')) {
+            i++;
+        }
+        long mantissa = 0;
+        boolean sawDigit = false;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false;
+        boolean simple = i < end;
+        for (; i < end && simple; i++) {
+            char c = line[i];
+            if (c >= '0' && c <= '9') {
+                sawDigit = true;
+                if (mantissa != 0 || c != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (seenPoint) {
+                    fractionDigits++;
+                }
+                simple = digits <= 15;
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                simple = false;
+            }
+        }
+        if (simple && sawDigit && fractionDigits < POWERS_OF_TEN.length) {
+            double value = mantissa / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(field(field));
+        } catch (NumberFormatException e) {
+            throw malformed(field, "number");
+        }
+    }
+
+    // Same rule as Boolean.parseBoolean: "true" in any case, anything else is false
+    public boolean booleanField(int field) {
+        checkField(field);
+        int start = starts[field];
+        if (ends[field] - start != 4) {
+            return false;
+        }
+        return (line[start] | 0x20) == 't' && (line[start + 1] | 0x20) == 'r'
+                && (line[start + 2] | 0x20) == 'u' && (line[start + 3] | 0x20) == 'e';
+    }
+
+    private void checkField(int field) {
+        if (field < 0 || field >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field " + field + " of " + fieldCount + " on line " + lineNumber);
+        }
+    }
+
+    private NumberFormatException malformed(int field, String kind) {
+        return new NumberFormatException("not a valid " + kind + ": '" + field(field) + "'");
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    // Writing side: appends value as one field, quoted only when it would not read back
+    // as-is (separators, quotes, line breaks, or edge whitespace that would be trimmed)
+    public static void appendField(StringBuilder out, String value) {
+        if (value == null) {
+            return;
+        }
+        boolean needsQuotes = !value.isEmpty()
+                && (value.charAt(0) <= ' ' || value.charAt(value.length() - 1) <= ' ' || value.charAt(0) == '"');
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    public static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        appendField(sb, value);
+        return sb.toString();
+    }
+}
@@ -1,7 +1,14 @@
 package algorithms;
 
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 public class CustomArrayList<T> {
     private static final int DEFAULT_CAPACITY = 10;
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+    // Lists at least this long are sorted in parallel
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 16;
     private Object[] array;
     private int size;
     private int capacity;
@@ -127,18 +134,91 @@ public class CustomArrayList<T> {
         return (T[]) result;
     }
     
-    // Sort method using insertion sort
-    public void sort(java.util.Comparator<? super T> comparator) {
-        for (int i = 1; i < size; i++) {
-            @SuppressWarnings("unchecked")
-            T key = (T) array[i];
+    // Stable, adaptive merge sort: short slices are insertion-sorted, and two sorted
+    // halves that are already in order are not merged, so presorted input costs O(n).
+    // Large lists are split across the fork/join pool.
+    public void sort(Comparator<? super T> comparator) {
+        if (size < 2) {
+            return;
+        }
+        Object[] buffer = new Object[size];
+        if (size >= PARALLEL_SORT_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            ForkJoinPool.commonPool().invoke(new MergeSortTask(array, buffer, 0, size, comparator));
+        } else {
+            mergeSort(array, buffer, 0, size, comparator);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void mergeSort(Object[] a, Object[] buffer, int low, int high, Comparator comparator) {
+        if (high - low <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(a, low, high, comparator);
+            return;
+        }
+        int mid = (low + high) >>> 1;
+        mergeSort(a, buffer, low, mid, comparator);
+        mergeSort(a, buffer, mid, high, comparator);
+        merge(a, buffer, low, mid, high, comparator);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void insertionSort(Object[] a, int low, int high, Comparator comparator) {
+        for (int i = low + 1; i < high; i++) {
+            Object key = a[i];
             int j = i - 1;
-            
-            while (j >= 0 && comparator.compare((T) array[j], key) > 0) {
-                array[j + 1] = array[j];
-                j = j - 1;
+            while (j >= low && comparator.compare(a[j], key) > 0) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = key;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void merge(Object[] a, Object[] buffer, int low, int mid, int high, Comparator comparator) {
+        if (comparator.compare(a[mid - 1], a[mid]) <= 0) {
+            return; // Halves already in order
+        }
+        System.arraycopy(a, low, buffer, low, high - low);
+        int left = low;
+        int right = mid;
+        for (int k = low; k < high; k++) {
+            if (right >= high || (left < mid && comparator.compare(buffer[left], buffer[right]) <= 0)) {
+                a[k] = buffer[left++];
+            } else {
+                a[k] = buffer[right++];
+            }
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static class MergeSortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Object[] a;
+        private final Object[] buffer;
+        private final int low;
+        private final int high;
+        private final Comparator comparator;
+
+        MergeSortTask(Object[] a, Object[] buffer, int low, int high, Comparator comparator) {
+            this.a = a;
+            this.buffer = buffer;
+            this.low = low;
+            this.high = high;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+            if (high - low < PARALLEL_SORT_THRESHOLD / 4) {
+                mergeSort(a, buffer, low, high, comparator);
+                return;
             }
-            array[j + 1] = key;
+            int mid = (low + high) >>> 1;
+            invokeAll(new MergeSortTask(a, buffer, low, mid, comparator),
+                      new MergeSortTask(a, buffer, mid, high, comparator));
+            merge(a, buffer, low, mid, high, comparator);
         }
     }
     
@@ -158,7 +238,7 @@ public class CustomArrayList<T> {
     
     // Binary search for sorted lists
     @SuppressWarnings("unchecked")
-    public int binarySearch(T key, java.util.Comparator<? super T> comparator) {
+    public int binarySearch(T key, Comparator<? super T> comparator) {
         int low = 0;
         int high = size - 1;
         
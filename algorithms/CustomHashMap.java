@@ -1,211 +1,345 @@
+
 package algorithms;
 
+// Open-addressing hash map with linear probing over power-of-two tables.
+// Growing the table does not rehash everything at once: the old table is kept next to
+// the new one and each later put/remove migrates a few old slots, so no single
+// operation pays for a full rehash. Lookups check the new table, then the old one.
 public class CustomHashMap<K, V> {
     private static final int DEFAULT_CAPACITY = 16;
     private static final double LOAD_FACTOR = 0.75;
-    
-    private Node<K, V>[] buckets;
-    private int size;
+    // Old slots moved per mutation; at 4 the old table is empty long before the new
+    // one fills up again
+    private static final int MIGRATION_STEP = 4;
+    // Marks a slot of the old table whose entry has already moved or been removed
+    private static final Object MOVED = new Object();
+
+    private Object[] keys;
+    private Object[] values;
     private int capacity;
-    
-    @SuppressWarnings("unchecked")
+    private int threshold;
+
+    private Object[] oldKeys;
+    private Object[] oldValues;
+    private int migrationIndex;
+
+    private int size;
+
     public CustomHashMap() {
-        this.capacity = DEFAULT_CAPACITY;
-        this.buckets = new Node[capacity];
-        this.size = 0;
+        this(DEFAULT_CAPACITY);
     }
-    
-    @SuppressWarnings("unchecked")
+
+    // Sized so that initialCapacity entries fit without growing
     public CustomHashMap(int initialCapacity) {
-        this.capacity = initialCapacity;
-        this.buckets = new Node[capacity];
-        this.size = 0;
-    }
-    
-    private static class Node<K, V> {
-        K key;
-        V value;
-        Node<K, V> next;
-        
-        Node(K key, V value) {
-            this.key = key;
-            this.value = value;
-            this.next = null;
+        allocate(tableSizeFor(initialCapacity));
+    }
+
+    private void allocate(int tableSize) {
+        this.capacity = tableSize;
+        this.keys = new Object[tableSize];
+        this.values = new Object[tableSize];
+        this.threshold = (int) (tableSize * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int entries) {
+        int needed = (int) Math.ceil(Math.max(entries, 1) / LOAD_FACTOR);
+        // At least 8 slots: the entry that triggers a grow is inserted first, and a
+        // smaller table would then be completely full. The retained old table must
+        // always have an empty slot to end its probes.
+        int tableSize = 8;
+        while (tableSize < needed) {
+            tableSize <<= 1;
         }
+        return tableSize;
     }
-    
-    private int hash(K key) {
-        if (key == null) return 0;
-        return Math.abs(key.hashCode() % capacity);
+
+    private static int hash(Object key) {
+        return Hashing.mix(key.hashCode());
     }
-    
+
     public void put(K key, V value) {
-        int index = hash(key);
-        Node<K, V> head = buckets[index];
-        
-        // Check if key already exists
-        Node<K, V> current = head;
-        while (current != null) {
-            if (current.key != null && current.key.equals(key)) {
-                current.value = value; // Update existing value
-                return;
+        checkKey(key);
+        migrate();
+
+        int index = find(keys, key);
+        if (index >= 0) {
+            values[index] = value; // Update existing value
+            return;
+        }
+
+        if (oldKeys != null) {
+            int oldIndex = find(oldKeys, key);
+            if (oldIndex >= 0) {
+                // Move it over now rather than keeping two copies
+                oldKeys[oldIndex] = MOVED;
+                oldValues[oldIndex] = null;
+                size--;
             }
-            current = current.next;
         }
-        
-        // Add new node at the beginning of the chain
-        Node<K, V> newNode = new Node<>(key, value);
-        newNode.next = head;
-        buckets[index] = newNode;
+
+        insert(key, value);
         size++;
-        
-        // Check if resize is needed
-        if (size > capacity * LOAD_FACTOR) {
-            resize();
+        if (size > threshold) {
+            grow();
         }
     }
-    
+
+    @SuppressWarnings("unchecked")
     public V get(K key) {
-        int index = hash(key);
-        Node<K, V> current = buckets[index];
-        
-        while (current != null) {
-            if (current.key != null && current.key.equals(key)) {
-                return current.value;
+        if (key == null) {
+            return null;
+        }
+        int index = find(keys, key);
+        if (index >= 0) {
+            return (V) values[index];
+        }
+        if (oldKeys != null) {
+            index = find(oldKeys, key);
+            if (index >= 0) {
+                return (V) oldValues[index];
             }
-            current = current.next;
         }
         return null;
     }
-    
+
     public boolean containsKey(K key) {
-        return get(key) != null;
+        if (key == null) {
+            return false;
+        }
+        return find(keys, key) >= 0 || (oldKeys != null && find(oldKeys, key) >= 0);
     }
-    
+
+    @SuppressWarnings("unchecked")
     public V remove(K key) {
-        int index = hash(key);
-        Node<K, V> current = buckets[index];
-        Node<K, V> prev = null;
-        
-        while (current != null) {
-            if (current.key != null && current.key.equals(key)) {
-                if (prev == null) {
-                    buckets[index] = current.next;
-                } else {
-                    prev.next = current.next;
-                }
+        if (key == null) {
+            return null;
+        }
+        migrate();
+
+        int index = find(keys, key);
+        if (index >= 0) {
+            V value = (V) values[index];
+            deleteSlot(index);
+            size--;
+            return value;
+        }
+        if (oldKeys != null) {
+            index = find(oldKeys, key);
+            if (index >= 0) {
+                V value = (V) oldValues[index];
+                oldKeys[index] = MOVED;
+                oldValues[index] = null;
                 size--;
-                return current.value;
+                return value;
             }
-            prev = current;
-            current = current.next;
         }
         return null;
     }
-    
+
     public boolean isEmpty() {
         return size == 0;
     }
-    
+
     public int size() {
         return size;
     }
-    
-    public CustomArrayList<K> keySet() {
-        CustomArrayList<K> keys = new CustomArrayList<>();
-        for (int i = 0; i < capacity; i++) {
-            Node<K, V> current = buckets[i];
-            while (current != null) {
-                keys.add(current.key);
-                current = current.next;
+
+    // Grows the table once up front so that expectedSize entries fit without resizing
+    public void ensureCapacity(int expectedSize) {
+        int tableSize = tableSizeFor(expectedSize);
+        if (tableSize <= capacity) {
+            return;
+        }
+        finishMigration();
+        Object[] previousKeys = keys;
+        Object[] previousValues = values;
+        allocate(tableSize);
+        for (int i = 0; i < previousKeys.length; i++) {
+            if (previousKeys[i] != null) {
+                insert(previousKeys[i], previousValues[i]);
             }
         }
-        return keys;
     }
-    
+
+    public CustomArrayList<K> keySet() {
+        CustomArrayList<K> result = new CustomArrayList<>(Math.max(size, 1));
+        collect(keys, result);
+        if (oldKeys != null) {
+            collect(oldKeys, result);
+        }
+        return result;
+    }
+
     public CustomArrayList<V> values() {
-        CustomArrayList<V> values = new CustomArrayList<>();
+        CustomArrayList<V> result = new CustomArrayList<>(Math.max(size, 1));
+        collect(keys, values, result);
+        if (oldKeys != null) {
+            collect(oldKeys, oldValues, result);
+        }
+        return result;
+    }
+
+    public void clear() {
         for (int i = 0; i < capacity; i++) {
-            Node<K, V> current = buckets[i];
-            while (current != null) {
-                values.add(current.value);
-                current = current.next;
+            keys[i] = null;
+            values[i] = null;
+        }
+        oldKeys = null;
+        oldValues = null;
+        size = 0;
+    }
+
+    // Slot holding key in the given table, or -1
+    private static int find(Object[] table, Object key) {
+        int mask = table.length - 1;
+        int index = hash(key) & mask;
+        Object current;
+        while ((current = table[index]) != null) {
+            if (current != MOVED && current.equals(key)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(Object key, Object value) {
+        int mask = capacity - 1;
+        int index = hash(key) & mask;
+        while (keys[index] != null) {
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+    }
+
+    // Backward-shift deletion: pull later entries of the probe run into the gap so that
+    // the current table never needs tombstones
+    private void deleteSlot(int index) {
+        int mask = capacity - 1;
+        int gap = index;
+        int next = (gap + 1) & mask;
+        while (keys[next] != null) {
+            int home = hash(keys[next]) & mask;
+            // Move the entry if its home slot is not cyclically within (gap, next]
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
             }
+            next = (next + 1) & mask;
         }
-        return values;
+        keys[gap] = null;
+        values[gap] = null;
     }
-    
+
+    private void grow() {
+        finishMigration();
+        oldKeys = keys;
+        oldValues = values;
+        migrationIndex = 0;
+        allocate(capacity * 2);
+    }
+
+    // Moves the next few live entries of the old table into the current one
+    private void migrate() {
+        if (oldKeys == null) {
+            return;
+        }
+        int end = Math.min(migrationIndex + MIGRATION_STEP, oldKeys.length);
+        for (; migrationIndex < end; migrationIndex++) {
+            Object key = oldKeys[migrationIndex];
+            if (key != null && key != MOVED) {
+                insert(key, oldValues[migrationIndex]);
+                oldKeys[migrationIndex] = MOVED;
+                oldValues[migrationIndex] = null;
+            }
+        }
+        if (migrationIndex == oldKeys.length) {
+            oldKeys = null;
+            oldValues = null;
+        }
+    }
+
+    private void finishMigration() {
+        while (oldKeys != null) {
+            migrate();
+        }
+    }
+
+    private static void checkKey(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Null keys are not supported");
+        }
+    }
+
     @SuppressWarnings("unchecked")
-    private void resize() {
-        Node<K, V>[] oldBuckets = buckets;
-        capacity *= 2;
-        buckets = new Node[capacity];
-        size = 0;
-        
-        for (Node<K, V> head : oldBuckets) {
-            Node<K, V> current = head;
-            while (current != null) {
-                put(current.key, current.value);
-                current = current.next;
+    private static <K> void collect(Object[] table, CustomArrayList<K> out) {
+        for (Object key : table) {
+            if (key != null && key != MOVED) {
+                out.add((K) key);
             }
         }
     }
-    
-    public void clear() {
-        for (int i = 0; i < capacity; i++) {
-            buckets[i] = null;
+
+    @SuppressWarnings("unchecked")
+    private static <V> void collect(Object[] table, Object[] tableValues, CustomArrayList<V> out) {
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != null && table[i] != MOVED) {
+                out.add((V) tableValues[i]);
+            }
         }
-        size = 0;
     }
-    
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("{");
-        boolean first = true;
-        for (int i = 0; i < capacity; i++) {
-            Node<K, V> current = buckets[i];
-            while (current != null) {
-                if (!first) {
-                    sb.append(", ");
-                }
-                sb.append(current.key).append("=").append(current.value);
-                first = false;
-                current = current.next;
+        CustomArrayList<Entry<K, V>> entries = entrySet();
+        for (int i = 0; i < entries.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
             }
+            Entry<K, V> entry = entries.get(i);
+            sb.append(entry.getKey()).append("=").append(entry.getValue());
         }
         sb.append("}");
         return sb.toString();
     }
-    
+
     public static class Entry<K, V> {
         private K key;
         private V value;
-        
+
         public Entry(K key, V value) {
             this.key = key;
             this.value = value;
         }
-        
+
         public K getKey() {
             return key;
         }
-        
+
         public V getValue() {
             return value;
         }
     }
-    
+
+    @SuppressWarnings("unchecked")
     public CustomArrayList<Entry<K, V>> entrySet() {
-        CustomArrayList<Entry<K, V>> entries = new CustomArrayList<>();
-        for (int i = 0; i < capacity; i++) {
-            Node<K, V> current = buckets[i];
-            while (current != null) {
-                entries.add(new Entry<>(current.key, current.value));
-                current = current.next;
+        CustomArrayList<Entry<K, V>> entries = new CustomArrayList<>(Math.max(size, 1));
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                entries.add(new Entry<>((K) keys[i], (V) values[i]));
+            }
+        }
+        if (oldKeys != null) {
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null && oldKeys[i] != MOVED) {
+                    entries.add(new Entry<>((K) oldKeys[i], (V) oldValues[i]));
+                }
             }
         }
         return entries;
     }
 }
-
@@ -1,30 +1,71 @@
 package algorithms;
+
+import java.util.function.Function;
+
+// Doubly linked list. Nodes double as handles: addNode() returns the node of the new
+// element, and remove(node) unlinks it in O(1) without a search.
+//
+// In indexed mode the list also keeps a hash index from each element's key (given by
+// the key function, e.g. a package ID) to its node. The index is intrusive: nodes are
+// chained into the buckets directly, so it costs one extra reference per node and no
+// entry objects, and find/remove by key are O(1). Keys must be unique and must not
+// change while the element is in the list; any other field can be updated in place.
 public class CustomLinkedList<T> {
+    private static final int INITIAL_BUCKETS = 16;
+
     private Node<T> head;
     private Node<T> tail;
     private int size;
-    
-    private static class Node<T> {
+
+    // Indexed mode only
+    private final Function<? super T, ?> keyOf;
+    private Node<T>[] buckets;
+
+    public static final class Node<T> {
         T data;
         Node<T> next;
         Node<T> prev;
-        
+        // Next node in the same index bucket, and the cached key; indexed mode only
+        Node<T> chain;
+        Object key;
+        // The list this node is linked into, or null once it has been removed
+        CustomLinkedList<T> owner;
+
         Node(T data) {
             this.data = data;
             this.next = null;
             this.prev = null;
         }
+
+        public T get() {
+            return data;
+        }
+
+        public boolean isLinked() {
+            return owner != null;
+        }
     }
-    
+
     public CustomLinkedList() {
         this.head = null;
         this.tail = null;
         this.size = 0;
+        this.keyOf = null;
+    }
+
+    public CustomLinkedList(Function<? super T, ?> keyOf) {
+        this.keyOf = keyOf;
+        this.buckets = newBuckets(INITIAL_BUCKETS);
     }
-    
+
     public void add(T element) {
-        Node<T> newNode = new Node<>(element);
-        
+        addNode(element);
+    }
+
+    // Appends element and returns its node
+    public Node<T> addNode(T element) {
+        Node<T> newNode = newNode(element);
+
         if (head == null) {
             head = tail = newNode;
         } else {
@@ -33,11 +74,12 @@ public class CustomLinkedList<T> {
             tail = newNode;
         }
         size++;
+        return newNode;
     }
-    
+
     public void addFirst(T element) {
-        Node<T> newNode = new Node<>(element);
-        
+        Node<T> newNode = newNode(element);
+
         if (head == null) {
             head = tail = newNode;
         } else {
@@ -47,50 +89,68 @@ public class CustomLinkedList<T> {
         }
         size++;
     }
-    
+
     public void addLast(T element) {
         add(element);
     }
-    
+
     public void add(int index, T element) {
         if (index < 0 || index > size) {
             throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
         }
-        
+
         if (index == 0) {
             addFirst(element);
             return;
         }
-        
+
         if (index == size) {
             addLast(element);
             return;
         }
-        
-        Node<T> newNode = new Node<>(element);
+
         Node<T> current = getNode(index);
-        
+        Node<T> newNode = newNode(element);
+
         newNode.next = current;
         newNode.prev = current.prev;
         current.prev.next = newNode;
         current.prev = newNode;
         size++;
     }
-    
+
     public T get(int index) {
         return getNode(index).data;
     }
-    
+
     public void set(int index, T element) {
-        getNode(index).data = element;
+        Node<T> node = getNode(index);
+        if (keyOf != null) {
+            Object key = keyOf.apply(element);
+            if (!key.equals(node.key)) {
+                checkUnique(key);
+                unindex(node);
+                node.key = key;
+                index(node);
+            }
+        }
+        node.data = element;
     }
-    
+
     public T remove(int index) {
         Node<T> nodeToRemove = getNode(index);
         return removeNode(nodeToRemove);
     }
-    
+
     public boolean remove(T element) {
+        if (keyOf != null) {
+            Node<T> node = findNode(keyOf.apply(element));
+            if (node == null || !element.equals(node.data)) {
+                return false;
+            }
+            removeNode(node);
+            return true;
+        }
         Node<T> current = head;
         while (current != null) {
             if (element == null ? current.data == null : element.equals(current.data)) {
@@ -101,54 +161,91 @@ public class CustomLinkedList<T> {
         }
         return false;
     }
-    
+
+    // Unlinks a node returned by addNode() or findNode()
+    public T remove(Node<T> node) {
+        if (node == null || node.owner != this) {
+            throw new IllegalArgumentException("Node does not belong to this list");
+        }
+        return removeNode(node);
+    }
+
+    // Indexed mode: the node of the element with this key, or null
+    public Node<T> findNode(Object key) {
+        checkIndexed();
+        if (key == null) {
+            return null;
+        }
+        for (Node<T> node = buckets[hash(key) & (buckets.length - 1)]; node != null; node = node.chain) {
+            if (key.equals(node.key)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    public T find(Object key) {
+        Node<T> node = findNode(key);
+        return node == null ? null : node.data;
+    }
+
+    public boolean containsKey(Object key) {
+        return findNode(key) != null;
+    }
+
+    // Indexed mode: removes the element with this key; returns it, or null if absent
+    public T removeKey(Object key) {
+        Node<T> node = findNode(key);
+        return node == null ? null : removeNode(node);
+    }
+
     public T removeFirst() {
         if (isEmpty()) {
             throw new RuntimeException("List is empty");
         }
         return removeNode(head);
     }
-    
+
     public T removeLast() {
         if (isEmpty()) {
             throw new RuntimeException("List is empty");
         }
         return removeNode(tail);
     }
-    
+
     public T getFirst() {
         if (isEmpty()) {
             throw new RuntimeException("List is empty");
         }
         return head.data;
     }
-    
+
     public T getLast() {
         if (isEmpty()) {
             throw new RuntimeException("List is empty");
         }
         return tail.data;
     }
-    
+
     public T poll() {
         if (isEmpty()) {
             return null;
         }
         return removeFirst();
     }
-    
+
     public T peek() {
         if (isEmpty()) {
             return null;
         }
         return head.data;
     }
-    
+
     private Node<T> getNode(int index) {
         if (index < 0 || index >= size) {
             throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
         }
-        
+
         Node<T> current;
         if (index < size / 2) {
             current = head;
@@ -163,26 +260,107 @@ public class CustomLinkedList<T> {
         }
         return current;
     }
-    
+
+    private Node<T> newNode(T element) {
+        Node<T> node = new Node<>(element);
+        if (keyOf != null) {
+            Object key = keyOf.apply(element);
+            checkUnique(key);
+            node.key = key;
+            if (size + 1 > buckets.length - (buckets.length >>> 2)) {
+                resize();
+            }
+            index(node);
+        }
+        node.owner = this;
+        return node;
+    }
+
     private T removeNode(Node<T> node) {
         T data = node.data;
-        
+
         if (node.prev == null) {
             head = node.next;
         } else {
             node.prev.next = node.next;
         }
-        
+
         if (node.next == null) {
             tail = node.prev;
         } else {
             node.next.prev = node.prev;
         }
-        
+        if (keyOf != null) {
+            unindex(node);
+        }
+        node.next = null;
+        node.prev = null;
+        node.owner = null;
+
         size--;
         return data;
     }
-    
+
+    private void checkIndexed() {
+        if (keyOf == null) {
+            throw new IllegalStateException("Lookups by key are only available in indexed mode");
+        }
+    }
+
+    private void checkUnique(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Indexed elements need a non-null key");
+        }
+        if (findNode(key) != null) {
+            throw new IllegalArgumentException("Duplicate key: " + key);
+        }
+    }
+
+    private void index(Node<T> node) {
+        int bucket = hash(node.key) & (buckets.length - 1);
+        node.chain = buckets[bucket];
+        buckets[bucket] = node;
+    }
+
+    private void unindex(Node<T> node) {
+        int bucket = hash(node.key) & (buckets.length - 1);
+        Node<T> previous = null;
+        for (Node<T> current = buckets[bucket]; current != null; current = current.chain) {
+            if (current == node) {
+                if (previous == null) {
+                    buckets[bucket] = node.chain;
+                } else {
+                    previous.chain = node.chain;
+                }
+                node.chain = null;
+                return;
+            }
+            previous = current;
+        }
+    }
+
+    private void resize() {
+        Node<T>[] old = buckets;
+        buckets = newBuckets(old.length * 2);
+        for (Node<T> bucket : old) {
+            Node<T> node = bucket;
+            while (node != null) {
+                Node<T> next = node.chain;
+                index(node);
+                node = next;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T>[] newBuckets(int length) {
+        return (Node<T>[]) new Node<?>[length];
+    }
+
+    private static int hash(Object key) {
+        return Hashing.mix(key.hashCode());
+    }
+
     public int indexOf(T element) {
         Node<T> current = head;
         int index = 0;
@@ -195,27 +373,38 @@ public class CustomLinkedList<T> {
         }
         return -1;
     }
-    
+
     public boolean contains(T element) {
+        if (keyOf != null && element != null) {
+            Node<T> node = findNode(keyOf.apply(element));
+            return node != null && element.equals(node.data);
+        }
         return indexOf(element) != -1;
     }
-    
+
     public int size() {
         return size;
     }
-    
+
     public boolean isEmpty() {
         return size == 0;
     }
-    
+
     public void clear() {
+        for (Node<T> node = head; node != null; node = node.next) {
+            node.owner = null;
+            node.chain = null;
+        }
         head = null;
         tail = null;
         size = 0;
+        if (keyOf != null) {
+            buckets = newBuckets(INITIAL_BUCKETS);
+        }
     }
-    
+
     public CustomArrayList<T> toArrayList() {
-        CustomArrayList<T> list = new CustomArrayList<>();
+        CustomArrayList<T> list = new CustomArrayList<>(Math.max(size, 1));
         Node<T> current = head;
         while (current != null) {
             list.add(current.data);
@@ -223,7 +412,7 @@ public class CustomLinkedList<T> {
         }
         return list;
     }
-    
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -242,4 +431,3 @@ public class CustomLinkedList<T> {
         return sb.toString();
     }
 }
-
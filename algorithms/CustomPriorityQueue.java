@@ -5,25 +5,154 @@ import java.util.Comparator;
 public class CustomPriorityQueue<T> {
     private CustomArrayList<T> heap;
     private Comparator<T> comparator;
+    // Indexed mode only: handles.get(i) is the handle of heap slot i
+    private CustomArrayList<Handle<T>> handles;
+
+    // Returned by offer() in indexed mode. It always knows its element's heap slot, so
+    // the element can be re-prioritised or removed in O(log n) without a search.
+    public static final class Handle<T> {
+        private final T element;
+        private int index;
+
+        private Handle(T element, int index) {
+            this.element = element;
+            this.index = index;
+        }
+
+        public T get() {
+            return element;
+        }
+
+        public boolean isQueued() {
+            return index >= 0;
+        }
+    }
 
     public CustomPriorityQueue() {
         this(null);
     }
 
     public CustomPriorityQueue(Comparator<T> comparator) {
+        this(comparator, false);
+    }
+
+    public CustomPriorityQueue(Comparator<T> comparator, boolean indexed) {
         heap = new CustomArrayList<>();
         this.comparator = comparator;
+        if (indexed) {
+            handles = new CustomArrayList<>();
+        }
     }
 
     public void add(T element) {
+        if (handles != null) {
+            offer(element);
+            return;
+        }
+        heap.add(element);
+        heapifyUp(heap.size() - 1);
+    }
+
+    // Indexed mode: adds the element and returns its handle
+    public Handle<T> offer(T element) {
+        if (handles == null) {
+            throw new IllegalStateException("Handles are only available in indexed mode");
+        }
+        Handle<T> handle = new Handle<>(element, heap.size());
         heap.add(element);
+        handles.add(handle);
         heapifyUp(heap.size() - 1);
+        return handle;
+    }
+
+    // Adds a batch. When the batch is at least as large as the queue, the heap is rebuilt
+    // bottom-up in O(n) instead of sifting each element up in O(log n).
+    public void addAll(CustomArrayList<T> elements) {
+        if (handles != null) {
+            offerAll(elements);
+            return;
+        }
+        boolean rebuild = elements.size() >= heap.size();
+        for (int i = 0; i < elements.size(); i++) {
+            heap.add(elements.get(i));
+            if (!rebuild) {
+                heapifyUp(heap.size() - 1);
+            }
+        }
+        if (rebuild) {
+            heapify();
+        }
+    }
+
+    // Indexed mode: adds a batch and returns the handles in the order of elements
+    public CustomArrayList<Handle<T>> offerAll(CustomArrayList<T> elements) {
+        if (handles == null) {
+            throw new IllegalStateException("Handles are only available in indexed mode");
+        }
+        CustomArrayList<Handle<T>> added = new CustomArrayList<>(Math.max(elements.size(), 1));
+        boolean rebuild = elements.size() >= heap.size();
+        for (int i = 0; i < elements.size(); i++) {
+            Handle<T> handle = new Handle<>(elements.get(i), heap.size());
+            heap.add(handle.element);
+            handles.add(handle);
+            added.add(handle);
+            if (!rebuild) {
+                heapifyUp(heap.size() - 1);
+            }
+        }
+        if (rebuild) {
+            heapify();
+        }
+        return added;
+    }
+
+    // Floyd's bottom-up construction: sift down every parent, last one first
+    private void heapify() {
+        for (int i = heap.size() / 2 - 1; i >= 0; i--) {
+            heapifyDown(i);
+        }
+    }
+
+    // Restores heap order after the handle's element changed priority in either direction
+    public void update(Handle<T> handle) {
+        checkHandle(handle);
+        heapifyDown(heapifyUp(handle.index));
+    }
+
+    // Cheaper update for when the element can only have moved towards the head
+    public void decreaseKey(Handle<T> handle) {
+        checkHandle(handle);
+        heapifyUp(handle.index);
+    }
+
+    public boolean remove(Handle<T> handle) {
+        if (handle == null || !handle.isQueued()) {
+            return false;
+        }
+        checkHandle(handle);
+        int index = handle.index;
+        int last = heap.size() - 1;
+        if (index != last) {
+            swap(index, last);
+        }
+        heap.remove(last);
+        handles.remove(last);
+        handle.index = -1;
+        if (index != last) {
+            heapifyDown(heapifyUp(index));
+        }
+        return true;
     }
 
     public T poll() {
         if (isEmpty()) {
             return null;
         }
+        if (handles != null) {
+            Handle<T> head = handles.get(0);
+            remove(head);
+            return head.element;
+        }
         T result = heap.get(0);
         T last = heap.remove(heap.size() - 1);
         if (!isEmpty()) {
@@ -40,6 +169,30 @@ public class CustomPriorityQueue<T> {
         return heap.get(0);
     }
 
+    // The first k elements in priority order, without removing them. Only slots whose
+    // parent was already taken can be next, so a small heap of those candidate slots
+    // gives O(k log k) instead of sorting the whole queue.
+    public CustomArrayList<T> peekFirst(int k) {
+        int count = Math.min(Math.max(k, 0), heap.size());
+        CustomArrayList<T> result = new CustomArrayList<>(Math.max(count, 1));
+        if (count == 0) {
+            return result;
+        }
+        CustomPriorityQueue<Integer> candidates = new CustomPriorityQueue<>((a, b) -> compare(heap.get(a), heap.get(b)));
+        candidates.add(0);
+        while (result.size() < count) {
+            int slot = candidates.poll();
+            result.add(heap.get(slot));
+            if (2 * slot + 1 < heap.size()) {
+                candidates.add(2 * slot + 1);
+            }
+            if (2 * slot + 2 < heap.size()) {
+                candidates.add(2 * slot + 2);
+            }
+        }
+        return result;
+    }
+
     public int size() {
         return heap.size();
     }
@@ -58,7 +211,8 @@ public class CustomPriorityQueue<T> {
         }
     }
 
-    private void heapifyUp(int index) {
+    // Returns the slot the element ended up in
+    private int heapifyUp(int index) {
         while (index > 0) {
             int parent = (index - 1) / 2;
             if (compare(heap.get(index), heap.get(parent)) < 0) {
@@ -68,6 +222,7 @@ public class CustomPriorityQueue<T> {
                 break;
             }
         }
+        return index;
     }
 
     private void heapifyDown(int index) {
@@ -95,9 +250,29 @@ public class CustomPriorityQueue<T> {
         T temp = heap.get(i);
         heap.set(i, heap.get(j));
         heap.set(j, temp);
+        if (handles != null) {
+            Handle<T> handle = handles.get(i);
+            handles.set(i, handles.get(j));
+            handles.set(j, handle);
+            handles.get(i).index = i;
+            handle.index = j;
+        }
+    }
+
+    private void checkHandle(Handle<T> handle) {
+        if (handles == null || handle.index < 0 || handle.index >= heap.size()
+                || handles.get(handle.index) != handle) {
+            throw new IllegalArgumentException("Handle does not belong to this queue");
+        }
     }
 
     public void clear() {
+        if (handles != null) {
+            for (int i = 0; i < handles.size(); i++) {
+                handles.get(i).index = -1;
+            }
+            handles.clear();
+        }
         heap.clear();
     }
 
@@ -15,6 +15,10 @@ public class CustomQueue<T> {
         return list.poll();
     }
 
+    public boolean remove(T element) {
+        return list.remove(element);
+    }
+
     public T peek() {
         return list.peek();
     }
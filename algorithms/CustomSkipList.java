@@ -0,0 +1,176 @@
+package algorithms;
+
+import java.util.Comparator;
+
+// Sorted map backed by a skip list. put/get/remove are O(log n) expected, and range
+// queries cost O(log n + k) for k results since matches are read off the bottom level.
+public class CustomSkipList<K, V> {
+    private static final int MAX_LEVEL = 32;
+
+    private static class Node<K, V> {
+        K key;
+        V value;
+        Node<K, V>[] next;
+
+        Node(K key, V value, int level) {
+            this.key = key;
+            this.value = value;
+            this.next = newNodes(level);
+        }
+    }
+
+    // The one place generic node arrays are made
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V>[] newNodes(int length) {
+        return (Node<K, V>[]) new Node<?, ?>[length];
+    }
+
+    private final Comparator<? super K> comparator;
+    private final Node<K, V> head;
+    private int level;
+    private int size;
+    private int randomState = 0x2545F491;
+
+    public CustomSkipList(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+        this.head = new Node<>(null, null, MAX_LEVEL);
+        this.level = 1;
+    }
+
+    public void put(K key, V value) {
+        Node<K, V>[] update = newNodes(MAX_LEVEL);
+        Node<K, V> current = findPredecessors(key, update);
+        Node<K, V> candidate = current.next[0];
+        if (candidate != null && comparator.compare(candidate.key, key) == 0) {
+            candidate.value = value; // Update existing value
+            return;
+        }
+
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                update[i] = head;
+            }
+            level = nodeLevel;
+        }
+        Node<K, V> newNode = new Node<>(key, value, nodeLevel);
+        for (int i = 0; i < nodeLevel; i++) {
+            newNode.next[i] = update[i].next[i];
+            update[i].next[i] = newNode;
+        }
+        size++;
+    }
+
+    public V get(K key) {
+        Node<K, V> candidate = findPredecessors(key, null).next[0];
+        if (candidate != null && comparator.compare(candidate.key, key) == 0) {
+            return candidate.value;
+        }
+        return null;
+    }
+
+    public boolean containsKey(K key) {
+        Node<K, V> candidate = findPredecessors(key, null).next[0];
+        return candidate != null && comparator.compare(candidate.key, key) == 0;
+    }
+
+    public V remove(K key) {
+        Node<K, V>[] update = newNodes(MAX_LEVEL);
+        Node<K, V> target = findPredecessors(key, update).next[0];
+        if (target == null || comparator.compare(target.key, key) != 0) {
+            return null;
+        }
+        for (int i = 0; i < target.next.length; i++) {
+            update[i].next[i] = target.next[i];
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+        return target.value;
+    }
+
+    // Values whose keys lie in [fromKey, toKey], in key order
+    public CustomArrayList<V> range(K fromKey, K toKey) {
+        CustomArrayList<V> result = new CustomArrayList<>();
+        Node<K, V> current = findPredecessors(fromKey, null).next[0];
+        while (current != null && comparator.compare(current.key, toKey) <= 0) {
+            result.add(current.value);
+            current = current.next[0];
+        }
+        return result;
+    }
+
+    // Value with the greatest key, or null when empty; O(log n) expected
+    public V lastValue() {
+        Node<K, V> current = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (current.next[i] != null) {
+                current = current.next[i];
+            }
+        }
+        return current == head ? null : current.value;
+    }
+
+    public CustomArrayList<K> keys() {
+        CustomArrayList<K> result = new CustomArrayList<>(Math.max(size, 1));
+        for (Node<K, V> current = head.next[0]; current != null; current = current.next[0]) {
+            result.add(current.key);
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        head.next = newNodes(MAX_LEVEL);
+        level = 1;
+        size = 0;
+    }
+
+    // Last node with a key below the given key; fills update[i] with the last such node
+    // on every level when update is not null
+    private Node<K, V> findPredecessors(K key, Node<K, V>[] update) {
+        Node<K, V> current = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (current.next[i] != null && comparator.compare(current.next[i].key, key) < 0) {
+                current = current.next[i];
+            }
+            if (update != null) {
+                update[i] = current;
+            }
+        }
+        return current;
+    }
+
+    // Geometric level with p = 1/2, from an xorshift generator
+    private int randomLevel() {
+        int x = randomState;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        randomState = x;
+        int nodeLevel = Integer.numberOfTrailingZeros(x | (1 << (MAX_LEVEL - 1))) + 1;
+        return Math.min(nodeLevel, MAX_LEVEL);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        for (Node<K, V> current = head.next[0]; current != null; current = current.next[0]) {
+            sb.append(current.key).append("=").append(current.value);
+            if (current.next[0] != null) {
+                sb.append(", ");
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
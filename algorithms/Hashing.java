@@ -0,0 +1,29 @@
+package algorithms;
+
+// Murmur3 finalizers, shared by the hash tables in this package. The tables index by
+// the low bits of a hash; mixing first spreads keys whose hashCode()s differ only in
+// their high bits, or follow a simple pattern, so they do not cluster in neighbouring
+// slots.
+final class Hashing {
+    private Hashing() {
+    }
+
+    // fmix32
+    static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    // fmix64, folded to an int
+    static int mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,107 @@
+package algorithms;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Sorts positions by a primitive double key without boxing: instead of moving objects
+// around, an int[] of indices is ordered by keys[index]. Stable merge sort, parallel on
+// the fork/join pool above PARALLEL_THRESHOLD elements.
+public class IndexSort {
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private IndexSort() {
+    }
+
+    // Indices 0..keys.length-1 ordered by ascending key
+    public static int[] sortedIndices(double[] keys) {
+        int[] index = new int[keys.length];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = i;
+        }
+        sort(index, keys);
+        return index;
+    }
+
+    public static void sort(int[] index, double[] keys) {
+        if (index.length < 2) {
+            return;
+        }
+        int[] buffer = new int[index.length];
+        if (index.length >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            ForkJoinPool.commonPool().invoke(new SortTask(index, buffer, keys, 0, index.length));
+        } else {
+            mergeSort(index, buffer, keys, 0, index.length);
+        }
+    }
+
+    private static void mergeSort(int[] index, int[] buffer, double[] keys, int low, int high) {
+        if (high - low <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(index, keys, low, high);
+            return;
+        }
+        int mid = (low + high) >>> 1;
+        mergeSort(index, buffer, keys, low, mid);
+        mergeSort(index, buffer, keys, mid, high);
+        merge(index, buffer, keys, low, mid, high);
+    }
+
+    private static void insertionSort(int[] index, double[] keys, int low, int high) {
+        for (int i = low + 1; i < high; i++) {
+            int current = index[i];
+            double key = keys[current];
+            int j = i - 1;
+            while (j >= low && Double.compare(keys[index[j]], key) > 0) {
+                index[j + 1] = index[j];
+                j--;
+            }
+            index[j + 1] = current;
+        }
+    }
+
+    private static void merge(int[] index, int[] buffer, double[] keys, int low, int mid, int high) {
+        if (Double.compare(keys[index[mid - 1]], keys[index[mid]]) <= 0) {
+            return; // Halves already in order
+        }
+        System.arraycopy(index, low, buffer, low, high - low);
+        int left = low;
+        int right = mid;
+        for (int k = low; k < high; k++) {
+            if (right >= high || (left < mid && Double.compare(keys[buffer[left]], keys[buffer[right]]) <= 0)) {
+                index[k] = buffer[left++];
+            } else {
+                index[k] = buffer[right++];
+            }
+        }
+    }
+
+    private static class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] index;
+        private final int[] buffer;
+        private final double[] keys;
+        private final int low;
+        private final int high;
+
+        SortTask(int[] index, int[] buffer, double[] keys, int low, int high) {
+            this.index = index;
+            this.buffer = buffer;
+            this.keys = keys;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        protected void compute() {
+            if (high - low < PARALLEL_THRESHOLD / 4) {
+                mergeSort(index, buffer, keys, low, high);
+                return;
+            }
+            int mid = (low + high) >>> 1;
+            invokeAll(new SortTask(index, buffer, keys, low, mid),
+                      new SortTask(index, buffer, keys, mid, high));
+            merge(index, buffer, keys, low, mid, high);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package algorithms;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+// Unbounded multi-producer/multi-consumer FIFO queue (Michael-Scott). Producers link new
+// nodes at the tail and consumers advance the head with compare-and-set, so no thread
+// ever holds a lock and a stalled thread cannot block the others.
+//
+// The head is always a dummy node; the first element lives in head.next. An element
+// removed from the middle has its item cleared and is skipped when consumers reach it.
+public class LockFreeQueue<T> {
+    // Package-private rather than private so the field updater can reach item on Java 8
+    static final class Node<T> {
+        volatile T item;
+        final AtomicReference<Node<T>> next = new AtomicReference<>();
+
+        Node(T item) {
+            this.item = item;
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Node, Object> ITEM =
+            AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "item");
+
+    private final AtomicReference<Node<T>> head;
+    private final AtomicReference<Node<T>> tail;
+
+    public LockFreeQueue() {
+        Node<T> dummy = new Node<>(null);
+        head = new AtomicReference<>(dummy);
+        tail = new AtomicReference<>(dummy);
+    }
+
+    public boolean offer(T element) {
+        checkElement(element);
+        Node<T> node = new Node<>(element);
+        append(node, node);
+        return true;
+    }
+
+    // Links the whole batch with a single compare-and-set, so its elements stay adjacent
+    // and in order even with other producers running
+    public void offerAll(CustomArrayList<? extends T> elements) {
+        if (elements.isEmpty()) {
+            return;
+        }
+        Node<T> first = new Node<>(elements.get(0));
+        checkElement(first.item);
+        Node<T> last = first;
+        for (int i = 1; i < elements.size(); i++) {
+            T element = elements.get(i);
+            checkElement(element);
+            Node<T> node = new Node<>(element);
+            last.next.lazySet(node); // Published by the compare-and-set in append()
+            last = node;
+        }
+        append(first, last);
+    }
+
+    private void append(Node<T> first, Node<T> last) {
+        while (true) {
+            Node<T> t = tail.get();
+            Node<T> next = t.next.get();
+            if (t != tail.get()) {
+                continue;
+            }
+            if (next != null) {
+                tail.compareAndSet(t, next); // Help a producer that has not swung the tail yet
+            } else if (t.next.compareAndSet(null, first)) {
+                tail.compareAndSet(t, last);
+                return;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        while (true) {
+            Node<T> h = head.get();
+            Node<T> t = tail.get();
+            Node<T> next = h.next.get();
+            if (h != head.get()) {
+                continue;
+            }
+            if (next == null) {
+                return null;
+            }
+            if (h == t) {
+                tail.compareAndSet(t, next);
+                continue;
+            }
+            if (head.compareAndSet(h, next)) {
+                // next is the new dummy; take its item unless remove() got there first
+                T item = (T) ITEM.getAndSet(next, null);
+                if (item != null) {
+                    return item;
+                }
+            }
+        }
+    }
+
+    // Moves up to max elements into target; returns how many were moved
+    public int drainTo(CustomArrayList<? super T> target, int max) {
+        int count = 0;
+        T element;
+        while (count < max && (element = poll()) != null) {
+            target.add(element);
+            count++;
+        }
+        return count;
+    }
+
+    public int drainTo(CustomArrayList<? super T> target) {
+        return drainTo(target, Integer.MAX_VALUE);
+    }
+
+    public T peek() {
+        for (Node<T> node = head.get().next.get(); node != null; node = node.next.get()) {
+            T item = node.item;
+            if (item != null) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    // Removes the first occurrence of element; returns false if it was not queued
+    public boolean remove(T element) {
+        if (element == null) {
+            return false;
+        }
+        for (Node<T> node = head.get().next.get(); node != null; node = node.next.get()) {
+            T item = node.item;
+            if (item != null && item.equals(element) && ITEM.compareAndSet(node, item, null)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return peek() == null;
+    }
+
+    // Walks the queue, so O(n), and only a snapshot when other threads are active
+    public int size() {
+        int count = 0;
+        for (Node<T> node = head.get().next.get(); node != null; node = node.next.get()) {
+            if (node.item != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public CustomArrayList<T> toList() {
+        CustomArrayList<T> result = new CustomArrayList<>();
+        for (Node<T> node = head.get().next.get(); node != null; node = node.next.get()) {
+            T item = node.item;
+            if (item != null) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    private static void checkElement(Object element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Null elements are not supported");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+}
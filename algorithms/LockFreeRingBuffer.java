@@ -0,0 +1,118 @@
+package algorithms;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Bounded multi-producer/multi-consumer FIFO queue over a preallocated array (Vyukov).
+// Every cell carries a sequence number telling whose turn it is: a producer may fill
+// cell i at position p when its sequence is p, a consumer may empty it when it is p + 1.
+// Threads claim positions with one compare-and-set and never allocate, so this suits
+// hot hand-off points with a known upper bound, e.g. check-ins from a gateway.
+public class LockFreeRingBuffer<T> {
+    private final Object[] buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong enqueuePosition = new AtomicLong();
+    private final AtomicLong dequeuePosition = new AtomicLong();
+
+    // capacity is rounded up to a power of two
+    public LockFreeRingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = 2;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        buffer = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    // Returns false, without waiting, if the buffer is full
+    public boolean offer(T element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Null elements are not supported");
+        }
+        long position = enqueuePosition.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    buffer[index] = element;
+                    sequences.set(index, position + 1); // Publishes the element
+                    return true;
+                }
+                position = enqueuePosition.get();
+            } else if (difference < 0) {
+                return false; // The consumer one lap behind has not emptied this cell yet
+            } else {
+                position = enqueuePosition.get(); // Another producer took this position
+            }
+        }
+    }
+
+    // Offers elements in order until the buffer is full; returns how many were accepted
+    public int offerAll(CustomArrayList<? extends T> elements) {
+        int count = 0;
+        while (count < elements.size() && offer(elements.get(count))) {
+            count++;
+        }
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long position = dequeuePosition.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (dequeuePosition.compareAndSet(position, position + 1)) {
+                    T element = (T) buffer[index];
+                    buffer[index] = null;
+                    sequences.set(index, position + mask + 1); // Free for the next lap
+                    return element;
+                }
+                position = dequeuePosition.get();
+            } else if (difference < 0) {
+                return null; // Empty
+            } else {
+                position = dequeuePosition.get();
+            }
+        }
+    }
+
+    // Moves up to max elements into target; returns how many were moved
+    public int drainTo(CustomArrayList<? super T> target, int max) {
+        int count = 0;
+        T element;
+        while (count < max && (element = poll()) != null) {
+            target.add(element);
+            count++;
+        }
+        return count;
+    }
+
+    public int drainTo(CustomArrayList<? super T> target) {
+        return drainTo(target, Integer.MAX_VALUE);
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    // Exact when no other thread is active, otherwise an estimate
+    public int size() {
+        long size = enqueuePosition.get() - dequeuePosition.get();
+        return (int) Math.max(0, Math.min(size, buffer.length));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+}
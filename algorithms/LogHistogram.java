@@ -0,0 +1,123 @@
+package algorithms;
+
+// Counts values in logarithmic buckets, HDR-histogram style: each power of two between
+// 2^minExponent and 2^maxExponent is split into 2^SUB_BITS equal buckets, so a bucket
+// is never wider than 1/256 of the values in it and any quantile is read back within
+// that relative error. A value's bucket comes straight from the bits of the double (its
+// exponent, then the top mantissa bits), so add and remove are O(1), and quantiles,
+// min and max scan a fixed number of buckets however many values are counted.
+//
+// Each bucket also keeps the sum of its values and reads back as their mean, so a bucket
+// holding one distinct value (the usual case for figures with a decimal or two) reads
+// back exactly.
+//
+// Values below 2^minExponent (zero and negatives included) share the first bucket, and
+// values from 2^maxExponent up share the last.
+public class LogHistogram {
+    private static final int SUB_BITS = 8;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final int minExponent;
+    private final int maxExponent;
+    private final double lowest;
+    private final double highest;
+    private final int[] counts;
+    private final double[] sums;
+    private long total;
+
+    // 0.004 to 16 million, which covers fuel figures, mileages and costs
+    public LogHistogram() {
+        this(-8, 24);
+    }
+
+    public LogHistogram(int minExponent, int maxExponent) {
+        if (minExponent >= maxExponent || minExponent < Double.MIN_EXPONENT || maxExponent > Double.MAX_EXPONENT) {
+            throw new IllegalArgumentException("Invalid exponent range: " + minExponent + ".." + maxExponent);
+        }
+        this.minExponent = minExponent;
+        this.maxExponent = maxExponent;
+        this.lowest = Math.scalb(1.0, minExponent);
+        this.highest = Math.scalb(1.0, maxExponent);
+        this.counts = new int[2 + (maxExponent - minExponent) * SUB_BUCKETS];
+        this.sums = new double[counts.length];
+    }
+
+    public void add(double value) {
+        int bucket = bucket(value);
+        counts[bucket]++;
+        sums[bucket] += value;
+        total++;
+    }
+
+    // The value must have been added before
+    public void remove(double value) {
+        int bucket = bucket(value);
+        if (counts[bucket] == 0) {
+            throw new IllegalStateException("Value was never added: " + value);
+        }
+        // An emptied bucket starts again from an exact zero rather than rounding residue
+        sums[bucket] = --counts[bucket] == 0 ? 0 : sums[bucket] - value;
+        total--;
+    }
+
+    public long count() {
+        return total;
+    }
+
+    // The value at rank ceil(q * count), for q in [0, 1]; NaN when empty
+    public double quantile(double q) {
+        if (total == 0) {
+            return Double.NaN;
+        }
+        long rank = Math.max(1, Math.min(total, (long) Math.ceil(q * total)));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return value(i);
+            }
+        }
+        return max();
+    }
+
+    public double min() {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                return value(i);
+            }
+        }
+        return Double.NaN;
+    }
+
+    public double max() {
+        for (int i = counts.length - 1; i >= 0; i--) {
+            if (counts[i] > 0) {
+                return value(i);
+            }
+        }
+        return Double.NaN;
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(counts, 0);
+        java.util.Arrays.fill(sums, 0);
+        total = 0;
+    }
+
+    private int bucket(double value) {
+        // Also sends NaN to the first bucket
+        if (!(value >= lowest)) {
+            return 0;
+        }
+        if (value >= highest) {
+            return counts.length - 1;
+        }
+        int sub = (int) (Double.doubleToRawLongBits(value) >>> (52 - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return 1 + (Math.getExponent(value) - minExponent) * SUB_BUCKETS + sub;
+    }
+
+    // Mean of the values in the bucket
+    private double value(int bucket) {
+        return sums[bucket] / counts[bucket];
+    }
+}
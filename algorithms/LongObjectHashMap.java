@@ -0,0 +1,155 @@
+package algorithms;
+
+// long -> Object map for registries keyed by numeric ids (row numbers, day numbers,
+// node ids). Keys stay primitive; a slot is occupied when its value is non-null, so
+// null values are not allowed.
+public class LongObjectHashMap<V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double LOAD_FACTOR = 0.75;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int threshold;
+
+    public LongObjectHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongObjectHashMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    private void allocate(int tableSize) {
+        keys = new long[tableSize];
+        values = new Object[tableSize];
+        threshold = (int) (tableSize * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int entries) {
+        int needed = (int) Math.ceil(Math.max(entries, 1) / LOAD_FACTOR);
+        int tableSize = 2;
+        while (tableSize < needed) {
+            tableSize <<= 1;
+        }
+        return tableSize;
+    }
+
+    private static int hash(long key) {
+        return Hashing.mix(key);
+    }
+
+    public void put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        int index = slotFor(key);
+        if (values[index] == null) {
+            keys[index] = key;
+            size++;
+        }
+        values[index] = value;
+        if (size > threshold) {
+            resize();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        return (V) values[slotFor(key)];
+    }
+
+    public boolean containsKey(long key) {
+        return values[slotFor(key)] != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int index = slotFor(key);
+        V value = (V) values[index];
+        if (value != null) {
+            deleteSlot(index);
+            size--;
+        }
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = null;
+        }
+        size = 0;
+    }
+
+    public long[] keys() {
+        long[] result = new long[size];
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                result[count++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    public CustomArrayList<V> values() {
+        CustomArrayList<V> result = new CustomArrayList<>(Math.max(size, 1));
+        for (Object value : values) {
+            if (value != null) {
+                result.add((V) value);
+            }
+        }
+        return result;
+    }
+
+    private int slotFor(long key) {
+        int mask = keys.length - 1;
+        int index = hash(key) & mask;
+        while (values[index] != null && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void deleteSlot(int index) {
+        int mask = keys.length - 1;
+        int gap = index;
+        int next = (gap + 1) & mask;
+        while (values[next] != null) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[gap] = null;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int index = hash(oldKeys[i]) & mask;
+                while (values[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package algorithms;
+
+import java.util.Comparator;
+
+// Sorted set that also answers positional questions: how many elements are below a given
+// one (rank), which element is at a position (select), and the elements between two
+// positions. It is a treap, a binary search tree kept balanced in expectation by random
+// heap priorities, with each node storing the size of its subtree. add, remove, rank and
+// select are O(log n) expected, and a run of k consecutive elements costs O(log n + k).
+//
+// Elements equal under the comparator are the same element; give the comparator a
+// tie-break (e.g. an ID) to hold several with the same sort key. Not thread-safe.
+public class OrderStatisticTree<T> {
+    private static final class Node<T> {
+        final T element;
+        final int priority;
+        int size = 1;
+        Node<T> left;
+        Node<T> right;
+
+        Node(T element, int priority) {
+            this.element = element;
+            this.priority = priority;
+        }
+    }
+
+    private final Comparator<? super T> comparator;
+    private Node<T> root;
+    private int randomState = 0x2545F491;
+    // Results of split(), to avoid allocating a pair per call
+    private Node<T> splitLess;
+    private Node<T> splitRest;
+    private boolean removed;
+
+    public OrderStatisticTree(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    // False if an equal element is already there
+    public boolean add(T element) {
+        if (contains(element)) {
+            return false;
+        }
+        split(root, element);
+        Node<T> less = splitLess;
+        Node<T> rest = splitRest;
+        root = merge(merge(less, new Node<>(element, randomPriority())), rest);
+        return true;
+    }
+
+    // Replaces the contents with elements given in strictly ascending order, in O(n)
+    // rather than n insertions. With the priorities drawn in order, the tree is the
+    // Cartesian tree of (element, priority), built left to right on a stack of its right
+    // spine; a node leaves the spine once its subtree is final, which is when its size is
+    // known.
+    public void buildFrom(CustomArrayList<T> ascending) {
+        CustomArrayList<Node<T>> spine = new CustomArrayList<>();
+        for (int i = 0; i < ascending.size(); i++) {
+            T element = ascending.get(i);
+            if (i > 0 && comparator.compare(ascending.get(i - 1), element) >= 0) {
+                throw new IllegalArgumentException("Elements are not in strictly ascending order at " + i);
+            }
+            Node<T> node = new Node<>(element, randomPriority());
+            Node<T> last = null;
+            while (!spine.isEmpty() && spine.get(spine.size() - 1).priority < node.priority) {
+                last = spine.remove(spine.size() - 1);
+                resize(last);
+            }
+            node.left = last;
+            if (!spine.isEmpty()) {
+                spine.get(spine.size() - 1).right = node;
+            }
+            spine.add(node);
+        }
+        for (int i = spine.size() - 1; i >= 0; i--) {
+            resize(spine.get(i));
+        }
+        root = spine.isEmpty() ? null : spine.get(0);
+    }
+
+    public boolean remove(T element) {
+        removed = false;
+        root = delete(root, element);
+        return removed;
+    }
+
+    public boolean contains(T element) {
+        Node<T> node = root;
+        while (node != null) {
+            int c = comparator.compare(element, node.element);
+            if (c == 0) {
+                return true;
+            }
+            node = c < 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    // Number of elements less than the given one, which need not be in the tree
+    public int rank(T element) {
+        int rank = 0;
+        Node<T> node = root;
+        while (node != null) {
+            int c = comparator.compare(element, node.element);
+            if (c <= 0) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return rank;
+    }
+
+    // The element at a position in ascending order, from 0
+    public T select(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Node<T> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.element;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    // Elements at positions [fromIndex, toIndex), ascending. The walk starts from the path
+    // to fromIndex, so only the elements returned and one root-to-leaf path are visited.
+    public CustomArrayList<T> range(int fromIndex, int toIndex) {
+        fromIndex = Math.max(fromIndex, 0);
+        toIndex = Math.min(toIndex, size());
+        CustomArrayList<T> result = new CustomArrayList<>(Math.max(toIndex - fromIndex, 1));
+        if (fromIndex >= toIndex) {
+            return result;
+        }
+        // Ancestors still to be visited, innermost last
+        CustomArrayList<Node<T>> pending = new CustomArrayList<>();
+        Node<T> node = root;
+        int index = fromIndex;
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                pending.add(node);
+                node = node.left;
+            } else if (index == leftSize) {
+                pending.add(node);
+                break;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        while (result.size() < toIndex - fromIndex) {
+            Node<T> next = pending.remove(pending.size() - 1);
+            result.add(next.element);
+            for (Node<T> child = next.right; child != null; child = child.left) {
+                pending.add(child);
+            }
+        }
+        return result;
+    }
+
+    // The k largest elements, largest first
+    public CustomArrayList<T> largest(int k) {
+        CustomArrayList<T> ascending = range(size() - k, size());
+        CustomArrayList<T> result = new CustomArrayList<>(Math.max(ascending.size(), 1));
+        for (int i = ascending.size() - 1; i >= 0; i--) {
+            result.add(ascending.get(i));
+        }
+        return result;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public void clear() {
+        root = null;
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static void resize(Node<?> node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    // Splits a subtree into the elements less than the given one (splitLess) and the rest
+    // (splitRest)
+    private void split(Node<T> node, T element) {
+        if (node == null) {
+            splitLess = null;
+            splitRest = null;
+            return;
+        }
+        if (comparator.compare(node.element, element) < 0) {
+            split(node.right, element);
+            node.right = splitLess;
+            resize(node);
+            splitLess = node;
+        } else {
+            split(node.left, element);
+            node.left = splitRest;
+            resize(node);
+            splitRest = node;
+        }
+    }
+
+    // Every element of a is less than every element of b
+    private Node<T> merge(Node<T> a, Node<T> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            resize(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        resize(b);
+        return b;
+    }
+
+    private Node<T> delete(Node<T> node, T element) {
+        if (node == null) {
+            return null;
+        }
+        int c = comparator.compare(element, node.element);
+        if (c == 0) {
+            removed = true;
+            return merge(node.left, node.right);
+        }
+        if (c < 0) {
+            node.left = delete(node.left, element);
+        } else {
+            node.right = delete(node.right, element);
+        }
+        if (removed) {
+            node.size--;
+        }
+        return node;
+    }
+
+    // xorshift, as in CustomSkipList
+    private int randomPriority() {
+        int x = randomState;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        randomState = x;
+        return x;
+    }
+}
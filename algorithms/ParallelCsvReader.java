@@ -0,0 +1,226 @@
+package algorithms;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+// Reads a CSV file as independent byte-range chunks parsed in parallel on the common
+// fork/join pool. Chunk boundaries are moved forward to just after a newline that ends a
+// record, so every chunk holds whole records: quoted fields may contain line breaks
+// (CsvTokenizer.appendField writes them that way), so one sequential pass over the file
+// tracks quote state the way CsvTokenizer does and counts lines, which also gives each
+// chunk the line number it starts on. A '\n' or '"' byte never occurs inside a multi-byte
+// UTF-8 character, so the pass can work on bytes and each chunk decodes on its own.
+//
+// Each chunk gets its own CsvTokenizer and produces one partial result; results come
+// back in file order so callers can merge them as if the file had been read in one go.
+public class ParallelCsvReader {
+    public interface ChunkParser<R> {
+        R parse(CsvTokenizer rows) throws IOException;
+    }
+
+    // Files below this size are read as one chunk
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    // Upper bound on a chunk, which is held in memory while it is parsed
+    private static final long MAX_CHUNK_SIZE = 16 << 20;
+
+    private ParallelCsvReader() {
+    }
+
+    // Parses the file on the common pool and blocks until every chunk is done
+    public static <R> CustomArrayList<R> read(File file, ChunkParser<R> parser) throws IOException {
+        return fork(file, parser).join();
+    }
+
+    // Starts parsing and returns at once, so several files can be read at the same time
+    public static <R> Pending<R> fork(File file, ChunkParser<R> parser) throws IOException {
+        Chunks chunks = chunkBounds(file);
+        Object[] results = new Object[chunks.bounds.length - 1];
+        ChunkTask<R> task = new ChunkTask<>(file, chunks, results, 0, results.length, parser);
+        return new Pending<>(ForkJoinPool.commonPool().submit(task), results);
+    }
+
+    public static final class Pending<R> {
+        private final ForkJoinTask<?> task;
+        private final Object[] results;
+
+        private Pending(ForkJoinTask<?> task, Object[] results) {
+            this.task = task;
+            this.results = results;
+        }
+
+        @SuppressWarnings("unchecked")
+        public CustomArrayList<R> join() throws IOException {
+            try {
+                task.join();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            CustomArrayList<R> ordered = new CustomArrayList<>(Math.max(results.length, 1));
+            for (Object result : results) {
+                ordered.add((R) result);
+            }
+            return ordered;
+        }
+    }
+
+    // Start offsets of the chunks plus the file length as the final entry, and the line
+    // each chunk starts on (1-based)
+    static final class Chunks {
+        final long[] bounds;
+        final long[] firstLines;
+
+        Chunks(long[] bounds, long[] firstLines) {
+            this.bounds = bounds;
+            this.firstLines = firstLines;
+        }
+    }
+
+    static Chunks chunkBounds(File file) throws IOException {
+        long length = file.length();
+        int parallelism = Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, length / (parallelism * 4L) + 1));
+        int chunks = (int) Math.max(1, (length + chunkSize - 1) / chunkSize);
+
+        CustomArrayList<Long> bounds = new CustomArrayList<>(chunks + 1);
+        CustomArrayList<Long> firstLines = new CustomArrayList<>(chunks + 1);
+        bounds.add(0L);
+        firstLines.add(1L);
+        if (chunks > 1) {
+            scanRecordStarts(file, chunkSize, chunks, bounds, firstLines);
+        }
+        bounds.add(length);
+
+        long[] offsets = new long[bounds.size()];
+        long[] lines = new long[firstLines.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = bounds.get(i);
+        }
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = firstLines.get(i);
+        }
+        return new Chunks(offsets, lines);
+    }
+
+    // Adds a boundary at the first record start at least chunkSize past the previous one,
+    // until there are chunks boundaries or the file ends. The state machine is
+    // CsvTokenizer.readRecord's: a '"' opens a quoted field only when nothing but
+    // whitespace precedes it in the field, and "" inside quotes is a literal quote.
+    private static void scanRecordStarts(File file, long chunkSize, int chunks,
+                                         CustomArrayList<Long> bounds, CustomArrayList<Long> firstLines) throws IOException {
+        long length = file.length();
+        long target = chunkSize;
+        long line = 1;
+        boolean inQuotes = false;
+        // A '"' inside quotes that may be the first half of ""
+        boolean quoteSeen = false;
+        boolean fieldBlank = true;
+        boolean fieldQuoted = false;
+        byte[] window = new byte[1 << 16];
+        long offset = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(window)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    int b = window[i] & 0xFF;
+                    if (quoteSeen) {
+                        quoteSeen = false;
+                        if (b == '"') {
+                            fieldBlank = false;
+                            continue;
+                        }
+                        inQuotes = false;
+                    }
+                    if (inQuotes) {
+                        if (b == '"') {
+                            quoteSeen = true;
+                        } else {
+                            if (b == '\n') {
+                                line++;
+                            }
+                            fieldBlank &= b <= ' ';
+                        }
+                    } else if (b == '\n') {
+                        line++;
+                        fieldBlank = true;
+                        fieldQuoted = false;
+                        long next = offset + i + 1;
+                        if (next >= target && next < length) {
+                            bounds.add(next);
+                            firstLines.add(line);
+                            if (bounds.size() == chunks) {
+                                return;
+                            }
+                            target = next + chunkSize;
+                        }
+                    } else if (b == ',') {
+                        fieldBlank = true;
+                        fieldQuoted = false;
+                    } else if (b == '"' && fieldBlank) {
+                        inQuotes = true;
+                        fieldQuoted = true;
+                    } else if (b != '\r' && !(fieldQuoted && b <= ' ')) {
+                        fieldBlank &= b <= ' ';
+                    }
+                }
+                offset += read;
+            }
+        }
+    }
+
+    private static class ChunkTask<R> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final File file;
+        private final Chunks chunks;
+        private final Object[] results;
+        private final int low;
+        private final int high;
+        private final ChunkParser<R> parser;
+
+        ChunkTask(File file, Chunks chunks, Object[] results, int low, int high, ChunkParser<R> parser) {
+            this.file = file;
+            this.chunks = chunks;
+            this.results = results;
+            this.low = low;
+            this.high = high;
+            this.parser = parser;
+        }
+
+        @Override
+        protected void compute() {
+            if (high - low > 1) {
+                int mid = (low + high) >>> 1;
+                invokeAll(new ChunkTask<>(file, chunks, results, low, mid, parser),
+                          new ChunkTask<>(file, chunks, results, mid, high, parser));
+                return;
+            }
+            try {
+                results[low] = parseChunk(chunks.bounds[low], chunks.bounds[low + 1], chunks.firstLines[low]);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private R parseChunk(long start, long end, long firstLine) throws IOException {
+            byte[] bytes = new byte[(int) (end - start)];
+            try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+                in.seek(start);
+                in.readFully(bytes);
+            }
+            try (CsvTokenizer rows = new CsvTokenizer(new InputStreamReader(
+                    new ByteArrayInputStream(bytes), StandardCharsets.UTF_8), firstLine)) {
+                return parser.parse(rows);
+            }
+        }
+    }
+}
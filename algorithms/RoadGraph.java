@@ -0,0 +1,498 @@
+package algorithms;
+
+import java.io.File;
+import java.io.IOException;
+
+// Road network with travel times in minutes, stored in compressed sparse row form: the
+// roads leaving node v are targets[offsets[v] .. offsets[v + 1]) with their times in
+// the same slots of minutes[]. Three flat arrays and no per-edge objects, so a
+// national network of a million road segments takes about 24 MB.
+//
+// Roads are two-way. Point-to-point queries run A* with ALT bounds (A*, landmarks and
+// the triangle inequality): the distances from a few landmarks spread over the network
+// are computed once, and |d(L, t) - d(L, v)| is then a lower bound on d(v, t) for every
+// landmark L. The bound steers the search towards the target, so a query settles a
+// small part of the network instead of everything closer than the target.
+//
+// travelTime() reuses the graph's scratch arrays and is not thread-safe; threads that
+// query at the same time each need their own Search. distancesFrom() is thread-safe.
+public class RoadGraph {
+    public static final double UNREACHABLE = Double.POSITIVE_INFINITY;
+    public static final int DEFAULT_LANDMARKS = 8;
+    // Speed assumed for rows of the road file without one
+    public static final double DEFAULT_SPEED_KMH = 80;
+
+    private final String[] names;
+    private final StringIntHashMap ids;
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] minutes;
+    // landmarkDistances[i][v] is the travel time between landmark i and node v
+    private final double[][] landmarkDistances;
+
+    // Scratch space of travelTime()
+    private final Search shared;
+
+    private RoadGraph(String[] names, StringIntHashMap ids, int[] offsets, int[] targets, double[] minutes,
+                      int landmarks) {
+        this.names = names;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.minutes = minutes;
+        this.shared = new Search();
+        this.landmarkDistances = chooseLandmarks(Math.min(landmarks, names.length));
+    }
+
+    // Reads "from,to,distanceKm[,speedKmh]" rows; lines starting with '#' are comments.
+    // Rows that cannot be read are skipped.
+    public static RoadGraph load(File file, int landmarks) throws IOException {
+        CustomArrayList<Builder> chunks = ParallelCsvReader.read(file, rows -> {
+            Builder chunk = new Builder();
+            while (rows.next()) {
+                if (rows.fieldCount() < 3 || rows.field(0).startsWith("#")) {
+                    continue;
+                }
+                try {
+                    double km = rows.doubleField(2);
+                    double speed = rows.fieldCount() > 3 && !rows.isEmpty(3) ? rows.doubleField(3) : DEFAULT_SPEED_KMH;
+                    if (speed <= 0) {
+                        continue;
+                    }
+                    chunk.addRoad(rows.internedField(0), rows.internedField(1), km / speed * 60);
+                } catch (IllegalArgumentException e) {
+                    // Malformed number or negative distance
+                }
+            }
+            return chunk;
+        });
+        Builder builder = new Builder();
+        for (int i = 0; i < chunks.size(); i++) {
+            builder.addAll(chunks.get(i));
+        }
+        return builder.build(landmarks);
+    }
+
+    public int nodeCount() {
+        return names.length;
+    }
+
+    // Number of road segments; each is stored once per direction
+    public int roadCount() {
+        return targets.length / 2;
+    }
+
+    // The node of a place name (case and surrounding spaces ignored), or -1
+    public int node(String name) {
+        return name == null ? -1 : ids.get(normalize(name));
+    }
+
+    public String name(int node) {
+        return names[node];
+    }
+
+    // Travel times from source to every node (UNREACHABLE where there is no road), by
+    // Dijkstra over the whole network
+    public double[] distancesFrom(int source) {
+        int n = names.length;
+        double[] result = new double[n];
+        java.util.Arrays.fill(result, UNREACHABLE);
+        NodeHeap heap = new NodeHeap(n);
+        result[source] = 0;
+        heap.push(source, 0);
+        while (!heap.isEmpty()) {
+            int v = heap.pop();
+            double dv = result[v];
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int w = targets[e];
+                double candidate = dv + minutes[e];
+                if (result[w] == UNREACHABLE) {
+                    result[w] = candidate;
+                    heap.push(w, candidate);
+                } else if (candidate < result[w] && heap.contains(w)) {
+                    result[w] = candidate;
+                    heap.decrease(w, candidate);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Travel time from source to target, or UNREACHABLE; uses the graph's own scratch
+    // space, so calls must not overlap
+    public double travelTime(int source, int target) {
+        return shared.travelTime(source, target);
+    }
+
+    // Nodes settled by the last travelTime() call, a measure of how well the bounds steer
+    public int lastSettled() {
+        return shared.lastSettled;
+    }
+
+    // Scratch space for queries from one thread at a time
+    public Search newSearch() {
+        return new Search();
+    }
+
+    // A node's dist and bound are valid only while its stamp equals the current search,
+    // so nothing has to be cleared between queries.
+    public final class Search {
+        private final double[] dist = new double[names.length];
+        private final double[] bound = new double[names.length];
+        private final int[] stamp = new int[names.length];
+        private final NodeHeap open = new NodeHeap(names.length);
+        private int search;
+        private int lastSettled;
+
+        private Search() {
+        }
+
+        // A* with landmark bounds; see the class comment
+        public double travelTime(int source, int target) {
+            if (source == target) {
+                return 0;
+            }
+            startSearch();
+            double h = lowerBound(source, target);
+            if (h == UNREACHABLE) {
+                return UNREACHABLE;
+            }
+            visit(source, 0, h);
+            open.push(source, h);
+            while (!open.isEmpty()) {
+                int v = open.pop();
+                lastSettled++;
+                if (v == target) {
+                    return dist[v];
+                }
+                double dv = dist[v];
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int w = targets[e];
+                    double candidate = dv + minutes[e];
+                    if (stamp[w] != search) {
+                        double hw = lowerBound(w, target);
+                        if (hw == UNREACHABLE) {
+                            continue;
+                        }
+                        visit(w, candidate, hw);
+                        open.push(w, candidate + hw);
+                    } else if (candidate < dist[w] && open.contains(w)) {
+                        // The bounds are consistent, so settled nodes never improve; the
+                        // contains() check only guards against rounding
+                        dist[w] = candidate;
+                        open.decrease(w, candidate + bound[w]);
+                    }
+                }
+            }
+            return UNREACHABLE;
+        }
+
+        // Dijkstra from source that stops once count nodes marked in isTarget (source
+        // itself excluded) are settled. Writes them nearest first into found and
+        // foundMinutes and returns how many there are; fewer than count if the rest of
+        // the network has no more.
+        public int nearest(int source, boolean[] isTarget, int count, int[] found, double[] foundMinutes) {
+            startSearch();
+            int hits = 0;
+            if (count <= 0) {
+                return 0;
+            }
+            visit(source, 0, 0);
+            open.push(source, 0);
+            while (!open.isEmpty()) {
+                int v = open.pop();
+                lastSettled++;
+                double dv = dist[v];
+                if (v != source && isTarget[v]) {
+                    found[hits] = v;
+                    foundMinutes[hits] = dv;
+                    if (++hits == count) {
+                        break;
+                    }
+                }
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int w = targets[e];
+                    double candidate = dv + minutes[e];
+                    if (stamp[w] != search) {
+                        visit(w, candidate, 0);
+                        open.push(w, candidate);
+                    } else if (candidate < dist[w] && open.contains(w)) {
+                        dist[w] = candidate;
+                        open.decrease(w, candidate);
+                    }
+                }
+            }
+            return hits;
+        }
+
+        // Nodes settled by the last query
+        public int lastSettled() {
+            return lastSettled;
+        }
+
+        private void startSearch() {
+            open.clear();
+            lastSettled = 0;
+            if (++search == 0) {
+                // Wrapped around: old stamps could collide with new ones
+                java.util.Arrays.fill(stamp, 0);
+                search = 1;
+            }
+        }
+
+        private void visit(int node, double distance, double lowerBound) {
+            stamp[node] = search;
+            dist[node] = distance;
+            bound[node] = lowerBound;
+        }
+    }
+
+    // Largest landmark bound on the travel time from v to target; UNREACHABLE when a
+    // landmark reaches one of them but not the other, since they are then in different
+    // parts of the network
+    private double lowerBound(int v, int target) {
+        double best = 0;
+        for (double[] fromLandmark : landmarkDistances) {
+            double dv = fromLandmark[v];
+            double dt = fromLandmark[target];
+            if (dv == UNREACHABLE || dt == UNREACHABLE) {
+                if (dv != dt) {
+                    return UNREACHABLE;
+                }
+                continue;
+            }
+            double gap = Math.abs(dt - dv);
+            if (gap > best) {
+                best = gap;
+            }
+        }
+        return best;
+    }
+
+    // Farthest-point selection: each new landmark is the node farthest from the ones
+    // chosen so far, which spreads them around the edges of the network where their
+    // bounds are tightest. A node no landmark reaches counts as farthest of all, so
+    // every part of a disconnected network gets a landmark before a second one goes
+    // into a part that already has one.
+    private double[][] chooseLandmarks(int count) {
+        int n = names.length;
+        if (count <= 0 || n == 0) {
+            return new double[0][];
+        }
+        double[][] chosen = new double[count][];
+        double[] nearest = new double[n];
+        java.util.Arrays.fill(nearest, UNREACHABLE);
+        // Start from the node farthest from node 0 rather than node 0 itself
+        double[] first = distancesFrom(0);
+        int next = farthest(first, false);
+        for (int i = 0; i < count; i++) {
+            chosen[i] = distancesFrom(next);
+            for (int v = 0; v < n; v++) {
+                if (chosen[i][v] < nearest[v]) {
+                    nearest[v] = chosen[i][v];
+                }
+            }
+            next = farthest(nearest, true);
+        }
+        return chosen;
+    }
+
+    // The node with the largest finite distance, or the first unreachable one if
+    // preferUnreachable is set
+    private static int farthest(double[] distances, boolean preferUnreachable) {
+        int best = 0;
+        double bestDistance = -1;
+        for (int v = 0; v < distances.length; v++) {
+            double d = distances[v];
+            if (d == UNREACHABLE && preferUnreachable) {
+                return v;
+            }
+            if (d != UNREACHABLE && d > bestDistance) {
+                bestDistance = d;
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    static String normalize(String name) {
+        return name.trim().toLowerCase();
+    }
+
+    // Collects roads and lays them out in CSR form
+    public static final class Builder {
+        private String[] from = new String[16];
+        private String[] to = new String[16];
+        private double[] times = new double[16];
+        private int size;
+
+        public Builder addRoad(String fromName, String toName, double travelMinutes) {
+            if (!(travelMinutes >= 0) || travelMinutes == UNREACHABLE) {
+                throw new IllegalArgumentException("Travel time must be finite and non-negative: " + travelMinutes);
+            }
+            if (size == from.length) {
+                from = java.util.Arrays.copyOf(from, size * 2);
+                to = java.util.Arrays.copyOf(to, size * 2);
+                times = java.util.Arrays.copyOf(times, size * 2);
+            }
+            from[size] = fromName;
+            to[size] = toName;
+            times[size] = travelMinutes;
+            size++;
+            return this;
+        }
+
+        public Builder addAll(Builder other) {
+            for (int i = 0; i < other.size; i++) {
+                addRoad(other.from[i], other.to[i], other.times[i]);
+            }
+            return this;
+        }
+
+        public RoadGraph build(int landmarks) {
+            // Name the nodes in order of first appearance
+            StringIntHashMap ids = new StringIntHashMap(size);
+            CustomArrayList<String> names = new CustomArrayList<>();
+            int[] fromNode = new int[size];
+            int[] toNode = new int[size];
+            for (int i = 0; i < size; i++) {
+                fromNode[i] = id(from[i], ids, names);
+                toNode[i] = id(to[i], ids, names);
+            }
+            int n = names.size();
+
+            // Counting sort of both directions of every road by their tail
+            int[] offsets = new int[n + 1];
+            for (int i = 0; i < size; i++) {
+                offsets[fromNode[i] + 1]++;
+                offsets[toNode[i] + 1]++;
+            }
+            for (int v = 0; v < n; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] fill = java.util.Arrays.copyOf(offsets, n);
+            int[] targets = new int[2 * size];
+            double[] minutes = new double[2 * size];
+            for (int i = 0; i < size; i++) {
+                int e = fill[fromNode[i]]++;
+                targets[e] = toNode[i];
+                minutes[e] = times[i];
+                e = fill[toNode[i]]++;
+                targets[e] = fromNode[i];
+                minutes[e] = times[i];
+            }
+
+            String[] nameArray = new String[n];
+            for (int v = 0; v < n; v++) {
+                nameArray[v] = names.get(v);
+            }
+            return new RoadGraph(nameArray, ids, offsets, targets, minutes, landmarks);
+        }
+
+        private static int id(String name, StringIntHashMap ids, CustomArrayList<String> names) {
+            String key = normalize(name);
+            int id = ids.get(key);
+            if (id < 0) {
+                id = names.size();
+                ids.put(key, id);
+                names.add(name.trim());
+            }
+            return id;
+        }
+    }
+
+    // Binary min-heap of node IDs keyed by double, with decrease-key through a position
+    // table. Positions of nodes not in the heap are kept at -1, so clear() only has to
+    // touch the nodes still queued.
+    private static final class NodeHeap {
+        private final int[] heap;
+        private final double[] keys;
+        private final int[] position;
+        private int size;
+
+        NodeHeap(int capacity) {
+            heap = new int[capacity];
+            keys = new double[capacity];
+            position = new int[capacity];
+            java.util.Arrays.fill(position, -1);
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        boolean contains(int node) {
+            return position[node] >= 0;
+        }
+
+        void push(int node, double key) {
+            keys[node] = key;
+            heap[size] = node;
+            position[node] = size;
+            siftUp(size++);
+        }
+
+        void decrease(int node, double key) {
+            keys[node] = key;
+            siftUp(position[node]);
+        }
+
+        int pop() {
+            int top = heap[0];
+            position[top] = -1;
+            int last = heap[--size];
+            if (size > 0) {
+                heap[0] = last;
+                position[last] = 0;
+                siftDown(0);
+            }
+            return top;
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                position[heap[i]] = -1;
+            }
+            size = 0;
+        }
+
+        private void siftUp(int i) {
+            int node = heap[i];
+            double key = keys[node];
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                int above = heap[parent];
+                if (keys[above] <= key) {
+                    break;
+                }
+                heap[i] = above;
+                position[above] = i;
+                i = parent;
+            }
+            heap[i] = node;
+            position[node] = i;
+        }
+
+        private void siftDown(int i) {
+            int node = heap[i];
+            double key = keys[node];
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                int right = child + 1;
+                if (right < size && keys[heap[right]] < keys[heap[child]]) {
+                    child = right;
+                }
+                int below = heap[child];
+                if (key <= keys[below]) {
+                    break;
+                }
+                heap[i] = below;
+                position[below] = i;
+                i = child;
+            }
+            heap[i] = node;
+            position[node] = i;
+        }
+    }
+}
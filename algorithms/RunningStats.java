@@ -0,0 +1,61 @@
+package algorithms;
+
+// Count, mean and variance of a multiset of values that grows and shrinks, each change
+// O(1). Welford's updates are used in both directions, which stay accurate where a sum
+// of squares minus a squared sum would cancel.
+public class RunningStats {
+    private long count;
+    private double mean;
+    // Sum of squared differences from the mean
+    private double m2;
+
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+    }
+
+    // The value must have been added before
+    public void remove(double value) {
+        if (count == 0) {
+            throw new IllegalStateException("Nothing to remove");
+        }
+        if (--count == 0) {
+            mean = 0;
+            m2 = 0;
+            return;
+        }
+        double delta = value - mean;
+        mean -= delta / count;
+        m2 = Math.max(0, m2 - delta * (value - mean));
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double sum() {
+        return mean * count;
+    }
+
+    // NaN when empty
+    public double mean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    // Population variance; NaN when empty
+    public double variance() {
+        return count == 0 ? Double.NaN : m2 / count;
+    }
+
+    public double standardDeviation() {
+        return Math.sqrt(variance());
+    }
+
+    public void clear() {
+        count = 0;
+        mean = 0;
+        m2 = 0;
+    }
+}
@@ -0,0 +1,392 @@
+package algorithms;
+
+// Capacitated vehicle routing from one depot by the Clarke-Wright savings heuristic,
+// improved with 2-opt. Every stop starts on its own out-and-back route; joining the
+// routes through stops i and j saves d(0, i) + d(0, j) - d(i, j), and the joins are
+// made largest saving first as long as both stops are still route ends and the merged
+// load fits the capacity.
+//
+// Savings are only considered between each stop and its nearest few stops by road, so
+// the work grows with stops * neighbours rather than stops squared. Those distances come
+// from Dijkstra searches that stop as soon as enough other stops are reached. Routes are
+// kept as paths (each stop has at most two route neighbours) under a union-find, so a
+// join is O(1) and no route is ever reversed.
+//
+// The whole plan is time-bounded: past the deadline, the remaining neighbour searches
+// and 2-opt passes are skipped. The joins always run over the savings found so far,
+// being one pass over a sorted list, so a cut-short plan is still valid and still
+// batches the stops whose neighbours were found.
+public class SavingsRouter {
+    public static final int DEFAULT_NEIGHBOURS = 16;
+    private static final int NONE = -1;
+    private static final double EPSILON = 1e-9;
+
+    public static final class Plan {
+        // Stop indices per route, in visiting order
+        public final int[][] routes;
+        // Minutes from leaving the depot to reaching each stop (UNREACHABLE if unrouted)
+        public final double[] arrivalMinutes;
+        // Minutes from leaving the depot until back there, per route
+        public final double[] routeMinutes;
+        // Stops no road reaches from the depot
+        public final int[] unrouted;
+        // False if the deadline cut the planning short
+        public final boolean complete;
+
+        Plan(int[][] routes, double[] arrivalMinutes, double[] routeMinutes, int[] unrouted, boolean complete) {
+            this.routes = routes;
+            this.arrivalMinutes = arrivalMinutes;
+            this.routeMinutes = routeMinutes;
+            this.unrouted = unrouted;
+            this.complete = complete;
+        }
+    }
+
+    private final RoadGraph graph;
+    private final RoadGraph.Search search;
+    private final int[] stops;
+    private final int[] demand;
+    private final int capacity;
+    private final long deadlineNanos;
+    private boolean complete = true;
+
+    private double[] fromDepot;
+    // Nearest other stops of each stop and the travel times to them
+    private int[][] neighbours;
+    private double[][] neighbourMinutes;
+    // Route structure: up to two route neighbours per stop, and a union-find over routes
+    private int[] linkA;
+    private int[] linkB;
+    private int[] parent;
+    private int[] load;
+
+    private SavingsRouter(RoadGraph graph, RoadGraph.Search search, int[] stops, int[] demand, int capacity,
+                          long deadlineNanos) {
+        this.graph = graph;
+        this.search = search;
+        this.stops = stops;
+        this.demand = demand;
+        this.capacity = capacity;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    // Plans routes from depot to the stops (graph nodes; several stops may share a node)
+    // with the given demands. Each demand must fit in capacity. The search must belong
+    // to this graph and not be used by another thread meanwhile.
+    public static Plan plan(RoadGraph graph, RoadGraph.Search search, int depot, int[] stops, int[] demand,
+                            int capacity, int neighbourCount, long deadlineNanos) {
+        if (stops.length != demand.length) {
+            throw new IllegalArgumentException("Every stop needs a demand");
+        }
+        for (int i = 0; i < stops.length; i++) {
+            if (demand[i] < 0 || demand[i] > capacity) {
+                throw new IllegalArgumentException("Demand " + demand[i] + " of stop " + i
+                        + " does not fit capacity " + capacity);
+            }
+        }
+        SavingsRouter router = new SavingsRouter(graph, search, stops, demand, capacity, deadlineNanos);
+        return router.run(depot, neighbourCount);
+    }
+
+    private Plan run(int depot, int neighbourCount) {
+        int n = stops.length;
+        double[] depotTable = graph.distancesFrom(depot);
+        fromDepot = new double[n];
+        int reachable = 0;
+        for (int i = 0; i < n; i++) {
+            fromDepot[i] = depotTable[stops[i]];
+            if (fromDepot[i] != RoadGraph.UNREACHABLE) {
+                reachable++;
+            }
+        }
+        findNeighbours(neighbourCount);
+        join();
+
+        int[][] routes = extractRoutes(reachable);
+        double[] arrivalMinutes = new double[n];
+        java.util.Arrays.fill(arrivalMinutes, RoadGraph.UNREACHABLE);
+        double[] routeMinutes = new double[routes.length];
+        for (int r = 0; r < routes.length; r++) {
+            if (!pastDeadline()) {
+                twoOpt(routes[r]);
+            }
+            routeMinutes[r] = timeRoute(routes[r], arrivalMinutes);
+        }
+        int[] unrouted = new int[n - reachable];
+        for (int i = 0, u = 0; i < n; i++) {
+            if (fromDepot[i] == RoadGraph.UNREACHABLE) {
+                unrouted[u++] = i;
+            }
+        }
+        return new Plan(routes, arrivalMinutes, routeMinutes, unrouted, complete);
+    }
+
+    private boolean pastDeadline() {
+        if (complete && System.nanoTime() - deadlineNanos >= 0) {
+            complete = false;
+        }
+        return !complete;
+    }
+
+    // Stops sharing a node are one search target; the search from a node serves all its
+    // stops
+    private void findNeighbours(int count) {
+        int n = stops.length;
+        neighbours = new int[n][];
+        neighbourMinutes = new double[n][];
+        boolean[] isTarget = new boolean[graph.nodeCount()];
+        LongObjectHashMap<CustomArrayList<Integer>> stopsAt = new LongObjectHashMap<>();
+        for (int i = 0; i < n; i++) {
+            if (fromDepot[i] == RoadGraph.UNREACHABLE) {
+                continue;
+            }
+            isTarget[stops[i]] = true;
+            CustomArrayList<Integer> at = stopsAt.get(stops[i]);
+            if (at == null) {
+                at = new CustomArrayList<>();
+                stopsAt.put(stops[i], at);
+            }
+            at.add(i);
+        }
+
+        int[] foundNodes = new int[count];
+        double[] foundMinutes = new double[count];
+        for (int i = 0; i < n; i++) {
+            if (fromDepot[i] == RoadGraph.UNREACHABLE || neighbours[i] != null) {
+                continue;
+            }
+            CustomArrayList<Integer> same = stopsAt.get(stops[i]);
+            int found = pastDeadline() ? 0 : search.nearest(stops[i], isTarget, count, foundNodes, foundMinutes);
+            // Stops at the same node are neighbours at no distance
+            int size = same.size() - 1;
+            for (int f = 0; f < found; f++) {
+                size += stopsAt.get(foundNodes[f]).size();
+            }
+            int[] list = new int[size];
+            double[] minutes = new double[size];
+            int k = 0;
+            for (int s = 0; s < same.size(); s++) {
+                if (same.get(s) != i) {
+                    list[k++] = same.get(s);
+                }
+            }
+            for (int f = 0; f < found; f++) {
+                CustomArrayList<Integer> at = stopsAt.get(foundNodes[f]);
+                for (int s = 0; s < at.size(); s++) {
+                    minutes[k] = foundMinutes[f];
+                    list[k++] = at.get(s);
+                }
+            }
+            for (int s = 0; s < same.size(); s++) {
+                int stop = same.get(s);
+                if (stop == i) {
+                    neighbours[stop] = list;
+                    neighbourMinutes[stop] = minutes;
+                } else {
+                    // Same node: same neighbours, with i in place of the stop itself
+                    int[] copy = list.clone();
+                    for (int c = 0; c < copy.length; c++) {
+                        if (copy[c] == stop) {
+                            copy[c] = i;
+                        }
+                    }
+                    neighbours[stop] = copy;
+                    neighbourMinutes[stop] = minutes;
+                }
+            }
+        }
+    }
+
+    private void join() {
+        int n = stops.length;
+        linkA = new int[n];
+        linkB = new int[n];
+        parent = new int[n];
+        load = new int[n];
+        java.util.Arrays.fill(linkA, NONE);
+        java.util.Arrays.fill(linkB, NONE);
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            load[i] = demand[i];
+        }
+
+        int pairs = 0;
+        for (int i = 0; i < n; i++) {
+            if (neighbours[i] != null) {
+                pairs += neighbours[i].length;
+            }
+        }
+        int[] first = new int[pairs];
+        int[] second = new int[pairs];
+        double[] negativeSaving = new double[pairs];
+        int p = 0;
+        for (int i = 0; i < n; i++) {
+            if (neighbours[i] == null) {
+                continue;
+            }
+            for (int k = 0; k < neighbours[i].length; k++) {
+                int j = neighbours[i][k];
+                double saving = fromDepot[i] + fromDepot[j] - neighbourMinutes[i][k];
+                // Without a saving, two separate trips are no worse than a joined one
+                if (saving > EPSILON) {
+                    first[p] = i;
+                    second[p] = j;
+                    negativeSaving[p] = -saving;
+                    p++;
+                }
+            }
+        }
+        int[] order = IndexSort.sortedIndices(java.util.Arrays.copyOf(negativeSaving, p));
+
+        for (int o = 0; o < order.length; o++) {
+            int i = first[order[o]];
+            int j = second[order[o]];
+            if (linkB[i] != NONE || linkB[j] != NONE) {
+                // Interior stops cannot take another neighbour
+                continue;
+            }
+            int rootI = find(i);
+            int rootJ = find(j);
+            if (rootI == rootJ || load[rootI] + load[rootJ] > capacity) {
+                continue;
+            }
+            link(i, j);
+            link(j, i);
+            parent[rootJ] = rootI;
+            load[rootI] += load[rootJ];
+        }
+    }
+
+    private void link(int stop, int to) {
+        if (linkA[stop] == NONE) {
+            linkA[stop] = to;
+        } else {
+            linkB[stop] = to;
+        }
+    }
+
+    private int find(int stop) {
+        while (parent[stop] != stop) {
+            parent[stop] = parent[parent[stop]];
+            stop = parent[stop];
+        }
+        return stop;
+    }
+
+    // Walks each path from one end; the end nearer the depot goes first
+    private int[][] extractRoutes(int reachable) {
+        int n = stops.length;
+        boolean[] done = new boolean[n];
+        int[][] routes = new int[reachable][];
+        int count = 0;
+        int[] path = new int[n];
+        for (int start = 0; start < n; start++) {
+            if (done[start] || fromDepot[start] == RoadGraph.UNREACHABLE || linkB[start] != NONE) {
+                continue;
+            }
+            int length = 0;
+            int previous = NONE;
+            int current = start;
+            while (current != NONE) {
+                done[current] = true;
+                path[length++] = current;
+                int next = linkA[current] != previous ? linkA[current] : linkB[current];
+                previous = current;
+                current = next;
+            }
+            int[] route = java.util.Arrays.copyOf(path, length);
+            if (fromDepot[route[length - 1]] < fromDepot[route[0]]) {
+                reverse(route, 0, length - 1);
+            }
+            routes[count++] = route;
+        }
+        return java.util.Arrays.copyOf(routes, count);
+    }
+
+    // Travel time between two stops if known: same node, or one is a neighbour of the
+    // other. NaN otherwise.
+    private double between(int i, int j) {
+        if (stops[i] == stops[j]) {
+            return 0;
+        }
+        double known = lookup(i, j);
+        return Double.isNaN(known) ? lookup(j, i) : known;
+    }
+
+    private double lookup(int i, int j) {
+        int[] list = neighbours[i];
+        if (list != null) {
+            for (int k = 0; k < list.length; k++) {
+                if (list[k] == j) {
+                    return neighbourMinutes[i][k];
+                }
+            }
+        }
+        return Double.NaN;
+    }
+
+    // Travel time between tour positions, where NONE is the depot
+    private double leg(int from, int to) {
+        if (from == NONE) {
+            return to == NONE ? 0 : fromDepot[to];
+        }
+        return to == NONE ? fromDepot[from] : between(from, to);
+    }
+
+    // Reverses route sections while that shortens the round trip. Only moves whose new
+    // legs have known travel times are tried, which are the short ones that matter.
+    private void twoOpt(int[] route) {
+        int m = route.length;
+        if (m < 3) {
+            return;
+        }
+        boolean improved = true;
+        while (improved && !pastDeadline()) {
+            improved = false;
+            // Legs are (a, b) leaving position i and (c, d) leaving position j; position
+            // -1 and m stand for the depot
+            for (int i = -1; i < m - 2; i++) {
+                int a = i < 0 ? NONE : route[i];
+                int b = route[i + 1];
+                double ab = leg(a, b);
+                for (int j = i + 2; j < m; j++) {
+                    int c = route[j];
+                    int d = j + 1 < m ? route[j + 1] : NONE;
+                    double ac = leg(a, c);
+                    double bd = leg(b, d);
+                    if (Double.isNaN(ac) || Double.isNaN(bd)) {
+                        continue;
+                    }
+                    double delta = ac + bd - ab - leg(c, d);
+                    if (delta < -EPSILON) {
+                        reverse(route, i + 1, j);
+                        b = route[i + 1];
+                        ab = leg(a, b);
+                        improved = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private double timeRoute(int[] route, double[] arrivalMinutes) {
+        double elapsed = 0;
+        int previous = NONE;
+        for (int stop : route) {
+            elapsed += leg(previous, stop);
+            arrivalMinutes[stop] = elapsed;
+            previous = stop;
+        }
+        return elapsed + leg(previous, NONE);
+    }
+
+    private static void reverse(int[] route, int from, int to) {
+        while (from < to) {
+            int swap = route[from];
+            route[from] = route[to];
+            route[to] = swap;
+            from++;
+            to--;
+        }
+    }
+}
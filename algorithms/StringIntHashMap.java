@@ -0,0 +1,186 @@
+package algorithms;
+
+// String -> int map with primitive values, for registries that map names to row
+// numbers, codes or counters. Linear probing over a power-of-two table; values are
+// kept in an int[] so there is no boxing and no per-entry node.
+public class StringIntHashMap {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double LOAD_FACTOR = 0.75;
+
+    private String[] keys;
+    private int[] values;
+    private int size;
+    private int threshold;
+    private final int missingValue;
+
+    public StringIntHashMap() {
+        this(DEFAULT_CAPACITY, -1);
+    }
+
+    public StringIntHashMap(int expectedSize) {
+        this(expectedSize, -1);
+    }
+
+    // missingValue is what get() returns for absent keys
+    public StringIntHashMap(int expectedSize, int missingValue) {
+        this.missingValue = missingValue;
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    private void allocate(int tableSize) {
+        keys = new String[tableSize];
+        values = new int[tableSize];
+        threshold = (int) (tableSize * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int entries) {
+        int needed = (int) Math.ceil(Math.max(entries, 1) / LOAD_FACTOR);
+        int tableSize = 2;
+        while (tableSize < needed) {
+            tableSize <<= 1;
+        }
+        return tableSize;
+    }
+
+    private static int hash(String key) {
+        return Hashing.mix(key.hashCode());
+    }
+
+    public void put(String key, int value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Null keys are not supported");
+        }
+        int index = slotFor(key);
+        if (keys[index] == null) {
+            keys[index] = key;
+            size++;
+        }
+        values[index] = value;
+        if (size > threshold) {
+            resize();
+        }
+    }
+
+    public int get(String key) {
+        if (key == null) {
+            return missingValue;
+        }
+        int index = slotFor(key);
+        return keys[index] == null ? missingValue : values[index];
+    }
+
+    public boolean containsKey(String key) {
+        return key != null && keys[slotFor(key)] != null;
+    }
+
+    // Adds delta to the value for key (starting from 0) and returns the new value
+    public int increment(String key, int delta) {
+        int index = slotFor(key);
+        if (keys[index] == null) {
+            put(key, delta);
+            return delta;
+        }
+        values[index] += delta;
+        return values[index];
+    }
+
+    public int remove(String key) {
+        if (key == null) {
+            return missingValue;
+        }
+        int index = slotFor(key);
+        if (keys[index] == null) {
+            return missingValue;
+        }
+        int value = values[index];
+        deleteSlot(index);
+        size--;
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = null;
+        }
+        size = 0;
+    }
+
+    public CustomArrayList<String> keySet() {
+        CustomArrayList<String> result = new CustomArrayList<>(Math.max(size, 1));
+        for (String key : keys) {
+            if (key != null) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    // Slot holding key, or the empty slot where it would go
+    private int slotFor(String key) {
+        int mask = keys.length - 1;
+        int index = hash(key) & mask;
+        while (keys[index] != null && !keys[index].equals(key)) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void deleteSlot(int index) {
+        int mask = keys.length - 1;
+        int gap = index;
+        int next = (gap + 1) & mask;
+        while (keys[next] != null) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = null;
+    }
+
+    private void resize() {
+        String[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int index = hash(oldKeys[i]) & mask;
+                while (keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        boolean first = true;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                if (!first) {
+                    sb.append(", ");
+                }
+                sb.append(keys[i]).append("=").append(values[i]);
+                first = false;
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,200 @@
+package algorithms;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Thread-safe hash map made of independently locked CustomHashMap segments. A key always
+// lives in the same segment, so operations on keys in different segments never contend,
+// and readers of one segment do not block each other.
+//
+// Compound operations on one key (read-modify-write, or a change that must be logged in
+// order) take writeLock(key) around the individual calls; the locks are reentrant.
+public class StripedHashMap<K, V> {
+    private static final int DEFAULT_STRIPES = 16;
+
+    private final CustomHashMap<K, V>[] segments;
+    private final ReentrantReadWriteLock[] locks;
+    private final AtomicInteger size = new AtomicInteger();
+
+    public StripedHashMap() {
+        this(DEFAULT_STRIPES, 16);
+    }
+
+    // stripes is rounded up to a power of two; expectedSize presizes the segments
+    public StripedHashMap(int stripes, int expectedSize) {
+        int count = 1;
+        while (count < stripes) {
+            count <<= 1;
+        }
+        @SuppressWarnings("unchecked")
+        CustomHashMap<K, V>[] typed = (CustomHashMap<K, V>[]) new CustomHashMap<?, ?>[count];
+        segments = typed;
+        locks = new ReentrantReadWriteLock[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new CustomHashMap<>(Math.max(expectedSize / count, 1));
+            locks[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    // Uses different hash bits than the segments' own tables so that every key of a
+    // segment does not land in the same region of that segment's table
+    private int segmentFor(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h >>> 16) & (segments.length - 1);
+    }
+
+    public Lock writeLock(K key) {
+        return locks[segmentFor(key)].writeLock();
+    }
+
+    // Returns the previous value, or null
+    public V put(K key, V value) {
+        int segment = segmentFor(key);
+        Lock lock = locks[segment].writeLock();
+        lock.lock();
+        try {
+            V previous = segments[segment].get(key);
+            segments[segment].put(key, value);
+            if (previous == null) {
+                size.incrementAndGet();
+            }
+            return previous;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public V get(K key) {
+        if (key == null) {
+            return null;
+        }
+        int segment = segmentFor(key);
+        Lock lock = locks[segment].readLock();
+        lock.lock();
+        try {
+            return segments[segment].get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    public V remove(K key) {
+        if (key == null) {
+            return null;
+        }
+        int segment = segmentFor(key);
+        Lock lock = locks[segment].writeLock();
+        lock.lock();
+        try {
+            V removed = segments[segment].remove(key);
+            if (removed != null) {
+                size.decrementAndGet();
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Removes the key only while it still maps to value (compared by identity); returns
+    // whether it did
+    public boolean remove(K key, V value) {
+        if (key == null) {
+            return false;
+        }
+        int segment = segmentFor(key);
+        Lock lock = locks[segment].writeLock();
+        lock.lock();
+        try {
+            if (segments[segment].get(key) != value) {
+                return false;
+            }
+            segments[segment].remove(key);
+            size.decrementAndGet();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Grows every segment once up front so that expectedSize keys fit without resizing
+    public void ensureCapacity(int expectedSize) {
+        int perSegment = expectedSize / segments.length + 1;
+        for (int i = 0; i < segments.length; i++) {
+            Lock lock = locks[i].writeLock();
+            lock.lock();
+            try {
+                segments[i].ensureCapacity(perSegment);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    // Visits every value while holding its segment's read lock. Each segment is seen
+    // consistently; changes to other segments may land between segments.
+    public void forEachValue(Consumer<? super V> action) {
+        for (int i = 0; i < segments.length; i++) {
+            Lock lock = locks[i].readLock();
+            lock.lock();
+            try {
+                CustomArrayList<V> segmentValues = segments[i].values();
+                for (int j = 0; j < segmentValues.size(); j++) {
+                    action.accept(segmentValues.get(j));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public CustomArrayList<V> values() {
+        CustomArrayList<V> result = new CustomArrayList<>(Math.max(size(), 1));
+        forEachValue(result::add);
+        return result;
+    }
+
+    public CustomArrayList<K> keySet() {
+        CustomArrayList<K> result = new CustomArrayList<>(Math.max(size(), 1));
+        for (int i = 0; i < segments.length; i++) {
+            Lock lock = locks[i].readLock();
+            lock.lock();
+            try {
+                CustomArrayList<K> segmentKeys = segments[i].keySet();
+                for (int j = 0; j < segmentKeys.size(); j++) {
+                    result.add(segmentKeys.get(j));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return result;
+    }
+
+    public void clear() {
+        for (int i = 0; i < segments.length; i++) {
+            Lock lock = locks[i].writeLock();
+            lock.lock();
+            try {
+                size.addAndGet(-segments[i].size());
+                segments[i].clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,579 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.Random;
+import algorithms.*;
+
+// Benchmarks the algorithms package against the java.util equivalents.
+// Usage: java AlgorithmsBenchmark [size...]   (default 1000 10000 100000 1000000)
+public class AlgorithmsBenchmark {
+    // Small sizes repeat their body so every measured round does about this many ops
+    private static final int MIN_OPS_PER_ROUND = 1_000_000;
+    private static final int MAX_ASSIGNMENT_SIZE = 10_000;
+
+    public static void main(String[] args) {
+        int[] sizes = Bench.sizes(args, 1_000, 10_000, 100_000, 1_000_000);
+        for (int size : sizes) {
+            hashMaps(size);
+            priorityQueues(size);
+            arrayLists(size);
+            queues(size);
+            linkedLists(size);
+            roadGraphs(size);
+            aggregates(size);
+            orderStatistics(size);
+            // The solver is superlinear; larger sizes would take minutes per round
+            if (size <= MAX_ASSIGNMENT_SIZE) {
+                assignments(size);
+            }
+        }
+    }
+
+    private static int repeats(int size) {
+        return Math.max(1, MIN_OPS_PER_ROUND / size);
+    }
+
+    private static String[] keys(int size) {
+        String[] keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = "GR-" + i + "-" + (i % 97);
+        }
+        return keys;
+    }
+
+    private static void hashMaps(int size) {
+        final String[] keys = keys(size);
+        final int reps = repeats(size);
+        final long ops = (long) size * reps;
+        Bench.header("hash maps");
+
+        Bench.measure("CustomHashMap.put (growing)", size, ops, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                CustomHashMap<String, Integer> map = new CustomHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    map.put(keys[i], i);
+                }
+                total += map.size();
+            }
+            return total;
+        });
+        Bench.measure("java.util.HashMap.put (growing)", size, ops, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                HashMap<String, Integer> map = new HashMap<>();
+                for (int i = 0; i < size; i++) {
+                    map.put(keys[i], i);
+                }
+                total += map.size();
+            }
+            return total;
+        });
+        Bench.measure("CustomHashMap.put (presized)", size, ops, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                CustomHashMap<String, Integer> map = new CustomHashMap<>(size);
+                for (int i = 0; i < size; i++) {
+                    map.put(keys[i], i);
+                }
+                total += map.size();
+            }
+            return total;
+        });
+
+        final CustomHashMap<String, Integer> custom = new CustomHashMap<>();
+        final HashMap<String, Integer> reference = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            custom.put(keys[i], i);
+            reference.put(keys[i], i);
+        }
+        Bench.measure("CustomHashMap.get", size, ops, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                for (int i = 0; i < size; i++) {
+                    total += custom.get(keys[i]);
+                }
+            }
+            return total;
+        });
+        Bench.measure("java.util.HashMap.get", size, ops, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                for (int i = 0; i < size; i++) {
+                    total += reference.get(keys[i]);
+                }
+            }
+            return total;
+        });
+        // Remove everything, then put it back so the next round starts from the same map
+        Bench.measure("CustomHashMap.remove+put", size, ops * 2, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                for (int i = 0; i < size; i++) {
+                    total += custom.remove(keys[i]);
+                }
+                for (int i = 0; i < size; i++) {
+                    custom.put(keys[i], i);
+                }
+            }
+            return total;
+        });
+        Bench.measure("java.util.HashMap.remove+put", size, ops * 2, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                for (int i = 0; i < size; i++) {
+                    total += reference.remove(keys[i]);
+                }
+                for (int i = 0; i < size; i++) {
+                    reference.put(keys[i], i);
+                }
+            }
+            return total;
+        });
+    }
+
+    private static void priorityQueues(int size) {
+        final int[] values = new Random(42).ints(size).toArray();
+        final int reps = repeats(size);
+        final long ops = (long) size * reps * 2;
+        final Comparator<Integer> order = Integer::compare;
+        Bench.header("priority queues (add all, then poll all)");
+
+        Bench.measure("CustomPriorityQueue add/poll", size, ops, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                CustomPriorityQueue<Integer> queue = new CustomPriorityQueue<>(order);
+                for (int value : values) {
+                    queue.add(value);
+                }
+                while (!queue.isEmpty()) {
+                    total += queue.poll();
+                }
+            }
+            return total;
+        });
+        Bench.measure("CustomPriorityQueue add/poll (indexed)", size, ops, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                CustomPriorityQueue<Integer> queue = new CustomPriorityQueue<>(order, true);
+                for (int value : values) {
+                    queue.offer(value);
+                }
+                while (!queue.isEmpty()) {
+                    total += queue.poll();
+                }
+            }
+            return total;
+        });
+        Bench.measure("java.util.PriorityQueue add/poll", size, ops, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                PriorityQueue<Integer> queue = new PriorityQueue<>(order);
+                for (int value : values) {
+                    queue.add(value);
+                }
+                while (!queue.isEmpty()) {
+                    total += queue.poll();
+                }
+            }
+            return total;
+        });
+    }
+
+    private static void arrayLists(int size) {
+        final Random random = new Random(7);
+        final Integer[] shuffled = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            shuffled[i] = random.nextInt();
+        }
+        final int[] probes = random.ints(size, 0, size).toArray();
+        final int reps = repeats(size);
+        final long ops = (long) size * reps;
+        final Comparator<Integer> order = Integer::compare;
+        Bench.header("array lists");
+
+        final CustomArrayList<Integer> custom = new CustomArrayList<>();
+        final ArrayList<Integer> reference = new ArrayList<>();
+        for (Integer value : shuffled) {
+            custom.add(value);
+            reference.add(value);
+        }
+        Bench.measure("CustomArrayList.get (random index)", size, ops, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                for (int probe : probes) {
+                    total += custom.get(probe);
+                }
+            }
+            return total;
+        });
+        Bench.measure("java.util.ArrayList.get (random index)", size, ops, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                for (int probe : probes) {
+                    total += reference.get(probe);
+                }
+            }
+            return total;
+        });
+
+        // Sorting includes refilling the list, which is the same work on both sides
+        final int sortReps = Math.max(1, reps / 10);
+        Bench.measure("CustomArrayList.sort", size, (long) size * sortReps, () -> {
+            long total = 0;
+            for (int r = 0; r < sortReps; r++) {
+                CustomArrayList<Integer> list = new CustomArrayList<>(size);
+                for (Integer value : shuffled) {
+                    list.add(value);
+                }
+                list.sort(order);
+                total += list.get(0);
+            }
+            return total;
+        });
+        Bench.measure("java.util.ArrayList.sort", size, (long) size * sortReps, () -> {
+            long total = 0;
+            for (int r = 0; r < sortReps; r++) {
+                ArrayList<Integer> list = new ArrayList<>(size);
+                for (Integer value : shuffled) {
+                    list.add(value);
+                }
+                list.sort(order);
+                total += list.get(0);
+            }
+            return total;
+        });
+
+        custom.sort(order);
+        Collections.sort(reference, order);
+        Bench.measure("CustomArrayList.binarySearch", size, ops, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                for (int probe : probes) {
+                    total += custom.binarySearch(shuffled[probe], order);
+                }
+            }
+            return total;
+        });
+        Bench.measure("Collections.binarySearch", size, ops, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                for (int probe : probes) {
+                    total += Collections.binarySearch(reference, shuffled[probe], order);
+                }
+            }
+            return total;
+        });
+    }
+
+    private static void queues(int size) {
+        final int reps = repeats(size);
+        final long ops = (long) size * reps * 2;
+        final Integer[] values = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i;
+        }
+        Bench.header("FIFO queues (add all, then poll all)");
+
+        Bench.measure("CustomQueue add/poll", size, ops, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                CustomQueue<Integer> queue = new CustomQueue<>();
+                for (Integer value : values) {
+                    queue.add(value);
+                }
+                while (!queue.isEmpty()) {
+                    total += queue.poll();
+                }
+            }
+            return total;
+        });
+        Bench.measure("CustomLinkedList add/poll", size, ops, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                CustomLinkedList<Integer> list = new CustomLinkedList<>();
+                for (Integer value : values) {
+                    list.add(value);
+                }
+                while (!list.isEmpty()) {
+                    total += list.poll();
+                }
+            }
+            return total;
+        });
+        Bench.measure("LockFreeQueue offer/poll", size, ops, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                LockFreeQueue<Integer> queue = new LockFreeQueue<>();
+                for (Integer value : values) {
+                    queue.offer(value);
+                }
+                Integer value;
+                while ((value = queue.poll()) != null) {
+                    total += value;
+                }
+            }
+            return total;
+        });
+        final LockFreeRingBuffer<Integer> ring = new LockFreeRingBuffer<>(size);
+        Bench.measure("LockFreeRingBuffer offer/poll", size, ops, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                for (Integer value : values) {
+                    ring.offer(value);
+                }
+                Integer value;
+                while ((value = ring.poll()) != null) {
+                    total += value;
+                }
+            }
+            return total;
+        });
+        Bench.measure("java.util.ArrayDeque add/poll", size, ops, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                ArrayDeque<Integer> queue = new ArrayDeque<>();
+                for (Integer value : values) {
+                    queue.add(value);
+                }
+                while (!queue.isEmpty()) {
+                    total += queue.poll();
+                }
+            }
+            return total;
+        });
+    }
+
+    private static void linkedLists(int size) {
+        final String[] keys = keys(size);
+        final int[] order = new int[size];
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            order[i] = random.nextInt(size);
+        }
+        final int reps = repeats(size);
+        final long ops = (long) size * reps;
+        final CustomLinkedList<String> indexed = new CustomLinkedList<>(key -> key);
+        final CustomLinkedList<String> plain = new CustomLinkedList<>();
+        for (String key : keys) {
+            indexed.add(key);
+            plain.add(key);
+        }
+        Bench.header("linked lists (lookups by key)");
+
+        Bench.measure("CustomLinkedList.find (indexed)", size, ops, () -> {
+            long found = 0;
+            for (int r = 0; r < reps; r++) {
+                for (int i : order) {
+                    found += indexed.find(keys[i]) != null ? 1 : 0;
+                }
+            }
+            return found;
+        });
+        Bench.measure("CustomLinkedList.removeKey+add (indexed)", size, ops * 2, () -> {
+            for (int r = 0; r < reps; r++) {
+                for (int i : order) {
+                    indexed.add(indexed.removeKey(keys[i]));
+                }
+            }
+            return indexed.size();
+        });
+        // A linear scan per call, so only a bounded number of calls
+        final int scans = Math.min(size, 1_000);
+        Bench.measure("CustomLinkedList.remove+add (linear scan)", size, scans * 2L, () -> {
+            for (int i = 0; i < scans; i++) {
+                String key = keys[order[i]];
+                plain.remove(key);
+                plain.add(key);
+            }
+            return plain.size();
+        });
+    }
+
+    // A fuel report after each change to one vehicle: the running aggregates take the change
+    // and answer from their state, a rescan sorts a copy of every value
+    private static void aggregates(int size) {
+        Random random = new Random(42);
+        final double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = Math.round((12 + random.nextGaussian() * 3) * 10) / 10.0;
+        }
+        // A rescan sorts the whole fleet per change; keep its rounds to seconds
+        final int changes = Math.max(10, Math.min(size, 10_000_000 / size));
+        final double[] replacements = new double[changes];
+        for (int i = 0; i < changes; i++) {
+            replacements[i] = Math.round((12 + random.nextGaussian() * 3) * 10) / 10.0;
+        }
+        Bench.header("fuel aggregates (change one value, then mean, stddev and p95)");
+
+        // Built once; every round swaps the same slots between the two values again
+        final RunningStats stats = new RunningStats();
+        final LogHistogram histogram = new LogHistogram();
+        final double[] current = values.clone();
+        for (double value : current) {
+            stats.add(value);
+            histogram.add(value);
+        }
+        Bench.measure("RunningStats + LogHistogram", size, changes, () -> {
+            double total = 0;
+            for (int i = 0; i < changes; i++) {
+                int slot = (int) ((long) i * size / changes);
+                double next = current[slot] == values[slot] ? replacements[i] : values[slot];
+                stats.remove(current[slot]);
+                histogram.remove(current[slot]);
+                current[slot] = next;
+                stats.add(next);
+                histogram.add(next);
+                total += stats.mean() + stats.standardDeviation() + histogram.quantile(0.95);
+            }
+            return (long) total;
+        });
+        Bench.measure("full rescan + sort", size, changes, () -> {
+            double[] scanned = values.clone();
+            double total = 0;
+            for (int i = 0; i < changes; i++) {
+                scanned[(int) ((long) i * size / changes)] = replacements[i];
+                double sum = 0;
+                double squares = 0;
+                for (double value : scanned) {
+                    sum += value;
+                    squares += value * value;
+                }
+                double mean = sum / size;
+                double[] sorted = scanned.clone();
+                java.util.Arrays.sort(sorted);
+                total += mean + Math.sqrt(Math.max(0, squares / size - mean * mean))
+                        + sorted[(int) Math.ceil(0.95 * size) - 1];
+            }
+            return (long) total;
+        });
+    }
+
+    // The worst 20 of the fleet: read off the tree kept in order, or sort everything
+    private static void orderStatistics(int size) {
+        Random random = new Random(42);
+        final double[] values = new double[size];
+        CustomArrayList<Integer> ascending = new CustomArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextDouble() * 30;
+            ascending.add(i);
+        }
+        final Comparator<Integer> byValue = (a, b) -> {
+            int c = Double.compare(values[a], values[b]);
+            return c != 0 ? c : Integer.compare(a, b);
+        };
+        ascending.sort(byValue);
+        final OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(byValue);
+        tree.buildFrom(ascending);
+        final int reps = Math.max(1, MIN_OPS_PER_ROUND / 100 / Math.max(1, size / 1000));
+        Bench.header("top 20 by value");
+
+        Bench.measure("OrderStatisticTree largest(20)", size, reps, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                total += tree.largest(20).get(0);
+            }
+            return total;
+        });
+        Bench.measure("IndexSort, then last 20", size, reps, () -> {
+            long total = 0;
+            for (int r = 0; r < reps; r++) {
+                int[] order = IndexSort.sortedIndices(values);
+                total += order[order.length - 1];
+            }
+            return total;
+        });
+        Bench.measure("OrderStatisticTree remove + add", size, size, () -> {
+            long total = 0;
+            for (int i = 0; i < size; i++) {
+                tree.remove(i);
+                total += tree.add(i) ? 1 : 0;
+            }
+            return total;
+        });
+    }
+
+    private static void assignments(int size) {
+        final Random random = new Random(11);
+        // Drivers have 0-30 years of experience, so there are at most 31 classes
+        final int[] experience = new int[size];
+        for (int i = 0; i < size; i++) {
+            experience[i] = random.nextInt(31);
+        }
+        final double[] difficulty = new double[size];
+        for (int j = 0; j < size; j++) {
+            difficulty[j] = random.nextDouble();
+        }
+        Bench.header("assignment (n drivers to n vehicles, ns per pair)");
+
+        Bench.measure("AssignmentSolver.solveClasses", size, size, () -> {
+            int[] supply = new int[31];
+            for (int e : experience) {
+                supply[e]++;
+            }
+            int[] owner = AssignmentSolver.solveClasses(supply, size, (k, j) -> {
+                double gap = k / 30.0 - difficulty[j];
+                return gap * gap;
+            });
+            return owner[0] + owner[size - 1];
+        });
+    }
+
+    private static void roadGraphs(int size) {
+        // A square grid with about size roads, randomly weighted
+        final Random random = new Random(13);
+        int side = Math.max(2, (int) Math.sqrt(size / 2.0));
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                if (x + 1 < side) {
+                    builder.addRoad(y + ":" + x, y + ":" + (x + 1), 1 + random.nextDouble() * 3);
+                }
+                if (y + 1 < side) {
+                    builder.addRoad(y + ":" + x, (y + 1) + ":" + x, 1 + random.nextDouble() * 3);
+                }
+            }
+        }
+        final RoadGraph graph = builder.build(RoadGraph.DEFAULT_LANDMARKS);
+        final int queries = 100;
+        final int[] sources = random.ints(queries, 0, graph.nodeCount()).toArray();
+        final int[] targets = random.ints(queries, 0, graph.nodeCount()).toArray();
+        final double[] table = graph.distancesFrom(sources[0]);
+        final int lookups = 1_000_000;
+        final int[] lookupTargets = random.ints(lookups, 0, graph.nodeCount()).toArray();
+        Bench.header("road graph (grid, size = roads)");
+
+        Bench.measure("RoadGraph travelTime (A*, ALT)", graph.roadCount(), queries, () -> {
+            long total = 0;
+            for (int i = 0; i < queries; i++) {
+                total += (long) graph.travelTime(sources[i], targets[i]);
+            }
+            return total;
+        });
+        Bench.measure("RoadGraph distancesFrom (Dijkstra)", graph.roadCount(), 1, () ->
+                (long) graph.distancesFrom(sources[1])[targets[1]]);
+        Bench.measure("depot table lookup", graph.roadCount(), lookups, () -> {
+            long total = 0;
+            for (int target : lookupTargets) {
+                total += (long) table[target];
+            }
+            return total;
+        });
+
+        // Routing a parcel per 50 roads from the middle of the grid, ns per parcel
+        final int parcels = Math.max(10, graph.roadCount() / 50);
+        final int[] stops = random.ints(parcels, 0, graph.nodeCount()).toArray();
+        final int[] demand = new int[parcels];
+        java.util.Arrays.fill(demand, 1);
+        final int depot = graph.node((side / 2) + ":" + (side / 2));
+        final RoadGraph.Search search = graph.newSearch();
+        Bench.measure("SavingsRouter plan (capacity 40)", parcels, parcels, () -> {
+            SavingsRouter.Plan plan = SavingsRouter.plan(graph, search, depot, stops, demand, 40,
+                    SavingsRouter.DEFAULT_NEIGHBOURS, System.nanoTime() + 60_000_000_000L);
+            return plan.routes.length;
+        });
+    }
+}
@@ -0,0 +1,63 @@
+// Minimal benchmark harness, so the benchmarks build with plain javac like the rest of
+// the project. Each case runs a few untimed warm-up rounds to let the JIT settle, then
+// timed rounds; the best and median time per operation are reported.
+//
+// Every body returns a value that is folded into a volatile sink, so the JIT cannot
+// discard the work being measured.
+final class Bench {
+    interface Body {
+        long run();
+    }
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 7;
+
+    static volatile long sink;
+
+    private Bench() {
+    }
+
+    // Times body, which performs ops operations per call
+    static void measure(String name, int size, long ops, Body body) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += body.run();
+        }
+        long[] nanos = new long[MEASURED_ROUNDS];
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            sink += body.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        // Tiny array, insertion sort is plenty
+        for (int i = 1; i < nanos.length; i++) {
+            long key = nanos[i];
+            int j = i - 1;
+            while (j >= 0 && nanos[j] > key) {
+                nanos[j + 1] = nanos[j];
+                j--;
+            }
+            nanos[j + 1] = key;
+        }
+        double best = (double) nanos[0] / ops;
+        double median = (double) nanos[nanos.length / 2] / ops;
+        System.out.println(String.format("%-40s %10d %12.1f %12.1f", name, size, best, median));
+    }
+
+    static void header(String title) {
+        System.out.println();
+        System.out.println("== " + title);
+        System.out.println(String.format("%-40s %10s %12s %12s", "benchmark", "size", "best ns/op", "median ns/op"));
+    }
+
+    // Sizes from the command line, or the given defaults
+    static int[] sizes(String[] args, int... defaults) {
+        if (args.length == 0) {
+            return defaults;
+        }
+        int[] sizes = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        return sizes;
+    }
+}
@@ -0,0 +1,154 @@
+import java.io.*;
+import java.nio.file.Files;
+import algorithms.CustomArrayList;
+import algorithms.CustomHashMap;
+
+// End-to-end benchmarks of the persistence and index paths of AdomLogisticsSystem on
+// synthetic fleets written to a temporary data directory (the real data/ is untouched).
+// Usage: java FleetBenchmark [fleetSize...]   (default 1000 10000 100000)
+public class FleetBenchmark {
+    private static final String[] TYPES = {"Truck", "Van", "Pickup", "Trailer"};
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = Bench.sizes(args, 1_000, 10_000, 100_000);
+        for (int size : sizes) {
+            File dataDir = Files.createTempDirectory("fleet-bench").toFile();
+            try {
+                writeFleet(dataDir, size);
+                run(dataDir.getPath(), size);
+            } finally {
+                deleteRecursively(dataDir);
+            }
+        }
+    }
+
+    private static void run(final String dataDir, final int size) {
+        final File vehiclesFile = new File(dataDir, "vehicles.txt");
+        Bench.header("fleet workflows");
+
+        Bench.measure("loadData", size, size, () -> {
+            AdomLogisticsSystem system = new AdomLogisticsSystem(dataDir);
+            system.loadData();
+            system.close();
+            return system.hashCode();
+        });
+
+        final AdomLogisticsSystem system = new AdomLogisticsSystem(dataDir);
+        system.loadData();
+        Bench.measure("saveData (all files)", size, size, () -> {
+            system.markAllDirty();
+            system.saveData();
+            return vehiclesFile.length();
+        });
+
+        Bench.measure("rebuildVehicleIndexes (full rebuild)", size, size, () -> {
+            system.rebuildVehicleIndexes();
+            return system.getMaintenanceRanking().size();
+        });
+
+        // A fleet report (mileage by type over a fuel band) walking Vehicle objects, as the
+        // reports did, against the same query over the fleet columns
+        final CustomArrayList<Vehicle> fleet = new CustomArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            fleet.add(vehicle(i));
+        }
+        Bench.measure("group-by over Vehicle objects", size, size, () -> {
+            CustomHashMap<String, double[]> groups = new CustomHashMap<>();
+            for (int i = 0; i < fleet.size(); i++) {
+                Vehicle vehicle = fleet.get(i);
+                if (vehicle.getFuelUsage() >= 8 && vehicle.getFuelUsage() <= 16) {
+                    double[] group = groups.get(vehicle.getType());
+                    if (group == null) {
+                        group = new double[] {0, 0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+                        groups.put(vehicle.getType(), group);
+                    }
+                    group[0]++;
+                    group[1] += vehicle.getMileage();
+                    group[2] = Math.min(group[2], vehicle.getMileage());
+                    group[3] = Math.max(group[3], vehicle.getMileage());
+                }
+            }
+            return groups.size();
+        });
+        final FleetColumns.Filter band = new FleetColumns.Filter().fuelBetween(8, 16);
+        Bench.measure("group-by over fleet columns", size, size, () ->
+                system.analyze(band, FleetColumns.Measure.MILEAGE, FleetColumns.GroupBy.TYPE).size());
+        Bench.measure("whole-fleet mileage over fleet columns", size, size, () ->
+                system.analyze(null, FleetColumns.Measure.MILEAGE, FleetColumns.GroupBy.NONE).size());
+
+        // The incremental path that replaced the full rebuild on every mutation
+        final Vehicle[] replacements = new Vehicle[Math.min(size, 10_000)];
+        for (int i = 0; i < replacements.length; i++) {
+            replacements[i] = vehicle(i * (size / replacements.length));
+        }
+        Bench.measure("putVehicle (incremental update)", size, replacements.length, () -> {
+            for (Vehicle vehicle : replacements) {
+                system.putVehicle(vehicle);
+            }
+            return system.getMaintenanceRanking().size();
+        });
+        system.close();
+
+        // What an interactive edit costs: the change plus its journal record. Snapshots
+        // are written by the persistence thread and do not show up here.
+        for (final FleetJournal.Durability durability : FleetJournal.Durability.values()) {
+            final AdomLogisticsSystem journaled = new AdomLogisticsSystem(dataDir, durability, 200);
+            journaled.loadData();
+            final Vehicle[] edits = new Vehicle[Math.min(replacements.length, 200)];
+            System.arraycopy(replacements, 0, edits, 0, edits.length);
+            Bench.measure("storeVehicle (" + durability + ")", size, edits.length, () -> {
+                for (Vehicle vehicle : edits) {
+                    journaled.storeVehicle(vehicle);
+                }
+                return journaled.getMaintenanceRanking().size();
+            });
+            journaled.saveData();
+            journaled.close();
+        }
+    }
+
+    private static Vehicle vehicle(int i) {
+        return new Vehicle("GR-" + i + "-" + (i % 97), TYPES[i % TYPES.length],
+                1_000 + (i * 7919L) % 400_000, 4 + (i % 170) / 10.0);
+    }
+
+    private static void writeFleet(File dataDir, int size) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(new File(dataDir, "vehicles.txt"))))) {
+            for (int i = 0; i < size; i++) {
+                Vehicle vehicle = vehicle(i);
+                writer.println(vehicle.getRegistrationNumber() + "," + vehicle.getType() + ","
+                        + vehicle.getMileage() + "," + vehicle.getFuelUsage() + ","
+                        + (i % 3 == 0 ? "D" + i : ""));
+            }
+        }
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(new File(dataDir, "drivers.txt"))))) {
+            for (int i = 0; i < size / 3; i++) {
+                writer.println("A" + i + ",Driver " + i + "," + (i % 30) + ",true");
+            }
+        }
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(new File(dataDir, "deliveries.txt"))))) {
+            for (int i = 0; i < size; i++) {
+                writer.println("P" + i + ",Accra,Kumasi,GR-" + i + "-" + (i % 97) + ",D" + i + ",TBD,Pending");
+            }
+        }
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(new File(dataDir, "maintenance.txt"))))) {
+            // vehicle,time,mileage,cost,part,partCost
+            long start = 1_735_689_600_000L;
+            for (int i = 0; i < size; i += 2) {
+                double cost = 50 + i % 400;
+                writer.println("GR-" + i + "-" + (i % 97) + "," + (start + i * 3_600_000L) + ","
+                        + (500 + (i * 7919L) % 300_000) + "," + cost + ",OilChange," + cost);
+            }
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}